@@ -123,4 +123,15 @@ describe('Utils', () => {
       '2021-05-28': [],
     });
   });
+
+  it('should parse the complete server-sent events', () => {
+    const { events, rest } = Utils.getInstance().parseServerSentEvents(
+      ':heartbeat\n\nid:cursor-1\nevent:message\ndata:{"message":"hello"}\n\nid:cursor-2\nevent:mess',
+    );
+    expect(events).toEqual([{ id: 'cursor-1', event: 'message', data: '{"message":"hello"}' }]);
+    expect(rest).toEqual('id:cursor-2\nevent:mess');
+    const next = Utils.getInstance().parseServerSentEvents(rest + 'age\ndata: line 1\ndata:line 2\n\n');
+    expect(next.events).toEqual([{ id: 'cursor-2', event: 'message', data: 'line 1\nline 2' }]);
+    expect(next.rest).toEqual('');
+  });
 });
@@ -94,4 +94,5 @@ export default {
     VERSION: 'Version 2.0', 
   },
   SESSION_TOKEN_NAME: 'session_token_amphitryon',
+  CHAT_RECONNECT_DELAY: 3000,
 };
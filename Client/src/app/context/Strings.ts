@@ -84,6 +84,7 @@ export default {
   HOURS: 'Heures :',
   JOIN: 'Rejoindre',
   LEAVE: 'Quitter',
+  LOAD_MORE: 'Afficher plus',
   LOCATION: 'Lieu',
   LOCATIONS_SEARCH: 'Recherche de lieux',
   LOCATION_CREATE: 'Créer un lieu',
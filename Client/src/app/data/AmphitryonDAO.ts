@@ -40,7 +40,14 @@ export default class AmphitryonDAO {
    * @param token of the user session
    */
   public setSessionTokenFromResponse(response: Response): void {
-    const sessionToken = response.headers.get(Globals.SESSION_TOKEN_NAME);
+    this.setSessionToken(response.headers.get(Globals.SESSION_TOKEN_NAME));
+  }
+
+  /**
+   * Set the user session token
+   * @param sessionToken of the user session, ignored if null
+   */
+  private setSessionToken(sessionToken: string | null): void {
     if (sessionToken)
       this.headerWithSessionToken = {
         Accept: '*/*',
@@ -296,6 +303,66 @@ export default class AmphitryonDAO {
       });
   }
 
+  /**
+   * Load a page of messages of a chat
+   * @param chatID to load
+   * @param after cursor of the newest message known, null to load the latest messages
+   * @returns the page of messages loaded
+   */
+  async loadMessages(chatID: string, after: string | null): Promise<Response | null> {
+    const query = after ? '?after=' + encodeURIComponent(after) : '';
+    return await fetch(Globals.SETTINGS.API_URL + '/chat/' + chatID + '/messages' + query, {
+      method: 'GET',
+      headers: this.headerWithSessionToken,
+    })
+      .then((response: Response) => {
+        this.setSessionTokenFromResponse(response);
+        return response;
+      })
+      .catch(() => {
+        Alert.alert(Strings.ERROR_OCCURED, Strings.ERROR_CHAT_LOAD);
+        return null;
+      });
+  }
+
+  /**
+   * Open a stream receiving the new messages of a chat as server-sent events. The stream is read with an
+   * XMLHttpRequest, as React Native has no EventSource, so that the session token is sent in the headers
+   * @param chatID to follow
+   * @param onText called with the text received since the previous call
+   * @param onClose called when the stream is closed by the server or by a network error
+   * @returns a function closing the stream, onClose is then not called
+   */
+  openMessagesStream(chatID: string, onText: (text: string) => void, onClose: () => void): () => void {
+    const request = new XMLHttpRequest();
+    let received = 0;
+    let closed = false;
+    request.open('GET', Globals.SETTINGS.API_URL + '/chat/' + chatID + '/stream');
+    request.setRequestHeader('Accept', 'text/event-stream');
+    request.setRequestHeader(Globals.SESSION_TOKEN_NAME, this.headerWithSessionToken.session_token_amphitryon);
+    request.onreadystatechange = () => {
+      if (request.readyState === XMLHttpRequest.HEADERS_RECEIVED)
+        this.setSessionToken(request.getResponseHeader(Globals.SESSION_TOKEN_NAME));
+    };
+    request.onprogress = () => {
+      // The response text grows with the stream
+      const text = request.responseText.substring(received);
+      received = request.responseText.length;
+      if (text) onText(text);
+    };
+    request.onloadend = () => {
+      if (!closed) {
+        closed = true;
+        onClose();
+      }
+    };
+    request.send();
+    return () => {
+      closed = true;
+      request.abort();
+    };
+  }
+
   /**
    * Send a message
    * @param message to send
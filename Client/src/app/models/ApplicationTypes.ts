@@ -36,6 +36,8 @@ export type Filter = {
   endDate: string | null;
   tags: Tag[] | null;
   location: Location | null;
+  pageSize?: number;
+  continuationToken?: string | null;
 };
 
 export type Host = {
@@ -81,11 +83,29 @@ export type Meeting = {
 };
 
 export type Message = {
+  id?: string;
   message: string;
   username: string;
   date: string;
 };
 
+export type MeetingPage = {
+  meetings: Meeting[];
+  continuationToken: string | null;
+};
+
+export type MessagePage = {
+  messages: Message[];
+  before: string | null;
+  after: string | null;
+};
+
+export type ServerSentEvent = {
+  id: string | null;
+  event: string;
+  data: string;
+};
+
 export type Tag = {
   name: string;
 };
@@ -6,11 +6,12 @@
  */
 
 import { action, makeAutoObservable, observable, runInAction } from 'mobx';
-import { Meeting, Location, Host, Chat, Message, Filter } from '../models/ApplicationTypes';
+import { Meeting, Location, Host, Chat, Message, MessagePage, MeetingPage, Filter } from '../models/ApplicationTypes';
 import AmphitryonDAO from '../data/AmphitryonDAO';
 import { addDays, endOfDay, startOfDay } from 'date-fns';
 import { Alert } from 'react-native';
 import { AgendaItemsMap } from 'react-native-calendars';
+import Globals from '../context/Globals';
 import Strings from '../context/Strings';
 import Utils from '../utils/Utils';
 
@@ -28,9 +29,12 @@ class StudentStore {
   @observable locationToDisplay: Location | null = null;
   @observable hostToDisplay: Host | null = null;
   @observable searchMeetings: Meeting[] = [];
+  @observable searchFilter: Filter | null = null;
+  @observable searchContinuationToken: string | null = null;
   @observable locationToLoad = '';
   @observable hostToLoad = '';
   @observable chatToLoad = '';
+  @observable chatCursor: string | null = null;
   @observable items: AgendaItemsMap<Meeting> | null = null;
 
   /**
@@ -159,16 +163,83 @@ class StudentStore {
    * @param chatId to load
    */
   @action async loadChat(): Promise<void> {
-    const response = await this.amphitryonDAO.loadChat(this.chatToLoad);
+    const chatId = this.chatToLoad;
+    const isLoaded = this.chat !== null && this.chat.id === chatId && this.chatCursor !== null;
+    const response = await this.amphitryonDAO.loadMessages(chatId, isLoaded ? this.chatCursor : null);
     if (response) {
       if (response.ok) {
-        this.chat = await response.json();
+        const page: MessagePage = await response.json();
+        runInAction(() => {
+          if (isLoaded && this.chat) {
+            this.addMessagesToChat(page.messages);
+          } else {
+            // The latest messages are received newest first
+            this.chat = { id: chatId, messages: page.messages.reverse() };
+          }
+          this.chatCursor = page.after;
+        });
       } else {
         void this.utils.manageErrorInResponse(response);
       }
     }
   }
 
+  /**
+   * Follow the new messages of the chat to load, pushed by the server. The chat is loaded before the stream is
+   * opened, and loaded again from its cursor before the stream is reopened, so that no message is missed
+   * @returns a function to stop following the chat
+   */
+  followChat(): () => void {
+    const chatId = this.chatToLoad;
+    let stopped = false;
+    let closeStream: (() => void) | null = null;
+    let reconnection: ReturnType<typeof setTimeout> | null = null;
+    const open = () => {
+      void this.loadChat().then(() => {
+        if (stopped) return;
+        let pending = '';
+        closeStream = this.amphitryonDAO.openMessagesStream(
+          chatId,
+          (text: string) => {
+            const received = this.utils.parseServerSentEvents(pending + text);
+            pending = received.rest;
+            const events = received.events.filter((event) => event.event === 'message');
+            if (events.length > 0)
+              runInAction(() => {
+                if (this.chat && this.chat.id === chatId) {
+                  this.addMessagesToChat(events.map((event) => JSON.parse(event.data) as Message));
+                  // The id of an event is the after cursor of its message
+                  this.chatCursor = events[events.length - 1].id;
+                }
+              });
+          },
+          () => {
+            closeStream = null;
+            if (!stopped) reconnection = setTimeout(open, Globals.CHAT_RECONNECT_DELAY);
+          },
+        );
+      });
+    };
+    open();
+    return () => {
+      stopped = true;
+      if (reconnection) clearTimeout(reconnection);
+      if (closeStream) closeStream();
+    };
+  }
+
+  /**
+   * Add messages at the end of the loaded chat, ignoring the ones already there
+   * @param messages to add
+   */
+  @action addMessagesToChat(messages: Message[]): void {
+    if (this.chat) {
+      const chat = this.chat;
+      const newMessages = messages.filter((message) => !chat.messages.some((known) => known.id === message.id));
+      this.chat = { id: chat.id, messages: chat.messages.concat(newMessages) };
+    }
+  }
+
   /**
    * Send a new message in a chat
    * @param chatId where to send the message
@@ -178,8 +249,9 @@ class StudentStore {
     const response = await this.amphitryonDAO.sendMessage(chatId, message);
     if (response) {
       if (response.ok) {
+        const sent: Message = await response.json();
         runInAction(() => {
-          this.chat?.messages.push(message);
+          this.addMessagesToChat([sent]);
         });
       } else {
         void this.utils.manageErrorInResponse(response);
@@ -388,17 +460,41 @@ class StudentStore {
     const response = await this.amphitryonDAO.searchMeeting(filter);
     if (response) {
       if (response.ok) {
-        await runInAction(async () => {
-          this.searchMeetings = await response.json();
+        const page: MeetingPage = await response.json();
+        runInAction(() => {
+          this.searchFilter = filter;
+          this.searchMeetings = page.meetings;
+          this.searchContinuationToken = page.continuationToken;
         });
       } else {
         return runInAction(() => {
           this.searchMeetings = [];
+          this.searchContinuationToken = null;
         });
       }
     }
   }
 
+  /**
+   * Action to load the next page of the last search computed with a filter
+   */
+  @action async loadMoreSearchMeetings(): Promise<void> {
+    if (this.searchFilter === null || this.searchContinuationToken === null) return;
+    const filter: Filter = { ...this.searchFilter, continuationToken: this.searchContinuationToken };
+    const response = await this.amphitryonDAO.searchMeeting(filter);
+    if (response) {
+      if (response.ok) {
+        const page: MeetingPage = await response.json();
+        runInAction(() => {
+          this.searchMeetings = this.searchMeetings.concat(page.meetings);
+          this.searchContinuationToken = page.continuationToken;
+        });
+      } else {
+        void this.utils.manageErrorInResponse(response);
+      }
+    }
+  }
+
   /**
    * Set items in the calendar
    * @param items in the calendard
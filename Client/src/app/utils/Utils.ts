@@ -9,7 +9,7 @@ import { addDays, format } from 'date-fns';
 import { Alert } from 'react-native';
 import { AgendaItemsMap } from 'react-native-calendars';
 import Strings from '../context/Strings';
-import { Meeting } from '../models/ApplicationTypes';
+import { Meeting, ServerSentEvent } from '../models/ApplicationTypes';
 import AuthenticationStore from '../stores/AuthenticationStore';
 
 class Utils {
@@ -87,6 +87,36 @@ class Utils {
     items.push(' }');
     return JSON.parse(items.join(''));
   }
+
+  /**
+   * Parse the complete server-sent events received on a stream, the comments (heartbeats) are ignored
+   * @param text received since the last complete event
+   * @returns the events parsed and the beginning of the next event, to parse again with the following text
+   */
+  parseServerSentEvents(text: string): { events: ServerSentEvent[]; rest: string } {
+    const events: ServerSentEvent[] = [];
+    const blocks = text.split('\n\n');
+    const rest = blocks.pop() || '';
+    blocks.forEach((block: string) => {
+      const event: ServerSentEvent = { id: null, event: 'message', data: '' };
+      const data: string[] = [];
+      block.split('\n').forEach((line: string) => {
+        if (line === '' || line.startsWith(':')) return;
+        const colon = line.indexOf(':');
+        const field = colon < 0 ? line : line.substring(0, colon);
+        let value = colon < 0 ? '' : line.substring(colon + 1);
+        if (value.startsWith(' ')) value = value.substring(1);
+        if (field === 'id') event.id = value;
+        else if (field === 'event') event.event = value;
+        else if (field === 'data') data.push(value);
+      });
+      if (data.length > 0) {
+        event.data = data.join('\n');
+        events.push(event);
+      }
+    });
+    return { events, rest };
+  }
 }
 
 export default Utils;
@@ -24,8 +24,9 @@ const ChatMeeting: React.FC = () => {
   const { studentStore, authenticationStore } = useStores();
 
   /* Component states */
-  const [isLoading, setIsLoading] = React.useState(true);
-  const [chat, setChat] = React.useState<Chat | null>(null);
+  const chat: Chat | null =
+    studentStore.chat !== null && studentStore.chat.id === studentStore.chatToLoad ? studentStore.chat : null;
+  const isLoading = chat === null;
   const meeting = studentStore.meetingToUpdate;
   const authenticatedUser = authenticationStore.authenticatedStudent;
   const [message, setMessage] = React.useState<string>('');
@@ -38,27 +39,9 @@ const ChatMeeting: React.FC = () => {
   let cpt = 0;
 
   /**
-   * Action done on component loading
+   * Action done on component loading, the new messages are pushed by the server until the component is left
    */
-  React.useEffect(() => {
-    let mounted = true;
-    const interval = setInterval(() => {
-      void studentStore.loadChat().then(() => {
-        setChat(studentStore.chat);
-      });
-    }, 5000);
-    if (mounted) {
-      setIsLoading(true);
-      void studentStore.loadChat().then(() => {
-        setChat(studentStore.chat);
-        setIsLoading(false);
-      });
-    }
-    return () => {
-      clearInterval(interval);
-      mounted = false;
-    };
-  }, []);
+  React.useEffect(() => studentStore.followChat(), []);
 
   /**
    * Action done when submit button is pressed
@@ -82,7 +65,6 @@ const ChatMeeting: React.FC = () => {
   const onRefresh = React.useCallback(() => {
     setRefreshing(true);
     void studentStore.loadChat().then(() => {
-      setChat(studentStore.chat);
       setRefreshing(false);
     });
   }, []);
@@ -109,6 +109,15 @@ const Search: React.FC = () => {
     });
   };
 
+  /**
+   * Action when the next page of the search is requested
+   */
+  const handleLoadMore = () => {
+    void studentStore.loadMoreSearchMeetings().then(() => {
+      setMeetings(studentStore.searchMeetings);
+    });
+  };
+
   /**
    * Add tag to filter
    * @param tag to add
@@ -206,6 +215,15 @@ const Search: React.FC = () => {
                 onDelete={handleChanged}
               />
             ))}
+          {!isLoading && !searchWithId && studentStore.searchContinuationToken && (
+            <Button
+              mode="text"
+              color={Globals.COLORS.PRIMARY}
+              onPress={handleLoadMore}
+              style={styles.button}>
+              {Strings.LOAD_MORE}
+            </Button>
+          )}
           <Portal>
             <Modal
               visible={visible}
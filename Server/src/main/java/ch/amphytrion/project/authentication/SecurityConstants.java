@@ -7,6 +7,7 @@ package ch.amphytrion.project.authentication;
  */
 public class SecurityConstants {
     public static long EXPIRATION_TIME = 1000 * 60 * 30; // 30 minutes
+    public static long RENEWAL_WINDOW = 1000 * 60 * 10; // a new token is sent in the last 10 minutes
     public static String SECRET = "AmPhYtRiOnIsWhAtThEwOrLdNeEdS";
     public static String HEADER_STRING = "session_token_amphitryon";
     public static String TOKEN_PREFIX = "Bearer ";
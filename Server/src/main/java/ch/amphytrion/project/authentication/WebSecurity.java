@@ -5,6 +5,7 @@ import ch.amphytrion.project.authentication.dev_authentication.DevAuthentication
 import ch.amphytrion.project.authentication.google_authentication.GoogleAuthenticationFilter;
 import ch.amphytrion.project.authentication.google_authentication.GoogleAuthenticationProvider;
 import ch.amphytrion.project.authentication.jwt_authentication.JWTAuthorizationFilter;
+import ch.amphytrion.project.authentication.jwt_authentication.PrincipalCache;
 import ch.amphytrion.project.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -40,6 +41,8 @@ public class WebSecurity extends WebSecurityConfigurerAdapter {
     private DevAuthenticationProvider devAuthenticationProvider;
     @Autowired
     private GoogleAuthenticationProvider googleAuthenticationProvider;
+    @Autowired
+    private PrincipalCache principalCache;
     private UserAuthService userAuthService;
 
     public WebSecurity(UserService userService) {
@@ -64,7 +67,7 @@ public class WebSecurity extends WebSecurityConfigurerAdapter {
                         BasicAuthenticationFilter.class
                 )
                 // Filter for authentication by JWT
-                .addFilter(new JWTAuthorizationFilter(authenticationManager(), userAuthService.getUserService()))
+                .addFilter(new JWTAuthorizationFilter(authenticationManager(), userAuthService.getUserService(), principalCache))
                 // this disables session creation on Spring Security
                 .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 .and()
@@ -3,10 +3,8 @@ package ch.amphytrion.project.authentication.dev_authentication;
 import ch.amphytrion.project.authentication.SecurityConstants;
 import ch.amphytrion.project.authentication.utils.AbstractMultiReadAuthenticationProcessingFilter;
 import ch.amphytrion.project.authentication.utils.JwtUtils;
-import ch.amphytrion.project.dto.AuthenticationDto;
 import ch.amphytrion.project.entities.databaseentities.User;
 import ch.amphytrion.project.services.UserService;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -18,8 +16,7 @@ import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.*;
-import java.util.stream.Collectors;
+import java.io.IOException;
 
 
 /**
@@ -47,38 +44,28 @@ public class DevAuthenticationFilter extends AbstractMultiReadAuthenticationProc
         if (res.getHeader(SecurityConstants.HEADER_STRING) != null) {
             return false;
         }
-        try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(req.getInputStream()));
-            String requestData = reader.lines().collect(Collectors.joining());
-            AuthenticationDto auth = new ObjectMapper().readValue(requestData, AuthenticationDto.class);
-            String tokenSeparated[] = auth.tokenID.split("-");
-            return tokenSeparated.length == 2 && tokenSeparated[0].equals(TEST_TOKEN);
-        } catch (IOException e){
+        String tokenID = getTokenID(req);
+        if (!super.requiresAuthentication(req, res) || tokenID == null) {
             return false;
         }
+        String tokenSeparated[] = tokenID.split("-");
+        return tokenSeparated.length == 2 && tokenSeparated[0].equals(TEST_TOKEN);
     }
 
     @Override
     public Authentication attemptAuthentication(HttpServletRequest req,
                                                 HttpServletResponse res) throws AuthenticationException {
-        try {
-            // Make DTO class to map request to
-            BufferedReader reader = new BufferedReader(new InputStreamReader(req.getInputStream()));
-            String requestData = reader.lines().collect(Collectors.joining());
-            AuthenticationDto auth = new ObjectMapper().readValue(requestData, AuthenticationDto.class);
-            String tokenSeparated[] = auth.tokenID.split("-");
-            if(tokenSeparated.length == 2 && tokenSeparated[0].equals(TEST_TOKEN)){
-                String username = tokenSeparated[1];
-                User user = userService.findByUsername(username);
-                return authenticationManager.authenticate(
-                        new DevAuthenticationToken(
-                                user,
-                                TEST_TOKEN)
-                );
-            }else {
-                throw new AuthenticationCredentialsNotFoundException("Credentials not found");
-            }
-        }catch (IOException e ) {
+        String tokenID = getTokenID(req);
+        String tokenSeparated[] = tokenID != null ? tokenID.split("-") : new String[0];
+        if(tokenSeparated.length == 2 && tokenSeparated[0].equals(TEST_TOKEN)){
+            String username = tokenSeparated[1];
+            User user = userService.findByUsername(username);
+            return authenticationManager.authenticate(
+                    new DevAuthenticationToken(
+                            user,
+                            TEST_TOKEN)
+            );
+        }else {
             throw new AuthenticationCredentialsNotFoundException("Credentials not found");
         }
     }
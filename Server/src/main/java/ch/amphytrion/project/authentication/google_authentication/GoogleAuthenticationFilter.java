@@ -3,24 +3,18 @@ package ch.amphytrion.project.authentication.google_authentication;
 import ch.amphytrion.project.authentication.SecurityConstants;
 import ch.amphytrion.project.authentication.utils.AbstractMultiReadAuthenticationProcessingFilter;
 import ch.amphytrion.project.authentication.utils.JwtUtils;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.stream.Collectors;
 
 /**
  *
@@ -44,40 +38,18 @@ public class GoogleAuthenticationFilter extends AbstractMultiReadAuthenticationP
         if (res.getHeader(SecurityConstants.HEADER_STRING) != null) {
             return false;
         }
-        if(new AntPathRequestMatcher(SecurityConstants.SIGN_UP_URL_STUDENT).matches(req)){
-            return false;
-        }
-        //TODO : A check Alois - Ajout pour signup host
-        if(new AntPathRequestMatcher(SecurityConstants.SIGN_UP_URL_HOST).matches(req)){
-            return false;
-        }
-        try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(req.getInputStream()));
-            String requestData = reader.lines().collect(Collectors.joining());
-            JsonObject jsonBody =  new Gson().fromJson(requestData, JsonObject.class);
-            return jsonBody != null && jsonBody.get("tokenID") != null;
-        } catch (IOException e){
-            return false;
-        }
+        // The body was read once by doFilter, only for the login URL
+        return super.requiresAuthentication(req, res) && getTokenID(req) != null;
     }
 
     @Override
     public Authentication attemptAuthentication(HttpServletRequest req,
                                                 HttpServletResponse res) throws AuthenticationException {
-        try {
-            // Make DTO class to map request to
-            BufferedReader reader = new BufferedReader(new InputStreamReader(req.getInputStream()));
-            String requestData = reader.lines().collect(Collectors.joining());
-            JsonObject jsonBody =  new Gson().fromJson(requestData, JsonObject.class);
-            return authenticationManager.authenticate(
-                    new GoogleAuthenticationToken(
-                            null,
-                            jsonBody.get("tokenID").getAsString()
-                    )
-            );
-        }catch (IOException  e ) {
+        String tokenID = getTokenID(req);
+        if (tokenID == null) {
             throw new AuthenticationCredentialsNotFoundException("Credentials not found");
         }
+        return authenticationManager.authenticate(new GoogleAuthenticationToken(null, tokenID));
     }
 
     @Override
@@ -2,50 +2,159 @@ package ch.amphytrion.project.authentication.google_authentication;
 
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
+import com.google.api.client.googleapis.auth.oauth2.GoogleOAuthConstants;
+import com.google.api.client.googleapis.auth.oauth2.GooglePublicKeysManager;
+import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.javanet.NetHttpTransport;
-import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.util.Clock;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
-import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- *
+ * Verify the Google ID tokens sent at login and sign up.
+ * The verifier is shared, so the public keys of Google are only downloaded again when they expire (Cache-Control of
+ * the keys), or when a token is signed by an unknown key, at most once per MIN_REFRESH_INTERVAL. The tokens already
+ * verified are kept with their subject until they expire.
  *
  * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
  */
 @Configuration
 public class GoogleTokenValider {
 
+    public static final String CERTS_URL_PROPERTY = "google.certs.url";
+    public static final long MIN_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    public static final int MAX_VERIFIED_TOKENS = 10000;
+
+    private final GoogleIdTokenVerifier verifier;
+    private final Clock clock;
+    private final AtomicLong lastRefresh = new AtomicLong();
+    private final Map<String, VerifiedToken> verifiedTokens = new LinkedHashMap<String, VerifiedToken>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+            return size() > MAX_VERIFIED_TOKENS;
+        }
+    };
+
+    /**
+     * Google token valider constructor, the keys are downloaded from Google unless google.certs.url is set
+     * @param environment environment containing the client id of the application
+     */
     @Autowired
-    private Environment environment;
+    public GoogleTokenValider(Environment environment) {
+        this(environment.getProperty("spring.datasource.clientid"),
+                environment.getProperty(CERTS_URL_PROPERTY, GoogleOAuthConstants.DEFAULT_PUBLIC_CERTS_ENCODED_URL),
+                new NetHttpTransport(),
+                Clock.SYSTEM);
+    }
+
+    /**
+     * Google token valider constructor
+     * @param clientID the client id of the application, audience of the tokens
+     * @param certsUrl the URL of the public keys signing the tokens
+     * @param transport the transport used to download the keys
+     * @param clock source of the current time
+     */
+    public GoogleTokenValider(String clientID, String certsUrl, HttpTransport transport, Clock clock) {
+        this.clock = clock;
+        GooglePublicKeysManager keysManager = new GooglePublicKeysManager.Builder(transport, GsonFactory.getDefaultInstance())
+                .setPublicCertsEncodedUrl(certsUrl)
+                .setClock(clock)
+                .build();
+        this.verifier = new GoogleIdTokenVerifier.Builder(keysManager)
+                .setAudience(Collections.singletonList(clientID))
+                .setClock(clock)
+                .build();
+    }
 
     public GoogleIdToken validateToken(String tokenID){
 
         try {
-            String clientID = environment.getProperty("spring.datasource.clientid");
-            JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
-            GoogleIdTokenVerifier verifier = new GoogleIdTokenVerifier.Builder(new NetHttpTransport(), JSON_FACTORY)
-                    .setAudience(Collections.singletonList(clientID))
-                    .build();
-            return verifier.verify(tokenID);
+            GoogleIdToken googleIdToken = GoogleIdToken.parse(verifier.getJsonFactory(), tokenID);
+            if (verifier.verify(googleIdToken)) {
+                return googleIdToken;
+            }
+            // The keys may have been rotated since they were downloaded
+            long now = clock.currentTimeMillis();
+            long last = lastRefresh.get();
+            if (now - last >= MIN_REFRESH_INTERVAL && lastRefresh.compareAndSet(last, now)) {
+                verifier.getPublicKeysManager().refresh();
+                if (verifier.verify(googleIdToken)) {
+                    return googleIdToken;
+                }
+            }
+            return null;
         } catch (GeneralSecurityException | IOException | IllegalArgumentException e){
             return null;
         }
     }
 
     public String getSubFromToken(String tokenID){
+        if (tokenID == null) {
+            return null;
+        }
+        String hash = hash(tokenID);
+        synchronized (verifiedTokens) {
+            VerifiedToken verified = verifiedTokens.get(hash);
+            if (verified != null) {
+                if (verified.expiresAt > clock.currentTimeMillis()) {
+                    return verified.sub;
+                }
+                verifiedTokens.remove(hash);
+            }
+        }
         GoogleIdToken googleIdToken = validateToken(tokenID);
         if(googleIdToken != null){
-            return googleIdToken.getPayload().get("sub").toString();
+            String sub = googleIdToken.getPayload().get("sub").toString();
+            Long expiration = googleIdToken.getPayload().getExpirationTimeSeconds();
+            if (expiration != null) {
+                synchronized (verifiedTokens) {
+                    verifiedTokens.put(hash, new VerifiedToken(sub, TimeUnit.SECONDS.toMillis(expiration)));
+                }
+            }
+            return sub;
         } else {
             return null;
         }
     }
 
+    /**
+     * Hash a token, so that the tokens themselves are not kept in memory
+     * @param tokenID the token
+     * @return String the SHA-256 of the token
+     */
+    private static String hash(String tokenID) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(tokenID.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Subject of a verified token and its expiration time
+     */
+    private static class VerifiedToken {
+        private final String sub;
+        private final long expiresAt;
+
+        VerifiedToken(String sub, long expiresAt) {
+            this.sub = sub;
+            this.expiresAt = expiresAt;
+        }
+    }
 }
@@ -4,9 +4,8 @@ import ch.amphytrion.project.authentication.SecurityConstants;
 import ch.amphytrion.project.authentication.utils.JwtUtils;
 import ch.amphytrion.project.entities.databaseentities.User;
 import ch.amphytrion.project.services.UserService;
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -33,10 +32,12 @@ public class JWTAuthorizationFilter extends BasicAuthenticationFilter {
 
     @Autowired
     protected UserService userService;
+    private PrincipalCache principalCache;
 
-    public JWTAuthorizationFilter(AuthenticationManager authManager, UserService userService) {
+    public JWTAuthorizationFilter(AuthenticationManager authManager, UserService userService, PrincipalCache principalCache) {
         super(authManager);
         this.userService = userService;
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -51,31 +52,26 @@ public class JWTAuthorizationFilter extends BasicAuthenticationFilter {
         }
 
         try {
-            JWTAuthorizationToken authentication = getAuthentication(req);
+            DecodedJWT token = JwtUtils.verifyToken(header.substring(SecurityConstants.TOKEN_PREFIX.length()));
+            JWTAuthorizationToken authentication = getAuthentication(token);
             SecurityContextHolder.getContext().setAuthentication(authentication);
-            JwtUtils.AddTokenWithSuccessfullAuthentication(req, res, chain, authentication);
+            if (authentication != null && authentication.getPrincipal() != null) {
+                JwtUtils.renewTokenIfExpiring(res, token);
+            }
             chain.doFilter(req, res);
         } catch (TokenExpiredException e){
             return;
         }
     }
 
-    // Reads the JWT from the Authorization header, and then uses JWT to validate the token
-    private JWTAuthorizationToken getAuthentication(HttpServletRequest request) {
-        String token = request.getHeader(SecurityConstants.HEADER_STRING);
-            if (token != null) {
-                // parse the token.
-                String userId = JWT.require(Algorithm.HMAC512(SecurityConstants.SECRET.getBytes()))
-                        .build()
-                        .verify(token.replace(SecurityConstants.TOKEN_PREFIX, ""))
-                        .getSubject();
-
-                if (userId != null) {
-                    // new arraylist means authorities
-                    User user = userService.findById(userId);
-                    return new JWTAuthorizationToken(user, null, new ArrayList<>());
-                }
-            }
+    // Find the user of a verified token
+    private JWTAuthorizationToken getAuthentication(DecodedJWT token) {
+        String userId = token.getSubject();
+        if (userId != null) {
+            // new arraylist means authorities
+            User user = principalCache.get(userId, userService::findById);
+            return new JWTAuthorizationToken(user, null, new ArrayList<>());
+        }
         return null;
     }
 }
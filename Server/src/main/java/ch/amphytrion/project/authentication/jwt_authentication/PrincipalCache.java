@@ -0,0 +1,45 @@
+package ch.amphytrion.project.authentication.jwt_authentication;
+
+import ch.amphytrion.project.entities.databaseentities.User;
+import ch.amphytrion.project.services.EntityCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Users authenticated recently, so that the JWT filter does not read the user of every request in the database
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@Component
+public class PrincipalCache extends EntityCache<User> {
+
+    public static final int MAX_USERS = 10000;
+    public static final long TTL = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Principal cache constructor
+     * @param converter converter used to copy the users
+     * @param registry registry of the metrics of the cache
+     */
+    @Autowired
+    public PrincipalCache(MongoConverter converter, MeterRegistry registry) {
+        this(converter, registry, MAX_USERS, TTL, System::currentTimeMillis);
+    }
+
+    /**
+     * Principal cache constructor
+     * @param converter converter used to copy the users
+     * @param registry registry of the metrics of the cache
+     * @param maxUsers number of users kept
+     * @param ttl time in milliseconds after which a user is read again in the database
+     * @param clock source of the current time in milliseconds
+     */
+    public PrincipalCache(MongoConverter converter, MeterRegistry registry, int maxUsers, long ttl, LongSupplier clock) {
+        super(converter, User.class, User::getId, "principal", registry, maxUsers, ttl, clock);
+    }
+}
@@ -1,6 +1,7 @@
 package ch.amphytrion.project.authentication.utils;
 
-import me.jvt.multireadservlet.MultiReadHttpServletRequest;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.web.authentication.AbstractAuthenticationProcessingFilter;
 import org.springframework.security.web.util.matcher.RequestMatcher;
@@ -11,14 +12,26 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 
 /**
- *
+ * Authentication filter reading the tokenID of the body of the requests to its URL.
+ * The body of these requests is read once, up to MAX_BODY_SIZE, and kept so that the controller can read it again.
+ * The tokenID found is stored in the TOKEN_ID_ATTRIBUTE of the request, the other requests are not read.
  *
  * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
  */
 public abstract class AbstractMultiReadAuthenticationProcessingFilter extends AbstractAuthenticationProcessingFilter {
+
+    public static final String TOKEN_ID_ATTRIBUTE = AbstractMultiReadAuthenticationProcessingFilter.class.getName() + ".tokenID";
+    public static final int MAX_BODY_SIZE = 16 * 1024;
+    private static final String TOKEN_ID = "tokenID";
+
     protected AbstractMultiReadAuthenticationProcessingFilter(String defaultFilterProcessesUrl) {
         super(defaultFilterProcessesUrl);
     }
@@ -37,9 +50,78 @@ public abstract class AbstractMultiReadAuthenticationProcessingFilter extends Ab
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
-        MultiReadHttpServletRequest wrappedRequest =
-                new MultiReadHttpServletRequest((HttpServletRequest) request);
-        super.doFilter(wrappedRequest, (HttpServletResponse)response, chain);
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        // Only the URL of the filter is checked, the requests to other URLs are not read
+        if (!super.requiresAuthentication(httpRequest, httpResponse)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        byte[] body = readBody(httpRequest);
+        if (body == null) {
+            httpResponse.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+        CachedBodyHttpServletRequest wrappedRequest = new CachedBodyHttpServletRequest(httpRequest, body);
+        String tokenID = findTokenID(body);
+        if (tokenID != null) {
+            wrappedRequest.setAttribute(TOKEN_ID_ATTRIBUTE, tokenID);
+        }
+        super.doFilter(wrappedRequest, httpResponse, chain);
+    }
+
+    /**
+     * Get the tokenID found in the body of the request
+     * @param request the request
+     * @return String the tokenID, null if the body has none
+     */
+    protected static String getTokenID(HttpServletRequest request) {
+        return (String) request.getAttribute(TOKEN_ID_ATTRIBUTE);
+    }
+
+    /**
+     * Read the body of a request
+     * @param request the request
+     * @return byte[] the body, null if larger than MAX_BODY_SIZE
+     * @throws IOException if the body cannot be read
+     */
+    private static byte[] readBody(HttpServletRequest request) throws IOException {
+        if (request.getContentLengthLong() > MAX_BODY_SIZE) {
+            return null;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        InputStream input = request.getInputStream();
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+            if (body.size() > MAX_BODY_SIZE) {
+                return null;
+            }
+        }
+        return body.toByteArray();
     }
 
+    /**
+     * Find the tokenID at the root of a JSON body, without building the whole document
+     * @param body the body of the request
+     * @return String the tokenID, null if the body has none or is not a JSON object
+     */
+    private static String findTokenID(byte[] body) {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8))) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return null;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (TOKEN_ID.equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                    return reader.nextString();
+                }
+                reader.skipValue();
+            }
+            return null;
+        } catch (IOException | IllegalStateException e) {
+            return null;
+        }
+    }
 }
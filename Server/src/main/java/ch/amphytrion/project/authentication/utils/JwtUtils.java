@@ -4,7 +4,10 @@ import ch.amphytrion.project.authentication.SecurityConstants;
 import ch.amphytrion.project.authentication.google_authentication.GoogleAuthenticationToken;
 import ch.amphytrion.project.entities.databaseentities.User;
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
@@ -28,7 +31,9 @@ import java.util.stream.Collectors;
  */
 public class JwtUtils {
 
-
+    // HMAC instances are thread safe, the key is only prepared once
+    private static final Algorithm ALGORITHM = Algorithm.HMAC512(SecurityConstants.SECRET.getBytes());
+    private static final JWTVerifier VERIFIER = JWT.require(ALGORITHM).build();
 
     public static void AddTokenWithSuccessfullAuthentication(HttpServletRequest req,
                                                              HttpServletResponse response,
@@ -42,10 +47,42 @@ public class JwtUtils {
         response.addHeader(SecurityConstants.HEADER_STRING, SecurityConstants.TOKEN_PREFIX + token);
     }
 
+    /**
+     * Send a new token only if the current one expires within the renewal window
+     * @param response the response to add the token to
+     * @param token the verified token of the request
+     */
+    public static void renewTokenIfExpiring(HttpServletResponse response, DecodedJWT token){
+        if(needsRenewal(token, System.currentTimeMillis())){
+            response.addHeader(SecurityConstants.HEADER_STRING, SecurityConstants.TOKEN_PREFIX + makeHeaderToken(token.getSubject()));
+        }
+    }
+
+    /**
+     * Check if a token expires within the renewal window
+     * @param token the verified token
+     * @param now the current time in milliseconds
+     * @return boolean true if a new token must be sent
+     */
+    public static boolean needsRenewal(DecodedJWT token, long now){
+        Date expiresAt = token.getExpiresAt();
+        return expiresAt == null || expiresAt.getTime() - now <= SecurityConstants.RENEWAL_WINDOW;
+    }
+
+    /**
+     * Verify the signature and the expiration of a token
+     * @param token the token without its prefix
+     * @return DecodedJWT the verified token
+     * @throws JWTVerificationException if the token is invalid or expired
+     */
+    public static DecodedJWT verifyToken(String token){
+        return VERIFIER.verify(token);
+    }
+
     public static String makeHeaderToken(String userID){
         return JWT.create()
                 .withSubject(userID)
                 .withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
-                .sign(Algorithm.HMAC512(SecurityConstants.SECRET.getBytes()));
+                .sign(ALGORITHM);
     }
 }
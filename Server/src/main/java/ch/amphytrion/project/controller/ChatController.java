@@ -1,8 +1,11 @@
 package ch.amphytrion.project.controller;
 
+import ch.amphytrion.project.dto.ContinuationToken;
+import ch.amphytrion.project.dto.MessagePageResponse;
 import ch.amphytrion.project.entities.databaseentities.Chat;
 import ch.amphytrion.project.entities.databaseentities.Message;
 import ch.amphytrion.project.entities.databaseentities.User;
+import ch.amphytrion.project.services.ChatPushService;
 import ch.amphytrion.project.services.ChatService;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
@@ -10,8 +13,10 @@ import io.swagger.annotations.ApiResponses;
 import lombok.SneakyThrows;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * RESTful chat controller. Used to map HTML requests to the corresponding methods
@@ -20,17 +25,23 @@ import org.springframework.web.bind.annotation.*;
  */
 @RestController
 public class ChatController extends BaseController implements IGenericController<Chat> {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
 
     @Autowired
     private ChatService chatService;
+    @Autowired
+    private ChatPushService chatPushService;
 
     /**
      * Constructor of the chat controller
      * @param chatService corresponding chat service to the chat controller
+     * @param chatPushService service sending the new messages to the connected clients
      */
     @Autowired
-    public ChatController(ChatService chatService) {
+    public ChatController(ChatService chatService, ChatPushService chatPushService) {
         this.chatService = chatService;
+        this.chatPushService = chatPushService;
     }
 
     /**
@@ -38,23 +49,86 @@ public class ChatController extends BaseController implements IGenericController
      * @param chatId The id of the chat
      * @param message The content of message
      * @throws CustomException
-     * @return ResponseEntity<Chat> The chat that received the message
+     * @return ResponseEntity<Message> The message created
      */
     @SneakyThrows
     @PostMapping("/chat/createMessage/{chatId}")
-    public ResponseEntity<Chat> createMessage(@PathVariable String chatId, @RequestBody Message message) {
+    public ResponseEntity<Message> createMessage(@PathVariable String chatId, @RequestBody Message message) {
         checkUserIsStudent();
         User currentUser = getCurrentUser();
-        Chat chat = chatService.findById(chatId);
         try {
+            if (!chatService.existsById(chatId)) {
+                throw new CustomException("Le chat n'existe pas", HttpStatus.NOT_ACCEPTABLE, null);
+            }
             message.setUsername(currentUser.getUsername());
-            chat.getMessages().add(message);
-            return ResponseEntity.ok().body(chatService.save(chat));
+            Message created = chatService.addMessage(chatId, message);
+            chatPushService.publish(chatId, created);
+            return ResponseEntity.ok().body(created);
         } catch (Exception e) {
             throw new CustomException("Le message n'a pas pu être créé", HttpStatus.NOT_ACCEPTABLE, null);
         }
     }
 
+    /**
+     * Get a page of the messages of a chat. Without cursor, the latest messages are returned newest first, the
+     * before cursor gives the older messages and the after cursor only the messages sent since (oldest first)
+     * @param chatId The id of the chat
+     * @param before The cursor of the oldest message known
+     * @param after The cursor of the newest message known
+     * @param limit The maximum number of messages, bounded by MAX_PAGE_SIZE
+     * @throws CustomException
+     * @return ResponseEntity<MessagePageResponse> the messages and the cursors of the next pages
+     */
+    @SneakyThrows
+    @GetMapping("/chat/{chatId}/messages")
+    public ResponseEntity<MessagePageResponse> getMessages(@PathVariable String chatId,
+                                                           @RequestParam(required = false) String before,
+                                                           @RequestParam(required = false) String after,
+                                                           @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        if (before != null && after != null) {
+            throw new CustomException("Les curseurs before et after ne peuvent pas être utilisés ensemble", HttpStatus.NOT_ACCEPTABLE, null);
+        }
+        if (!chatService.existsById(chatId)) {
+            throw new CustomException("Le chat n'existe pas", HttpStatus.NOT_ACCEPTABLE, null);
+        }
+        int pageSize = limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        try {
+            MessagePageResponse page = new MessagePageResponse();
+            if (after != null) {
+                page.messages = chatService.findMessagesAfter(chatId, after, pageSize);
+                page.after = page.messages.isEmpty() ? after : new ContinuationToken(page.messages.get(page.messages.size() - 1)).encode();
+            } else {
+                page.messages = chatService.findMessagesBefore(chatId, before, pageSize);
+                if (page.messages.size() == pageSize) {
+                    page.before = new ContinuationToken(page.messages.get(page.messages.size() - 1)).encode();
+                }
+                if (before == null && !page.messages.isEmpty()) {
+                    page.after = new ContinuationToken(page.messages.get(0)).encode();
+                }
+            }
+            return ResponseEntity.ok().body(page);
+        } catch (Exception e) {
+            throw new CustomException("Les messages n'ont pas pu être récupérés", HttpStatus.NOT_ACCEPTABLE, null);
+        }
+    }
+
+    /**
+     * Open a server-sent events stream receiving the new messages of a chat. The id of each event is the after cursor
+     * of the message, so a client reconnecting loads the messages missed with the messages endpoint
+     * @param chatId The id of the chat
+     * @throws CustomException
+     * @return SseEmitter the stream of the messages
+     */
+    @SneakyThrows
+    @GetMapping(path = "/chat/{chatId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@PathVariable String chatId) {
+        checkUserIsStudent();
+        if (!chatService.existsById(chatId)) {
+            throw new CustomException("Le chat n'existe pas", HttpStatus.NOT_ACCEPTABLE, null);
+        }
+        return chatPushService.subscribe(chatId);
+    }
+
     /**
      * Get a chat by its id
      * @param chatId The id of the chat
@@ -66,7 +140,7 @@ public class ChatController extends BaseController implements IGenericController
     public ResponseEntity<Chat> getById(@PathVariable String chatId) {
         Chat chat = chatService.findById(chatId);
         if(chat != null){
-            return ResponseEntity.ok().body(chatService.findById(chatId));
+            return ResponseEntity.ok().body(chat);
         } else {
             throw new CustomException("Le chat n'existe pas", HttpStatus.NOT_ACCEPTABLE, null);
         }
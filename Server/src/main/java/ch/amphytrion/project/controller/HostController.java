@@ -16,8 +16,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -145,7 +145,9 @@ public class HostController extends BaseController implements IGenericController
                     new City(hostRequest.address.cityName, hostRequest.address.npa)));
             hostProfil.setCovidData(hostRequest.covidData);
             user.setHostProfil(hostProfil);
-            return ResponseEntity.ok().body(new HostResponse(userService.save(user)));
+            User savedUser = userService.save(user);
+            locationService.updateHostOpen(savedUser);
+            return ResponseEntity.ok().body(new HostResponse(savedUser));
         } catch (Exception e) {
             throw new CustomException("L'hôte n'a pas été mis à jour", HttpStatus.NOT_ACCEPTABLE, null);
         }
@@ -163,29 +165,10 @@ public class HostController extends BaseController implements IGenericController
         try {
             checkUserIsHost();
             User user = getCurrentUser();
-            List<Location> locations = locationService.findByHostId(user.getId());
-            List<Meeting> meetings = new ArrayList<>();
-            List<MeetingResponse> meetingResponses = new ArrayList<>();
-            for(Location location : locations) {
-                meetings.addAll(meetingService.findByLocationID(location.getId()));
-            }
-
-            //Filtrer meetings à l'aide d'iterator car pas de remove dans un foreach
-            Iterator<Meeting> iterator = meetings.iterator();
-            while(iterator.hasNext()) {
-                Meeting meeting = iterator.next();
-                DatesFilterDTO dto = new DatesFilterDTO(meeting.getStartDate(), meeting.getEndDate());
-                if (!dto.isBetween(datesFilterDTO)) {
-                    iterator.remove();
-                }
-            }
-
-            //Construction de la liste de meetingResponses
-            for(Meeting meeting : meetings) {
-                Location location = locationService.findById(meeting.getLocationID());
-                meetingResponses.add(new MeetingResponse(meeting, location));
-            }
-            return ResponseEntity.ok().body(meetingResponses);
+            Map<String, Location> locations = locationService.findByHostId(user.getId()).stream()
+                    .collect(Collectors.toMap(Location::getId, location -> location));
+            List<Meeting> meetings = meetingService.findAtLocations(locations.keySet(), datesFilterDTO);
+            return ResponseEntity.ok().body(MeetingResponse.fromMeetings(meetings, locations));
         }
         catch (Exception e) {
             throw new CustomException("Impossible de récupérer la liste des meetings", HttpStatus.NOT_ACCEPTABLE, null);
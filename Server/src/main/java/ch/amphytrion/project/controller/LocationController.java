@@ -1,7 +1,6 @@
 package ch.amphytrion.project.controller;
 
 import ch.amphytrion.project.dto.LocationResponse;
-import ch.amphytrion.project.entities.databaseentities.CovidData;
 import ch.amphytrion.project.entities.databaseentities.Location;
 import ch.amphytrion.project.entities.databaseentities.User;
 import ch.amphytrion.project.services.LocationService;
@@ -12,7 +11,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -22,6 +20,8 @@ import java.util.List;
  */
 @RestController
 public class LocationController extends BaseController implements IGenericController<Location> {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 500;
 
     private final LocationService locationService;
     private final UserService userService;
@@ -38,31 +38,68 @@ public class LocationController extends BaseController implements IGenericContro
         this.userService = userService;
         this.meetingService = meetingService;
     }
-     /**
-     * Retrieve all the locations in the database
+    /**
+     * Retrieve the locations of the open hosts, a page of them if a page or a size is given
+     * @param page the number of the page, starting at 0
+     * @param size the number of locations in a page, bounded by MAX_PAGE_SIZE
      * @throws CustomException
-     * @return ResponseEntity<List<Location>> return all the locations of the database RESTful formatted
+     * @return ResponseEntity<List<Location>> return the open locations RESTful formatted
      */
     @SneakyThrows
     @GetMapping("/locations")
-    public ResponseEntity<List<Location>> getAll() {
+    public ResponseEntity<List<Location>> getAll(@RequestParam(required = false) Integer page,
+                                                 @RequestParam(required = false) Integer size) {
         try {
-            List<Location> locations = locationService.findAll();
-            List<Location> openLocations = new ArrayList<>();
-            for(Location location : locations) {
-                CovidData covidData = userService.findById(location.getHostId()).getHostProfil().getCovidData();
-                if(covidData.getIsOpen()) {
-                    openLocations.add(location);
-                }
+            if (page == null && size == null) {
+                return ResponseEntity.ok().body(locationService.findOpen());
             }
-
-            return ResponseEntity.ok().body(openLocations);
-
+            return ResponseEntity.ok().body(locationService.findOpen(pageNumber(page), pageSize(size)));
         } catch (Exception e) {
             throw new CustomException("Erreur lors de la récupération des locations", HttpStatus.NOT_ACCEPTABLE, null);
         }
     }
 
+    /**
+     * Search a page of the locations of the open hosts by their name, description and tags
+     * @param q the words searched
+     * @param page the number of the page, starting at 0
+     * @param size the number of locations in a page, bounded by MAX_PAGE_SIZE
+     * @throws CustomException
+     * @return ResponseEntity<List<Location>> return the locations found, the best matches first, RESTful formatted
+     */
+    @SneakyThrows
+    @GetMapping("/locations/search")
+    public ResponseEntity<List<Location>> search(@RequestParam String q,
+                                                 @RequestParam(required = false) Integer page,
+                                                 @RequestParam(required = false) Integer size) {
+        if (q.trim().isEmpty()) {
+            return getAll(pageNumber(page), pageSize(size));
+        }
+        try {
+            return ResponseEntity.ok().body(locationService.searchOpen(q, pageNumber(page), pageSize(size)));
+        } catch (Exception e) {
+            throw new CustomException("Erreur lors de la recherche des locations", HttpStatus.NOT_ACCEPTABLE, null);
+        }
+    }
+
+    /**
+     * Number of the page requested
+     * @param page the number of the page given, may be null
+     * @return int the number of the page, 0 by default
+     */
+    private static int pageNumber(Integer page) {
+        return page == null ? 0 : Math.max(page, 0);
+    }
+
+    /**
+     * Size of the page requested
+     * @param size the size given, may be null
+     * @return int the size of the page, DEFAULT_PAGE_SIZE by default and bounded by MAX_PAGE_SIZE
+     */
+    private static int pageSize(Integer size) {
+        return size == null || size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+    }
+
     /**
      * Add a location to the database
      * @param entity a location RESTfully formatted
@@ -77,6 +114,7 @@ public class LocationController extends BaseController implements IGenericContro
             User user = getCurrentUser();
             if(entity.getId().isEmpty()){
                 entity.setHostId(user.getId());
+                entity.setHostOpen(LocationService.isOpen(user.getHostProfil()));
                 entity.setId(null);
                 Location location = locationService.save(entity);
                 return ResponseEntity.ok().body(new LocationResponse( location,  userService));
@@ -124,7 +162,9 @@ public class LocationController extends BaseController implements IGenericContro
     @PatchMapping("/location")
     public ResponseEntity<LocationResponse> update(@RequestBody Location entity) {
         try {
-            if(entity.getId() != null && locationService.findById(entity.getId()) != null){
+            Location existing = entity.getId() != null ? locationService.findById(entity.getId()) : null;
+            if(existing != null){
+               entity.setHostOpen(existing.getHostOpen());
                return  ResponseEntity.ok().body(new LocationResponse(locationService.save(entity), userService));
             }
         } catch (Exception e) {
@@ -2,8 +2,12 @@ package ch.amphytrion.project.controller;
 
 import ch.amphytrion.project.dto.DatesFilterDTO;
 import ch.amphytrion.project.dto.FilterRequest;
+import ch.amphytrion.project.dto.MeetingFacetsResponse;
+import ch.amphytrion.project.dto.MeetingPageResponse;
 import ch.amphytrion.project.dto.MeetingResponse;
+import ch.amphytrion.project.dto.SuggestionResponse;
 import ch.amphytrion.project.entities.databaseentities.*;
+import ch.amphytrion.project.services.AutocompleteIndex;
 import ch.amphytrion.project.services.ChatService;
 import ch.amphytrion.project.services.LocationService;
 import ch.amphytrion.project.services.MeetingService;
@@ -30,7 +34,7 @@ public class MeetingController extends BaseController implements IGenericControl
     private UserService studentService;
     private ChatService chatService;
     private LocationService locationService;
-
+    private AutocompleteIndex autocompleteIndex;
 
     /**
      * Constructor of the meeting controller
@@ -38,13 +42,15 @@ public class MeetingController extends BaseController implements IGenericControl
      * @param studentService corresponding student service to the meeting controller
      * @param chatService corresponding chat service to the meeting controller
      * @param locationService corresponding location service to the meeting controller
+     * @param autocompleteIndex index of the suggestions of the search
      */
     @Autowired
-    public MeetingController(MeetingService meetingService, UserService studentService, ChatService chatService, LocationService locationService) {
+    public MeetingController(MeetingService meetingService, UserService studentService, ChatService chatService, LocationService locationService, AutocompleteIndex autocompleteIndex) {
         this.meetingService = meetingService;
         this.studentService = studentService;
         this.chatService = chatService;
         this.locationService = locationService;
+        this.autocompleteIndex = autocompleteIndex;
     }
 
     /**
@@ -58,13 +64,8 @@ public class MeetingController extends BaseController implements IGenericControl
         try {
             checkUserIsStudent();
             User user = getCurrentUser();
-                ArrayList<MeetingResponse> meetingResponses = new ArrayList<>();
-                for(Meeting meeting : meetingService.findOwnerFutureMeetings(user.getId())) {
-                    Location location = locationService.findById(meeting.getLocationID());
-                    MeetingResponse meetingResponse = new MeetingResponse(meeting, location);
-                    meetingResponses.add(meetingResponse);
-                }
-                return ResponseEntity.ok().body(meetingResponses);
+                List<Meeting> meetings = meetingService.findOwnerFutureMeetings(user.getId());
+                return ResponseEntity.ok().body(MeetingResponse.fromMeetings(meetings, locationService));
         } catch (Exception e) {
             throw new CustomException("Aucun meeting n'a été trouvé", HttpStatus.NOT_ACCEPTABLE, null);
         }
@@ -82,16 +83,11 @@ public class MeetingController extends BaseController implements IGenericControl
         try {
             checkUserIsStudent();
             User user = getCurrentUser();
-            Meeting meeting = meetingService.findById(meetingID);
-            StudentProfil studentProfil = user.getStudentProfil();
-            if (studentProfil != null) {
-                 meeting.getMembersID().removeIf(memberId -> memberId.equals(user.getId()));
-                 studentProfil.getMeetingsParticipationsID().removeIf(id -> id.equals(meetingID));
-                 studentService.save(user);
-                 meetingService.save(meeting);
+            if (user.getStudentProfil() != null) {
+                Meeting meeting = meetingService.removeMemberFromMeeting(user, meetingID);
                 Location location = locationService.findById(meeting.getLocationID());
                 return ResponseEntity.ok().body(new MeetingResponse(meeting, location));
-                }
+            }
         } catch (Exception e) {
             throw new CustomException("Meeting introuvable", HttpStatus.NOT_ACCEPTABLE, null);
         }
@@ -102,22 +98,16 @@ public class MeetingController extends BaseController implements IGenericControl
      * Retrieve all the meetings that the user is part of
      * @param datesFilter an object made of two dates to filter the meetings response
      * @throws CustomException
-     * @return ResponseEntity<List<MeetingResponse>> The list of meetings that the user is part of, RESTfully formated
+     * @return ResponseEntity<List<MeetingResponse>> The list of meetings that the user is part of ordered by start date, RESTfully formated
      */
     @SneakyThrows
     @PostMapping("/getMyMeetings")
-    public ResponseEntity<List<MeetingResponse>> getMeetingsWhereUserParticipate(DatesFilterDTO datesFilter) {
+    public ResponseEntity<List<MeetingResponse>> getMeetingsWhereUserParticipate(@RequestBody(required = false) DatesFilterDTO datesFilter) {
         try {
             checkUserIsStudent();
             StudentProfil studentProfil = getCurrentUser().getStudentProfil();
-            ArrayList<MeetingResponse> meetingResponses = new ArrayList<>();
-            for(String meetingId : studentProfil.getMeetingsParticipationsID()) {
-                Meeting meeting = meetingService.findById(meetingId);
-                Location location = locationService.findById(meeting.getLocationID());
-                MeetingResponse meetingResponse = new MeetingResponse(meeting, location);
-                meetingResponses.add(meetingResponse);
-            }
-            return ResponseEntity.ok().body(meetingResponses);
+            List<Meeting> meetings = meetingService.findParticipations(studentProfil, datesFilter);
+            return ResponseEntity.ok().body(MeetingResponse.fromMeetings(meetings, locationService));
         } catch (Exception e) {
             System.out.println("");
             throw new CustomException("Aucun meeting n'a été trouvé", HttpStatus.NOT_ACCEPTABLE, null);
@@ -144,28 +134,49 @@ public class MeetingController extends BaseController implements IGenericControl
     }
 
     /**
-     * Search for specific meetings in the database
-     * @param filter an object used to filter the meetings
+     * Search for a page of specific meetings in the database
+     * @param filter an object used to filter the meetings, with the token of the previous page
      * @throws CustomException
-     * @return ResponseEntity<List<MeetingResponse>> The meetings found , RESTfully formated
+     * @return ResponseEntity<MeetingPageResponse> The meetings found, the token of the next page and with the first page
+     * the counts of the meetings per tag, location and day, RESTfully formated
      */
     @SneakyThrows
     @PostMapping("/meetings/filter")
-    public ResponseEntity<List<MeetingResponse>> searchWithFilter(@RequestBody FilterRequest filter){
+    public ResponseEntity<MeetingPageResponse> searchWithFilter(@RequestBody FilterRequest filter){
         try {
-            List<MeetingResponse> meetingResponses = new ArrayList<>();
-            List<Meeting> result = meetingService.allFilters(meetingService.findAll(), filter);
-            for(Meeting meeting : result) {
-                Location location = locationService.findById(meeting.getLocationID());
-                MeetingResponse meetingResponse = new MeetingResponse(meeting, location);
-                meetingResponses.add(meetingResponse);
+            // The words of the name are completed once for the page and the counts
+            String text = meetingService.searchedText(filter);
+            List<Meeting> result = meetingService.searchPageWithFilter(filter, text);
+            // The counts are the same for all the pages of a filter, the names of their locations are cached for the page
+            MeetingFacetsResponse facets = null;
+            if (filter.continuationToken == null || filter.continuationToken.isEmpty()) {
+                facets = meetingService.countFacets(filter, text);
             }
-            return ResponseEntity.ok().body(meetingResponses);
+            List<MeetingResponse> meetingResponses = MeetingResponse.fromMeetings(result, locationService);
+            return ResponseEntity.ok().body(new MeetingPageResponse(meetingResponses, meetingService.nextPageToken(filter, result), facets));
         } catch (Exception e) {
             throw new CustomException("Aucun meeting n'a été trouvé", HttpStatus.NOT_ACCEPTABLE, null);
         }
     }
 
+    /**
+     * Suggest meeting names, tags and locations while the user types a search
+     * @param q the text typed
+     * @param limit the maximum number of suggestions
+     * @throws CustomException
+     * @return ResponseEntity<List<SuggestionResponse>> The most popular suggestions having a word starting with the text, RESTfully formated
+     */
+    @SneakyThrows
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<SuggestionResponse>> autocomplete(@RequestParam String q,
+                                                                 @RequestParam(defaultValue = "" + AutocompleteIndex.MAX_SUGGESTIONS) int limit) {
+        try {
+            return ResponseEntity.ok().body(autocompleteIndex.suggest(q, limit));
+        } catch (Exception e) {
+            throw new CustomException("Aucune suggestion n'a été trouvée", HttpStatus.NOT_ACCEPTABLE, null);
+        }
+    }
+
     /**
      * Add a specified meeting in the database
      * @param meeting the meeting to add, RESTfully formatted
@@ -206,20 +217,13 @@ public class MeetingController extends BaseController implements IGenericControl
     public ResponseEntity<MeetingResponse> update(@RequestBody Meeting meeting) {
         try {
             if(meeting.getId() != null){
-                Meeting existantMeeting = meetingService.findById(meeting.getId());
+                /* Patch for update selected fields, the members joining meanwhile are kept */
+                Meeting existantMeeting = meetingService.updateDetails(meeting);
                 if(existantMeeting == null){
                     throw new CustomException("Meeting avec id :" + meeting.getId() + " non trouvé", HttpStatus.NOT_ACCEPTABLE, null);
                 }
-                /* Patch for update selected fields */
-                existantMeeting.setName(meeting.getName());
-                existantMeeting.setDescription(meeting.getDescription());
-                existantMeeting.setTags(meeting.getTags());
-                existantMeeting.setLocationID(meeting.getLocationID());
-                existantMeeting.setIsPrivate(meeting.getIsPrivate());
-                existantMeeting.setStartDate(meeting.getStartDate());
-                existantMeeting.setEndDate(meeting.getEndDate());
                 Location location = locationService.findById(meeting.getLocationID());
-                return ResponseEntity.ok().body(new MeetingResponse(meetingService.save(existantMeeting), location));
+                return ResponseEntity.ok().body(new MeetingResponse(existantMeeting, location));
             }
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).build();
@@ -0,0 +1,116 @@
+package ch.amphytrion.project.dto;
+
+import ch.amphytrion.project.entities.databaseentities.Meeting;
+import ch.amphytrion.project.entities.databaseentities.Message;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+
+/**
+ * Position of the last element of a page (meeting or message), sent to the client as an opaque token.
+ * The results ranked by relevance have no order on their fields, their position is the number of results already read.
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@AllArgsConstructor
+@Data
+public class ContinuationToken {
+    private static final String SEPARATOR = ":";
+    private static final String OFFSET_PREFIX = "+";
+
+    private Instant date;
+    private String id;
+    // Number of results already read, only for the results ranked by relevance
+    private Integer offset;
+
+    /**
+     * ContinuationToken constructor
+     * @param date the date of the last element
+     * @param id the id of the last element
+     */
+    public ContinuationToken(Instant date, String id) {
+        this(date, id, null);
+    }
+
+    /**
+     * ContinuationToken constructor
+     * @param meeting the last meeting of a page
+     */
+    public ContinuationToken(Meeting meeting) {
+        this(meeting.getStartDate(), meeting.getId());
+    }
+
+    /**
+     * ContinuationToken constructor
+     * @param message the last message of a page
+     */
+    public ContinuationToken(Message message) {
+        this(message.getDate() != null ? message.getDate().atZone(ZoneId.systemDefault()).toInstant() : null, message.getId());
+    }
+
+    /**
+     * Position in results ranked by relevance
+     * @param offset the number of results already read
+     * @return ContinuationToken the position
+     */
+    public static ContinuationToken atOffset(int offset) {
+        return new ContinuationToken(null, null, offset);
+    }
+
+    /**
+     * Date of the token in the local time of the server, used by the messages
+     * @return LocalDateTime the date, null if not specified
+     */
+    public LocalDateTime localDate() {
+        return date != null ? LocalDateTime.ofInstant(date, ZoneId.systemDefault()) : null;
+    }
+
+    /**
+     * Encode the token to send it to the client
+     * @return String the opaque token
+     */
+    public String encode() {
+        if (offset != null) {
+            return encode(OFFSET_PREFIX + offset);
+        }
+        String date = this.date != null ? String.valueOf(this.date.toEpochMilli()) : "";
+        return encode(date + SEPARATOR + id);
+    }
+
+    private static String encode(String token) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token received from the client
+     * @param token the opaque token
+     * @return ContinuationToken the position decoded, null if no token was given
+     * @throws IllegalArgumentException if the token is invalid
+     */
+    public static ContinuationToken decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        if (decoded.startsWith(OFFSET_PREFIX)) {
+            int offset = Integer.parseInt(decoded.substring(OFFSET_PREFIX.length()));
+            if (offset < 0) {
+                throw new IllegalArgumentException("Invalid continuation token");
+            }
+            return atOffset(offset);
+        }
+        int separator = decoded.indexOf(SEPARATOR);
+        if (separator < 0 || separator == decoded.length() - 1) {
+            throw new IllegalArgumentException("Invalid continuation token");
+        }
+        String date = decoded.substring(0, separator);
+        return new ContinuationToken(
+                date.isEmpty() ? null : Instant.ofEpochMilli(Long.parseLong(date)),
+                decoded.substring(separator + 1));
+    }
+}
@@ -1,14 +1,13 @@
 package ch.amphytrion.project.dto;
 
-import ch.amphytrion.project.controller.CustomException;
-import ch.amphytrion.project.entities.databaseentities.Location;
 import ch.amphytrion.project.entities.databaseentities.Meeting;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
-import org.joda.time.DateTime;
-import org.joda.time.format.ISODateTimeFormat;
 import lombok.Data;
 
+import java.time.Instant;
+import java.time.OffsetDateTime;
+
 /**
  * Filter composed of two dates. Used in meetings search
  *
@@ -26,19 +25,38 @@ public class DatesFilterDTO implements InterfaceDTO {
      * @param meeting the meeting to filter (or not)
      */
     public DatesFilterDTO (Meeting meeting){
-        this.startDate = meeting.getStartDate();
-        this.endDate = meeting.getEndDate();
+        this.startDate = meeting.getStartDate() != null ? meeting.getStartDate().toString() : null;
+        this.endDate = meeting.getEndDate() != null ? meeting.getEndDate().toString() : null;
     }
 
     /**
      * Check if two dates are in (or part of) two other dates
      * @param datesFilter Object made of two dates, REST convenient
-     * @throws CustomException
      * @return boolean true if between two dates given in parameters
      */
     public boolean isBetween(DatesFilterDTO datesFilter) {
-        // CHECK IF DATE NOT NULL OR EMPTY
+        return isBetween(startInstant(), endInstant(), datesFilter.startInstant(), datesFilter.endInstant());
+    }
+
+    /**
+     * Check if a period is in (or part of) the dates of this filter
+     * @param start the start of the period
+     * @param end the end of the period
+     * @return boolean true if the period is between the dates of the filter
+     */
+    public boolean includes(Instant start, Instant end) {
+        return isBetween(start, end, startInstant(), endInstant());
+    }
 
+    /**
+     * Check if a period is in (or part of) two other dates
+     * @param start the start of the period
+     * @param end the end of the period
+     * @param filterStart the start of the filter, null if not specified
+     * @param filterEnd the end of the filter, null if not specified
+     * @return boolean true if the period is between the two dates of the filter
+     */
+    public static boolean isBetween(Instant start, Instant end, Instant filterStart, Instant filterEnd) {
         /*
         4 cases :
         - filtre a 2 dates => vérifications
@@ -48,47 +66,54 @@ public class DatesFilterDTO implements InterfaceDTO {
          */
         boolean isStartInBetween = true;
         boolean isEndInBetween = true;
-        if( !datesFilter.startDate.equals("") || !datesFilter.endDate.equals("")) {
-            if (datesFilter.startDate.equals("")) {
+        if (filterStart != null || filterEnd != null) {
+            if (filterStart == null) {
                 isEndInBetween = false;
-                isStartInBetween = compareStringDatesSmaller(this.getStartDate(), datesFilter.getEndDate());
-            }else if (datesFilter.endDate.equals("")) {
+                isStartInBetween = start.isBefore(filterEnd);
+            } else if (filterEnd == null) {
                 isStartInBetween = false;
-                isEndInBetween = compareStringDatesBigger(this.getEndDate(), datesFilter.getStartDate());
+                isEndInBetween = end.isAfter(filterStart);
             } else {
-                /* les deux dates sont remplies : */
-                isStartInBetween = compareStringDatesSmaller(this.getStartDate(), datesFilter.getEndDate())
-                                    && compareStringDatesBigger(this.getStartDate(), datesFilter.getStartDate());
                 /* on vérifie que la date de début de l'objet est bien comprise entre la date de début et date de fin du filter */
-                isEndInBetween = compareStringDatesBigger(this.getEndDate(), datesFilter.getStartDate())
-                                    && compareStringDatesSmaller(this.getEndDate(), datesFilter.getEndDate());
+                isStartInBetween = start.isBefore(filterEnd) && start.isAfter(filterStart);
                 /* on vérifie que la date de fin de l'objet est bien comprise entre la date de début et date de fin du filter */
+                isEndInBetween = end.isAfter(filterStart) && end.isBefore(filterEnd);
             }
         }
         return isStartInBetween || isEndInBetween;
     }
 
     /**
-     * Parse convert two Strings to dates and check if one is after the another
-     * @param sDate1 an iso date in String
-     * @param sDate2 an iso date in String
-     * @return boolean true if sDate1 > sDate2
+     * Start date of the filter
+     * @return Instant the start date, null if not specified
+     */
+    public Instant startInstant() {
+        return toInstant(startDate);
+    }
+
+    /**
+     * End date of the filter
+     * @return Instant the end date, null if not specified
+     */
+    public Instant endInstant() {
+        return toInstant(endDate);
+    }
+
+    /**
+     * Convert an iso date to an instant
+     * @param date an iso date in String
+     * @return Instant the date parsed, null if the date is not specified
      */
-    public boolean compareStringDatesBigger(String sDate1, String sDate2) {
-        DateTime dateTime1 = ISODateTimeFormat.dateTime().parseDateTime(sDate1);
-        DateTime dateTime2 = ISODateTimeFormat.dateTime().parseDateTime(sDate2);
-        return dateTime1.isAfter(dateTime2);
+    public static Instant toInstant(String date) {
+        return isEmpty(date) ? null : OffsetDateTime.parse(date).toInstant();
     }
 
     /**
-     * Parse convert two Strings to dates and check if one is before the another
-     * @param sDate1 an iso date in String
-     * @param sDate2 an iso date in String
-     * @return boolean true if sDate1 < sDate2
+     * Check if a date of a filter is not specified
+     * @param date an iso date in String
+     * @return boolean true if the date is null or empty
      */
-    public boolean compareStringDatesSmaller(String sDate1, String sDate2) {
-        DateTime dateTime1 = ISODateTimeFormat.dateTime().parseDateTime(sDate1);
-        DateTime dateTime2 = ISODateTimeFormat.dateTime().parseDateTime(sDate2);
-        return dateTime1.isBefore(dateTime2);
+    private static boolean isEmpty(String date) {
+        return date == null || date.isEmpty();
     }
 }
@@ -0,0 +1,19 @@
+package ch.amphytrion.project.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+/**
+ * Number of meetings having a value of a facet (a tag, a location or a day) RESTful response class
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetResponse implements InterfaceDTO {
+    // Name of the tag, id of the location or day (yyyy-MM-dd)
+    public String value;
+    // Name of the location, null for the other facets
+    public String name;
+    public long count;
+}
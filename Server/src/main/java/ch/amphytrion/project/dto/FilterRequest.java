@@ -15,9 +15,46 @@ import java.util.ArrayList;
 @NoArgsConstructor
 @AllArgsConstructor
 public class FilterRequest implements InterfaceDTO {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 50;
+
     public String name;
     public String startDate;
     public String endDate;
     public ArrayList<Tag> tags = new ArrayList<>();
     public Location location;
+    public Integer pageSize;
+    // Token returned with the previous page, null for the first page
+    public String continuationToken;
+
+    /**
+     * FilterRequest constructor for the first page of results
+     * @param name the words searched in the names and descriptions of the meetings
+     * @param startDate the start of the dates searched
+     * @param endDate the end of the dates searched
+     * @param tags the tags searched
+     * @param location the location searched
+     */
+    public FilterRequest(String name, String startDate, String endDate, ArrayList<Tag> tags, Location location) {
+        this(name, startDate, endDate, tags, location, null, null);
+    }
+
+    /**
+     * Check if the meetings are searched by name
+     * @return boolean true if the name contains a word, searched in the names and descriptions of the meetings
+     */
+    public boolean hasName() {
+        return name != null && !name.trim().isEmpty();
+    }
+
+    /**
+     * Number of meetings to return in a page
+     * @return int the page size requested, bounded by MAX_PAGE_SIZE
+     */
+    public int pageSize() {
+        if (pageSize == null || pageSize <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(pageSize, MAX_PAGE_SIZE);
+    }
 }
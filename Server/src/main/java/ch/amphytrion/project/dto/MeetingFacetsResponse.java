@@ -0,0 +1,25 @@
+package ch.amphytrion.project.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Numbers of meetings matching a filter, per tag, per location and per day, RESTful response class
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+public class MeetingFacetsResponse implements InterfaceDTO {
+    public static final int MAX_VALUES = 50;
+
+    // The most used tags and locations first, at most MAX_VALUES
+    public List<FacetResponse> tags = new ArrayList<>();
+    public List<FacetResponse> locations = new ArrayList<>();
+    // The first MAX_VALUES days in chronological order
+    public List<FacetResponse> days = new ArrayList<>();
+    public long total;
+}
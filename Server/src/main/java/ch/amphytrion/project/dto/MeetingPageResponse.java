@@ -0,0 +1,31 @@
+package ch.amphytrion.project.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Page of meetings RESTful response class
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+public class MeetingPageResponse implements InterfaceDTO {
+    public List<MeetingResponse> meetings = new ArrayList<>();
+    // Token to send back in the filter to get the next page, null if there is no more meetings
+    public String continuationToken;
+    // Counts of all the meetings matching the filter, only sent with the first page
+    public MeetingFacetsResponse facets;
+
+    /**
+     * MeetingPageResponse constructor for a page without facets
+     * @param meetings the meetings of the page
+     * @param continuationToken the token of the next page, null if there is no more meetings
+     */
+    public MeetingPageResponse(List<MeetingResponse> meetings, String continuationToken) {
+        this(meetings, continuationToken, null);
+    }
+}
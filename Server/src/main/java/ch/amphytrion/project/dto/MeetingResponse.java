@@ -8,7 +8,9 @@ import org.springframework.data.annotation.Id;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * Meeting RESTful response class
@@ -41,8 +43,8 @@ public class MeetingResponse implements InterfaceDTO {
         this.ownerID = meeting.getOwnerID();
         this.chatID = meeting.getChatID();
         this.tags = meeting.getTags();
-        this.startDate = meeting.getStartDate();
-        this.endDate = meeting.getEndDate();
+        this.startDate = meeting.getStartDate() != null ? meeting.getStartDate().toString() : null;
+        this.endDate = meeting.getEndDate() != null ? meeting.getEndDate().toString() : null;
         this.isPrivate = meeting.getIsPrivate();
         this.membersId = meeting.getMembersID();
         if(location != null){
@@ -55,6 +57,31 @@ public class MeetingResponse implements InterfaceDTO {
 
     }
 
+    /**
+     * Build the responses of a list of meetings, loading all their locations in a single query
+     * @param meetings the meetings to format
+     * @param locationService the service used to load the locations
+     * @return List<MeetingResponse> the meetings RESTfully formatted, in the same order
+     */
+    public static List<MeetingResponse> fromMeetings(List<Meeting> meetings, LocationService locationService) {
+        List<String> locationIds = meetings.stream().map(Meeting::getLocationID).collect(Collectors.toList());
+        return fromMeetings(meetings, locationService.findByIds(locationIds));
+    }
+
+    /**
+     * Build the responses of a list of meetings from already loaded locations
+     * @param meetings the meetings to format
+     * @param locations the locations of the meetings, by id
+     * @return List<MeetingResponse> the meetings RESTfully formatted, in the same order
+     */
+    public static List<MeetingResponse> fromMeetings(List<Meeting> meetings, Map<String, Location> locations) {
+        List<MeetingResponse> meetingResponses = new ArrayList<>();
+        for (Meeting meeting : meetings) {
+            meetingResponses.add(new MeetingResponse(meeting, locations.get(meeting.getLocationID())));
+        }
+        return meetingResponses;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,24 @@
+package ch.amphytrion.project.dto;
+
+import ch.amphytrion.project.entities.databaseentities.Message;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Page of messages of a chat RESTful response class
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePageResponse implements InterfaceDTO {
+    // Newest first, or oldest first for the messages after a cursor
+    public List<Message> messages = new ArrayList<>();
+    // Cursor to get the older messages, null if there is no more messages
+    public String before;
+    // Cursor to get the new messages, null when browsing the history
+    public String after;
+}
@@ -0,0 +1,23 @@
+package ch.amphytrion.project.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+/**
+ * Suggestion of search RESTful response class
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionResponse implements InterfaceDTO {
+    public static final String MEETING = "meeting";
+    public static final String TAG = "tag";
+    public static final String LOCATION = "location";
+
+    // Kind of the suggestion: meeting name, tag or location
+    public String type;
+    public String text;
+    // Id of the location suggested, null for the meeting names and the tags
+    public String id;
+}
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.ArrayList;
@@ -19,6 +20,8 @@ import java.util.List;
 public class Chat {
     @Id
     private String id;
+    // Stored in the MessageBucket collection, filled by ChatService
+    @Transient
     private List<Message> messages = new ArrayList<>();
 
     public Chat(){
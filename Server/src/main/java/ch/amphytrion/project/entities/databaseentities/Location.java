@@ -4,6 +4,9 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.ArrayList;
@@ -17,17 +20,24 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
-@Document
+@Document(language = "french")
+@CompoundIndex(name = "hostOpen_id", def = "{'hostOpen': 1, '_id': 1}")
 public class Location {
     @Id
     private String id;
+    @TextIndexed(weight = 3)
     private String name;
+    @TextIndexed
     private String description;
     private Integer nbPeople;
+    @Indexed
     private String hostId;
     private String hostName;
+    @TextIndexed(weight = 2)
     private List<Tag> tags = new ArrayList<>();
     private List<OpeningHour> openingHours = new ArrayList<>();
+    // Copy of the isOpen covid data of the host, kept up to date by LocationService.updateHostOpen
+    private Boolean hostOpen = false;
 
     public Location(String name, String description, Integer nbPeople, String hostId, String hostName, List<Tag> tags, List<OpeningHour> openingHours) {
         this.name = name;
@@ -5,11 +5,13 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
-import java.time.LocalDateTime;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
 /**
@@ -20,23 +22,32 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
-@Document
+@Document(language = "french")
+@CompoundIndexes({
+        @CompoundIndex(name = "locationID_endDate", def = "{'locationID': 1, 'endDate': 1}"),
+        @CompoundIndex(name = "ownerID_endDate", def = "{'ownerID': 1, 'endDate': 1}"),
+        @CompoundIndex(name = "isPrivate_startDate_id", def = "{'isPrivate': 1, 'startDate': 1, '_id': 1}"),
+        @CompoundIndex(name = "isPrivate_endDate_startDate", def = "{'isPrivate': 1, 'endDate': 1, 'startDate': 1}"),
+        @CompoundIndex(name = "tags_name", def = "{'tags.name': 1}")
+})
 public class Meeting {
     @Id
     private String id;
+    @TextIndexed(weight = 3)
     private String name;
+    @TextIndexed
     private String description;
     private String locationID;
     private String ownerID;
     private String chatID;
     private List<Tag> tags;
     private List<String> membersID = new ArrayList<>();
-    private String startDate;
-    private String endDate;
+    private Instant startDate;
+    private Instant endDate;
     private Boolean isPrivate;
 
     @Autowired
-    public Meeting(String name, String description, String locationID, String ownerID, String chatID, List<Tag> tags, Integer nbPeople, String startDate, String endDate, boolean isPrivate) {
+    public Meeting(String name, String description, String locationID, String ownerID, String chatID, List<Tag> tags, Integer nbPeople, Instant startDate, Instant endDate, boolean isPrivate) {
         this.name = name;
         this.description = description;
         this.locationID = locationID;
@@ -0,0 +1,39 @@
+package ch.amphytrion.project.entities.databaseentities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MessageBucket class, a group of at most BUCKET_SIZE messages of a chat
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Document
+@CompoundIndexes({
+        @CompoundIndex(name = "chatId_count", def = "{'chatId': 1, 'count': 1}"),
+        @CompoundIndex(name = "chatId_firstDate", def = "{'chatId': 1, 'firstDate': 1}"),
+        @CompoundIndex(name = "chatId_lastDate", def = "{'chatId': 1, 'lastDate': 1}")
+})
+public class MessageBucket {
+    public static final int BUCKET_SIZE = 100;
+
+    @Id
+    private String id;
+    private String chatId;
+    private Integer count = 0;
+    private LocalDateTime firstDate;
+    private LocalDateTime lastDate;
+    private List<Message> messages = new ArrayList<>();
+}
@@ -0,0 +1,101 @@
+package ch.amphytrion.project.migrations;
+
+import ch.amphytrion.project.entities.databaseentities.Chat;
+import ch.amphytrion.project.entities.databaseentities.Message;
+import ch.amphytrion.project.entities.databaseentities.MessageBucket;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Move the messages embedded in the chat documents into message buckets.
+ * The application does not write the embedded messages anymore, so they can be moved while it is running. The buckets
+ * of a chat have fixed ids, a migration interrupted before the messages are removed from the chat can be run again.
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@Component
+public class ChatMessagesMigration implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChatMessagesMigration.class);
+    private static final String FIELD = "messages";
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Constructor of the migration
+     * @param mongoTemplate template used to access the chat and message bucket collections
+     */
+    @Autowired
+    public ChatMessagesMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        migrate();
+    }
+
+    /**
+     * Move the messages of every chat still embedding them
+     * @return int the number of messages moved
+     */
+    public int migrate() {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Chat.class));
+        int moved = 0;
+        for (Document chat : collection.find(Filters.exists(FIELD))) {
+            String chatId = chat.get("_id").toString();
+            List<Message> messages = new ArrayList<>();
+            for (Document message : chat.getList(FIELD, Document.class, new ArrayList<>())) {
+                messages.add(mongoTemplate.getConverter().read(Message.class, message));
+            }
+            for (int i = 0; i < messages.size(); i += MessageBucket.BUCKET_SIZE) {
+                List<Message> bucketMessages = messages.subList(i, Math.min(i + MessageBucket.BUCKET_SIZE, messages.size()));
+                mongoTemplate.save(bucket(chatId + "-" + i / MessageBucket.BUCKET_SIZE, chatId, bucketMessages));
+            }
+            collection.updateOne(Filters.eq("_id", chat.get("_id")), Updates.unset(FIELD));
+            moved += messages.size();
+        }
+        if (moved > 0) {
+            LOGGER.info("{} chat messages moved to message buckets", moved);
+        }
+        return moved;
+    }
+
+    /**
+     * Build a full bucket of legacy messages
+     * @param id the id of the bucket
+     * @param chatId the id of the chat
+     * @param messages the messages of the bucket, in the order they were sent
+     * @return MessageBucket the bucket built
+     */
+    private MessageBucket bucket(String id, String chatId, List<Message> messages) {
+        List<Message> bucketMessages = new ArrayList<>(messages);
+        for (Message message : bucketMessages) {
+            if (message.getId() == null) {
+                message.setId(new ObjectId().toHexString());
+            }
+        }
+        LocalDateTime firstDate = bucketMessages.stream().map(Message::getDate).filter(Objects::nonNull)
+                .min(Comparator.naturalOrder()).orElse(null);
+        LocalDateTime lastDate = bucketMessages.stream().map(Message::getDate).filter(Objects::nonNull)
+                .max(Comparator.naturalOrder()).orElse(null);
+        // Legacy buckets are never appended to, new messages go to new buckets
+        return new MessageBucket(id, chatId, MessageBucket.BUCKET_SIZE, firstDate, lastDate, bucketMessages);
+    }
+}
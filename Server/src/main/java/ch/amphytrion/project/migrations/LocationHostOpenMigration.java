@@ -0,0 +1,70 @@
+package ch.amphytrion.project.migrations;
+
+import ch.amphytrion.project.entities.databaseentities.Location;
+import ch.amphytrion.project.entities.databaseentities.User;
+import ch.amphytrion.project.services.LocationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Fill the hostOpen flag of the locations created before it existed, from the covid data of their host.
+ * Only the locations without the flag are updated, so a flag set meanwhile by a host update is kept.
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@Component
+public class LocationHostOpenMigration implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocationHostOpenMigration.class);
+    private static final String FIELD = "hostOpen";
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Constructor of the migration
+     * @param mongoTemplate template used to access the location and user collections
+     */
+    @Autowired
+    public LocationHostOpenMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        migrate();
+    }
+
+    /**
+     * Set the hostOpen flag on every location that does not have it
+     * @return long the number of locations updated
+     */
+    public long migrate() {
+        Query withoutFlag = new Query(Criteria.where(FIELD).exists(false));
+        List<String> hostIds = mongoTemplate.findDistinct(withoutFlag, "hostId", Location.class, String.class);
+        long updated = 0;
+        if (!hostIds.isEmpty()) {
+            List<User> hosts = mongoTemplate.find(new Query(Criteria.where("id").in(hostIds)), User.class);
+            for (User host : hosts) {
+                Query query = new Query(Criteria.where("hostId").is(host.getId()).and(FIELD).exists(false));
+                Update update = Update.update(FIELD, LocationService.isOpen(host.getHostProfil()));
+                updated += mongoTemplate.updateMulti(query, update, Location.class).getModifiedCount();
+            }
+        }
+        // Locations of deleted hosts are never shown
+        updated += mongoTemplate.updateMulti(withoutFlag, Update.update(FIELD, false), Location.class).getModifiedCount();
+        if (updated > 0) {
+            LOGGER.info("{} locations updated with the opening status of their host", updated);
+        }
+        return updated;
+    }
+}
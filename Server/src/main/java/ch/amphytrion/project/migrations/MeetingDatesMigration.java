@@ -0,0 +1,104 @@
+package ch.amphytrion.project.migrations;
+
+import ch.amphytrion.project.dto.DatesFilterDTO;
+import ch.amphytrion.project.entities.databaseentities.Meeting;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Convert the start and end dates of the meetings stored as ISO strings into native dates.
+ * The application keeps serving requests during the migration, documents not yet converted are read by
+ * MongoConfig and each update only applies if the document still holds the string that has been read.
+ * A date that cannot be parsed is moved to another field so that the meeting can still be read.
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@Component
+public class MeetingDatesMigration implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MeetingDatesMigration.class);
+    private static final String[] DATE_FIELDS = {"startDate", "endDate"};
+    private static final int BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Constructor of the migration
+     * @param mongoTemplate template used to access the meeting collection
+     */
+    @Autowired
+    public MeetingDatesMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        migrate();
+    }
+
+    /**
+     * Convert every string date of the meeting collection
+     * @return int the number of dates converted or moved aside
+     */
+    public int migrate() {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Meeting.class));
+        int converted = 0;
+        for (String field : DATE_FIELDS) {
+            List<WriteModel<Document>> updates = new ArrayList<>();
+            for (Document document : collection.find(Filters.type(field, BsonType.STRING))) {
+                String isoDate = document.getString(field);
+                Bson unchanged = Filters.and(Filters.eq("_id", document.get("_id")), Filters.eq(field, isoDate));
+                try {
+                    Instant instant = DatesFilterDTO.toInstant(isoDate);
+                    updates.add(new UpdateOneModel<>(unchanged, instant != null
+                            ? Updates.set(field, Date.from(instant))
+                            : Updates.unset(field)));
+                } catch (DateTimeParseException e) {
+                    // The reading converter would fail on every read of the meeting, the value is kept aside
+                    LOGGER.warn("Meeting {} has an invalid {}, moved to {} : {}", document.get("_id"), field,
+                            invalidField(field), isoDate);
+                    updates.add(new UpdateOneModel<>(unchanged, Updates.rename(field, invalidField(field))));
+                }
+                if (updates.size() == BATCH_SIZE) {
+                    converted += collection.bulkWrite(updates).getModifiedCount();
+                    updates.clear();
+                }
+            }
+            if (!updates.isEmpty()) {
+                converted += collection.bulkWrite(updates).getModifiedCount();
+            }
+        }
+        if (converted > 0) {
+            LOGGER.info("{} meeting dates converted to native dates", converted);
+        }
+        return converted;
+    }
+
+    /**
+     * Field where an unreadable date is kept
+     * @param field the date field
+     * @return String the name of the field holding the invalid value
+     */
+    static String invalidField(String field) {
+        return field + "Invalid";
+    }
+}
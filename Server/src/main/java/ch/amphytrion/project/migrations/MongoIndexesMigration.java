@@ -0,0 +1,71 @@
+package ch.amphytrion.project.migrations;
+
+import ch.amphytrion.project.entities.databaseentities.Chat;
+import ch.amphytrion.project.entities.databaseentities.Location;
+import ch.amphytrion.project.entities.databaseentities.Meeting;
+import ch.amphytrion.project.entities.databaseentities.MessageBucket;
+import ch.amphytrion.project.entities.databaseentities.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Create the indexes declared on the entities. Creating an index that already exists does nothing,
+ * so the migration runs at every startup.
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class MongoIndexesMigration implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MongoIndexesMigration.class);
+    private static final List<Class<?>> ENTITIES = Arrays.asList(Meeting.class, Location.class, User.class, Chat.class, MessageBucket.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Constructor of the migration
+     * @param mongoTemplate template used to create the indexes
+     */
+    @Autowired
+    public MongoIndexesMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        migrate();
+    }
+
+    /**
+     * Ensure every index declared on the entities exists
+     */
+    public void migrate() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> entity : ENTITIES) {
+            IndexOperations indexOperations = mongoTemplate.indexOps(entity);
+            resolver.resolveIndexFor(entity).forEach(index -> {
+                try {
+                    indexOperations.ensureIndex(index);
+                } catch (DataAccessException e) {
+                    // For example a unique index on a collection already containing duplicates
+                    LOGGER.error("Index {} on {} could not be created", index.getIndexOptions(), entity.getSimpleName(), e);
+                }
+            });
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package ch.amphytrion.project.repositories;
 
 import ch.amphytrion.project.entities.databaseentities.Location;
-import ch.amphytrion.project.entities.databaseentities.Meeting;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Add CRUD methods to Location collection in database
@@ -13,6 +16,13 @@ import java.util.ArrayList;
  * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
  */
 @Repository
-public interface LocationRepository extends MongoRepository<Location, String> {
+public interface LocationRepository extends MongoRepository<Location, String>, LocationRepositoryCustom {
     ArrayList<Location> findByHostId(String hostId);
+
+    List<Location> findByHostOpenTrue(Sort sort);
+
+    List<Location> findByHostOpenTrue(Pageable pageable);
+
+    @Query(value = "{}", fields = "{'name': 1, 'tags': 1}")
+    List<Location> findAllNamesAndTags();
 }
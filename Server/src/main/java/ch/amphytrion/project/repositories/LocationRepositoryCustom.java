@@ -0,0 +1,30 @@
+package ch.amphytrion.project.repositories;
+
+import ch.amphytrion.project.entities.databaseentities.Location;
+
+import java.util.List;
+
+/**
+ * Custom queries of the Location collection that cannot be derived from method names
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public interface LocationRepositoryCustom {
+
+    /**
+     * Set the host opening status on all the locations of a host
+     * @param hostId the id of the host
+     * @param hostOpen true if the host is open
+     * @return long the number of locations modified
+     */
+    long updateHostOpen(String hostId, boolean hostOpen);
+
+    /**
+     * Search the locations of the open hosts whose name, description or tags contain a word of a text
+     * @param text the words searched
+     * @param page the number of the page, starting at 0
+     * @param size the number of locations in a page
+     * @return List<Location> the locations of the page, the best matches first
+     */
+    List<Location> searchOpen(String text, int page, int size);
+}
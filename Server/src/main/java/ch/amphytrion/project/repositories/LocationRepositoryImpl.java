@@ -0,0 +1,59 @@
+package ch.amphytrion.project.repositories;
+
+import ch.amphytrion.project.entities.databaseentities.Location;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+/**
+ * Implementation of the custom queries of the Location collection
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public class LocationRepositoryImpl implements LocationRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Constructor of the custom location repository
+     * @param mongoTemplate template used to run the queries
+     */
+    @Autowired
+    public LocationRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Set the host opening status on all the locations of a host
+     * @param hostId the id of the host
+     * @param hostOpen true if the host is open
+     * @return long the number of locations modified
+     */
+    @Override
+    public long updateHostOpen(String hostId, boolean hostOpen) {
+        Query query = new Query(Criteria.where("hostId").is(hostId).and("hostOpen").ne(hostOpen));
+        return mongoTemplate.updateMulti(query, Update.update("hostOpen", hostOpen), Location.class).getModifiedCount();
+    }
+
+    /**
+     * Search the locations of the open hosts whose name, description or tags contain a word of a text
+     * @param text the words searched
+     * @param page the number of the page, starting at 0
+     * @param size the number of locations in a page
+     * @return List<Location> the locations of the page, the best matches first
+     */
+    @Override
+    public List<Location> searchOpen(String text, int page, int size) {
+        Query query = TextSearch.ranked(text)
+                .addCriteria(Criteria.where("hostOpen").is(true))
+                .with(Sort.by(Sort.Direction.ASC, "id"))
+                .skip((long) page * size)
+                .limit(size);
+        return mongoTemplate.find(query, Location.class);
+    }
+}
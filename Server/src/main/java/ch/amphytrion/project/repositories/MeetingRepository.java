@@ -2,12 +2,12 @@ package ch.amphytrion.project.repositories;
 
 import ch.amphytrion.project.entities.databaseentities.Meeting;
 import ch.amphytrion.project.entities.databaseentities.Tag;
-import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
 /**
@@ -16,13 +16,16 @@ import java.util.List;
  * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
  */
 @Repository
-public interface MeetingRepository extends MongoRepository<Meeting, String> {
+public interface MeetingRepository extends MongoRepository<Meeting, String>, MeetingRepositoryCustom {
     ArrayList<Meeting> findByName(String name);
     ArrayList<Meeting> findByOwnerID(String ownerID);
     ArrayList<Meeting> findByTagsEquals(ArrayList<Tag> tags);
 
     ArrayList<Meeting> findByLocationID(String id);
-    //ArrayList<Meeting> findByLocationID();
-    //ArrayList<Meeting> searchFilter(FilterRequest filter);
+    ArrayList<Meeting> findByOwnerIDAndEndDateAfter(String ownerID, Instant date);
+    ArrayList<Meeting> findByLocationIDAndEndDateAfter(String locationID, Instant date);
+
+    @Query(value = "{'isPrivate': false}", fields = "{'name': 1, 'tags': 1, 'locationID': 1, 'membersID': 1, 'isPrivate': 1}")
+    List<Meeting> findAllPublicSuggestions();
 }
 
@@ -0,0 +1,97 @@
+package ch.amphytrion.project.repositories;
+
+import ch.amphytrion.project.dto.ContinuationToken;
+import ch.amphytrion.project.dto.DatesFilterDTO;
+import ch.amphytrion.project.dto.FilterRequest;
+import ch.amphytrion.project.dto.MeetingFacetsResponse;
+import ch.amphytrion.project.entities.databaseentities.Meeting;
+
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Custom queries of the Meeting collection that cannot be derived from method names
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public interface MeetingRepositoryCustom {
+
+    /**
+     * Search the public meetings matching a filter, the best matches first if a name is searched
+     * @param filter the filter to translate into a database query, its name is searched as text
+     * @param text the words searched in the names and descriptions, with their completions, null to search all the names
+     * @return List<Meeting> the meetings matching the filter
+     */
+    List<Meeting> findByFilter(FilterRequest filter, String text);
+
+    /**
+     * Search a page of the public meetings matching a filter, ordered by start date and id, or by relevance first if a
+     * name is searched
+     * @param filter the filter to translate into a database query, its name is searched as text
+     * @param text the words searched in the names and descriptions, with their completions, null to search all the names
+     * @param after position of the last meeting of the previous page, null for the first page
+     * @param limit maximum number of meetings to return
+     * @return List<Meeting> the meetings of the page
+     * @throws IllegalArgumentException if the position does not come from the same kind of search
+     */
+    List<Meeting> findPageByFilter(FilterRequest filter, String text, ContinuationToken after, int limit);
+
+    /**
+     * Count the public meetings matching a filter per tag, per location and per day, in a single aggregation
+     * @param filter the filter to translate into a database query, the position of the page is ignored and its name is
+     * searched as text
+     * @param text the words searched in the names and descriptions, with their completions, null to search all the names
+     * @param zone the time zone of the days
+     * @return MeetingFacetsResponse the numbers of meetings, the locations without their names
+     */
+    MeetingFacetsResponse countFacets(FilterRequest filter, String text, ZoneId zone);
+
+    /**
+     * Find the ids of the meetings whose name or description contains a word of a text
+     * @param text the words searched, with their completions
+     * @return Set<String> the ids of the meetings found
+     */
+    Set<String> findIdsByText(String text);
+
+    /**
+     * Find the meetings having one of the ids and taking place in (or part of) the dates of a filter
+     * @param ids the ids of the meetings
+     * @param datesFilter the dates searched
+     * @return List<Meeting> the meetings found, ordered by start date
+     */
+    List<Meeting> findByIdsAndDates(Collection<String> ids, DatesFilterDTO datesFilter);
+
+    /**
+     * Find the meetings taking place at one of the locations and overlapping the dates of a filter
+     * @param locationIds the ids of the locations
+     * @param datesFilter the dates searched
+     * @return List<Meeting> the meetings found, ordered by start date
+     */
+    List<Meeting> findByLocationIdsAndDates(Collection<String> locationIds, DatesFilterDTO datesFilter);
+
+    /**
+     * Remove a member from a meeting, in a single operation
+     * @param meetingId the id of the meeting
+     * @param memberId the id of the member to remove
+     * @return Meeting the meeting updated, null if not found
+     */
+    Meeting removeMember(String meetingId, String memberId);
+
+    /**
+     * Update the fields of a meeting editable by its owner, without changing its members
+     * @param meeting the meeting holding the new values
+     * @return Meeting the meeting updated, null if not found
+     */
+    Meeting updateDetails(Meeting meeting);
+
+    /**
+     * Add a member to a meeting if he is not already a member and if the meeting is not full, in a single operation
+     * @param meetingId the id of the meeting
+     * @param memberId the id of the member to add
+     * @param capacity the maximum number of members, null if unlimited
+     * @return Meeting the meeting updated, null if the member has not been added
+     */
+    Meeting addMember(String meetingId, String memberId, Integer capacity);
+}
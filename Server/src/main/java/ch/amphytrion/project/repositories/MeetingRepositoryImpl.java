@@ -0,0 +1,372 @@
+package ch.amphytrion.project.repositories;
+
+import ch.amphytrion.project.dto.ContinuationToken;
+import ch.amphytrion.project.dto.DatesFilterDTO;
+import ch.amphytrion.project.dto.FacetResponse;
+import ch.amphytrion.project.dto.FilterRequest;
+import ch.amphytrion.project.dto.MeetingFacetsResponse;
+import ch.amphytrion.project.entities.databaseentities.Meeting;
+import ch.amphytrion.project.entities.databaseentities.Tag;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of the custom queries of the Meeting collection
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public class MeetingRepositoryImpl implements MeetingRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Constructor of the custom meeting repository
+     * @param mongoTemplate template used to run the queries
+     */
+    @Autowired
+    public MeetingRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Search the public meetings matching a filter, the best matches first if a name is searched
+     * @param filter the filter to translate into a database query, its name is searched as text
+     * @param text the words searched in the names and descriptions, with their completions, null to search all the names
+     * @return List<Meeting> the meetings matching the filter
+     */
+    @Override
+    public List<Meeting> findByFilter(FilterRequest filter, String text) {
+        return mongoTemplate.find(filterQuery(filter, text, new ArrayList<>()), Meeting.class);
+    }
+
+    /**
+     * Search a page of the public meetings matching a filter, ordered by start date and id, or by relevance first if a
+     * name is searched
+     * @param filter the filter to translate into a database query, its name is searched as text
+     * @param text the words searched in the names and descriptions, with their completions, null to search all the names
+     * @param after position of the last meeting of the previous page, null for the first page
+     * @param limit maximum number of meetings to return
+     * @return List<Meeting> the meetings of the page
+     * @throws IllegalArgumentException if the position does not come from the same kind of search
+     */
+    @Override
+    public List<Meeting> findPageByFilter(FilterRequest filter, String text, ContinuationToken after, int limit) {
+        List<Criteria> criteria = new ArrayList<>();
+        int offset = 0;
+        if (text != null) {
+            // The relevance cannot be compared in a query, the pages are read by position
+            if (after != null) {
+                if (after.getOffset() == null) {
+                    throw new IllegalArgumentException("Invalid continuation token");
+                }
+                offset = after.getOffset();
+            }
+        } else if (after != null) {
+            criteria.add(afterCriteria(after));
+        }
+        Query query = filterQuery(filter, text, criteria)
+                .with(Sort.by(Sort.Direction.ASC, "startDate", "id"))
+                .skip(offset)
+                .limit(limit);
+        return mongoTemplate.find(query, Meeting.class);
+    }
+
+    /**
+     * Count the public meetings matching a filter per tag, per location and per day, in a single aggregation
+     * @param filter the filter to translate into a database query, the position of the page is ignored and its name is
+     * searched as text
+     * @param text the words searched in the names and descriptions, with their completions, null to search all the names
+     * @param zone the time zone of the days
+     * @return MeetingFacetsResponse the numbers of meetings, the locations without their names
+     */
+    @Override
+    public MeetingFacetsResponse countFacets(FilterRequest filter, String text, ZoneId zone) {
+        List<AggregationOperation> operations = new ArrayList<>();
+        if (text != null) {
+            // A text search must be the first stage
+            operations.add(Aggregation.match(TextSearch.matching(text)));
+        }
+        operations.add(Aggregation.match(new Criteria().andOperator(filterCriteria(filter, new ArrayList<>()))));
+        Document facets = new Document()
+                .append("tags", Arrays.asList(
+                        // A tag is counted once per meeting
+                        new Document("$project", new Document("tag", new Document("$setUnion", Arrays.asList("$tags.name", Collections.emptyList())))),
+                        new Document("$unwind", "$tag"),
+                        countBy("$tag"),
+                        new Document("$sort", new Document("count", -1).append("_id", 1)),
+                        new Document("$limit", MeetingFacetsResponse.MAX_VALUES)))
+                .append("locations", Arrays.asList(
+                        new Document("$match", new Document("locationID", new Document("$nin", Arrays.asList(null, "")))),
+                        countBy("$locationID"),
+                        new Document("$sort", new Document("count", -1).append("_id", 1)),
+                        new Document("$limit", MeetingFacetsResponse.MAX_VALUES)))
+                .append("days", Arrays.asList(
+                        new Document("$match", new Document("startDate", new Document("$ne", null))),
+                        countBy(new Document("$dateToString", new Document("format", "%Y-%m-%d")
+                                .append("date", "$startDate")
+                                .append("timezone", zone.getId()))),
+                        new Document("$sort", new Document("_id", 1)),
+                        new Document("$limit", MeetingFacetsResponse.MAX_VALUES)))
+                .append("total", Collections.singletonList(new Document("$count", "count")));
+        operations.add(context -> new Document("$facet", facets));
+        Document result = mongoTemplate.aggregate(Aggregation.newAggregation(Meeting.class, operations), Document.class)
+                .getUniqueMappedResult();
+        MeetingFacetsResponse response = new MeetingFacetsResponse();
+        if (result != null) {
+            response.tags = facetValues(result, "tags");
+            response.locations = facetValues(result, "locations");
+            response.days = facetValues(result, "days");
+            List<Document> total = result.getList("total", Document.class, Collections.emptyList());
+            response.total = total.isEmpty() ? 0 : total.get(0).get("count", Number.class).longValue();
+        }
+        return response;
+    }
+
+    private static Document countBy(Object value) {
+        return new Document("$group", new Document("_id", value).append("count", new Document("$sum", 1)));
+    }
+
+    private static List<FacetResponse> facetValues(Document result, String facet) {
+        List<FacetResponse> values = new ArrayList<>();
+        for (Document value : result.getList(facet, Document.class, Collections.emptyList())) {
+            values.add(new FacetResponse(String.valueOf(value.get("_id")), null, value.get("count", Number.class).longValue()));
+        }
+        return values;
+    }
+
+    /**
+     * Find the ids of the meetings whose name or description contains a word of a text
+     * @param text the words searched, with their completions
+     * @return Set<String> the ids of the meetings found
+     */
+    @Override
+    public Set<String> findIdsByText(String text) {
+        Query query = TextQuery.queryText(TextSearch.matching(text));
+        query.fields().include("id");
+        return mongoTemplate.find(query, Meeting.class).stream()
+                .map(Meeting::getId)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Find the meetings having one of the ids and taking place in (or part of) the dates of a filter
+     * @param ids the ids of the meetings
+     * @param datesFilter the dates searched
+     * @return List<Meeting> the meetings found, ordered by start date
+     */
+    @Override
+    public List<Meeting> findByIdsAndDates(Collection<String> ids, DatesFilterDTO datesFilter) {
+        List<Criteria> criteria = new ArrayList<>();
+        criteria.add(Criteria.where("id").in(ids));
+        addDatesCriteria(criteria, datesFilter);
+        return findSortedByStartDate(criteria);
+    }
+
+    /**
+     * Find the meetings taking place at one of the locations and overlapping the dates of a filter
+     * @param locationIds the ids of the locations
+     * @param datesFilter the dates searched
+     * @return List<Meeting> the meetings found, ordered by start date
+     */
+    @Override
+    public List<Meeting> findByLocationIdsAndDates(Collection<String> locationIds, DatesFilterDTO datesFilter) {
+        List<Criteria> criteria = new ArrayList<>();
+        criteria.add(Criteria.where("locationID").in(locationIds));
+        addOverlapCriteria(criteria, datesFilter);
+        return findSortedByStartDate(criteria);
+    }
+
+    /**
+     * Find the meetings matching all the criteria
+     * @param criteria the criteria of the query
+     * @return List<Meeting> the meetings found, ordered by start date
+     */
+    private List<Meeting> findSortedByStartDate(List<Criteria> criteria) {
+        Query query = new Query(new Criteria().andOperator(criteria.toArray(new Criteria[0])))
+                .with(Sort.by(Sort.Direction.ASC, "startDate", "id"));
+        return mongoTemplate.find(query, Meeting.class);
+    }
+
+    /**
+     * Add a member to a meeting if he is not already a member and if the meeting is not full, in a single operation
+     * @param meetingId the id of the meeting
+     * @param memberId the id of the member to add
+     * @param capacity the maximum number of members, null if unlimited
+     * @return Meeting the meeting updated, null if the member has not been added
+     */
+    @Override
+    public Meeting addMember(String meetingId, String memberId, Integer capacity) {
+        Criteria criteria = Criteria.where("id").is(meetingId).and("membersID").ne(memberId);
+        if (capacity != null) {
+            if (capacity <= 0) {
+                return null;
+            }
+            // The meeting has less than capacity members if there is no member at index capacity - 1
+            criteria.and("membersID." + (capacity - 1)).exists(false);
+        }
+        return mongoTemplate.findAndModify(new Query(criteria),
+                new Update().addToSet("membersID", memberId),
+                FindAndModifyOptions.options().returnNew(true),
+                Meeting.class);
+    }
+
+    /**
+     * Remove a member from a meeting, in a single operation
+     * @param meetingId the id of the meeting
+     * @param memberId the id of the member to remove
+     * @return Meeting the meeting updated, null if not found
+     */
+    @Override
+    public Meeting removeMember(String meetingId, String memberId) {
+        return mongoTemplate.findAndModify(new Query(Criteria.where("id").is(meetingId)),
+                new Update().pull("membersID", memberId),
+                FindAndModifyOptions.options().returnNew(true),
+                Meeting.class);
+    }
+
+    /**
+     * Update the fields of a meeting editable by its owner, without changing its members
+     * @param meeting the meeting holding the new values
+     * @return Meeting the meeting updated, null if not found
+     */
+    @Override
+    public Meeting updateDetails(Meeting meeting) {
+        Update update = new Update()
+                .set("name", meeting.getName())
+                .set("description", meeting.getDescription())
+                .set("tags", meeting.getTags())
+                .set("locationID", meeting.getLocationID())
+                .set("isPrivate", meeting.getIsPrivate())
+                .set("startDate", meeting.getStartDate())
+                .set("endDate", meeting.getEndDate());
+        return mongoTemplate.findAndModify(new Query(Criteria.where("id").is(meeting.getId())), update,
+                FindAndModifyOptions.options().returnNew(true),
+                Meeting.class);
+    }
+
+    /**
+     * Build the query of a filter, sorted by relevance if a name is searched
+     * @param filter the filter to translate into a database query
+     * @param text the words searched in the text index, null to search all the names
+     * @param criteria additional criteria of the query
+     * @return Query the query matching the filter and the criteria
+     */
+    private Query filterQuery(FilterRequest filter, String text, List<Criteria> criteria) {
+        // The name is searched in the text index of the names and descriptions
+        Query query = text != null ? TextSearch.ranked(text) : new Query();
+        return query.addCriteria(new Criteria().andOperator(filterCriteria(filter, criteria)));
+    }
+
+    /**
+     * Criteria of a filter, except the name searched in the text index
+     * @param filter the filter to translate into criteria
+     * @param criteria additional criteria
+     * @return Criteria[] the criteria matching the filter and the additional criteria
+     */
+    private Criteria[] filterCriteria(FilterRequest filter, List<Criteria> criteria) {
+        criteria.add(Criteria.where("isPrivate").is(false));
+        addTagsCriteria(criteria, filter.tags);
+        addLocationCriteria(criteria, filter);
+        addDatesCriteria(criteria, new DatesFilterDTO(filter.startDate, filter.endDate));
+        return criteria.toArray(new Criteria[0]);
+    }
+
+    /**
+     * Keyset condition selecting the meetings placed after a position in the (startDate, id) order
+     * @param after the position of the last meeting returned
+     * @return Criteria the meetings after the position
+     */
+    private Criteria afterCriteria(ContinuationToken after) {
+        if (after.getDate() == null) {
+            // Meetings without start date come first in ascending order
+            return new Criteria().orOperator(
+                    Criteria.where("startDate").ne(null),
+                    new Criteria().andOperator(Criteria.where("startDate").is(null), Criteria.where("id").gt(after.getId())));
+        }
+        return new Criteria().orOperator(
+                Criteria.where("startDate").gt(after.getDate()),
+                new Criteria().andOperator(Criteria.where("startDate").is(after.getDate()), Criteria.where("id").gt(after.getId())));
+    }
+
+    /**
+     * Restrict the query to the meetings in (or part of) the dates of a filter, see DatesFilterDTO.isBetween
+     * @param criteria the criteria of the query to complete
+     * @param datesFilter the dates searched
+     */
+    private void addDatesCriteria(List<Criteria> criteria, DatesFilterDTO datesFilter) {
+        Instant start = datesFilter.startInstant();
+        Instant end = datesFilter.endInstant();
+        if (start == null && end != null) {
+            criteria.add(Criteria.where("startDate").lt(end));
+        } else if (start != null && end == null) {
+            criteria.add(Criteria.where("endDate").gt(start));
+        } else if (start != null) {
+            criteria.add(new Criteria().orOperator(
+                    Criteria.where("startDate").gt(start).lt(end),
+                    Criteria.where("endDate").gt(start).lt(end)));
+        }
+    }
+
+    /**
+     * Restrict the query to the meetings overlapping the dates of a filter, a meeting starting before the
+     * filter and ending after it is kept
+     * @param criteria the criteria of the query to complete
+     * @param datesFilter the dates searched
+     */
+    private void addOverlapCriteria(List<Criteria> criteria, DatesFilterDTO datesFilter) {
+        Instant start = datesFilter.startInstant();
+        Instant end = datesFilter.endInstant();
+        if (end != null) {
+            criteria.add(Criteria.where("startDate").lt(end));
+        }
+        if (start != null) {
+            criteria.add(Criteria.where("endDate").gt(start));
+        }
+    }
+
+    /**
+     * Restrict the query to the meetings having at least one of the tags
+     * @param criteria the criteria of the query to complete
+     * @param tags the tags searched
+     */
+    private void addTagsCriteria(List<Criteria> criteria, List<Tag> tags) {
+        if (tags != null && !tags.isEmpty()) {
+            List<String> names = tags.stream()
+                    .map(Tag::getName)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            criteria.add(Criteria.where("tags.name").in(names));
+        }
+    }
+
+    /**
+     * Restrict the query to the meetings taking place at the location of the filter
+     * @param criteria the criteria of the query to complete
+     * @param filter the filter containing the location
+     */
+    private void addLocationCriteria(List<Criteria> criteria, FilterRequest filter) {
+        if (filter.location != null && filter.location.getId() != null && !filter.location.getId().isEmpty()) {
+            criteria.add(Criteria.where("locationID").is(filter.location.getId()));
+        }
+    }
+}
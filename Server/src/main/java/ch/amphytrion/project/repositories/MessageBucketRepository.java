@@ -0,0 +1,19 @@
+package ch.amphytrion.project.repositories;
+
+import ch.amphytrion.project.entities.databaseentities.MessageBucket;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Add CRUD methods to MessageBucket collection in database
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@Repository
+public interface MessageBucketRepository extends MongoRepository<MessageBucket, String>, MessageBucketRepositoryCustom {
+    List<MessageBucket> findByChatIdOrderByFirstDateAsc(String chatId);
+
+    void deleteByChatId(String chatId);
+}
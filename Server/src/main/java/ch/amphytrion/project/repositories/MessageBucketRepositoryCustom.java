@@ -0,0 +1,46 @@
+package ch.amphytrion.project.repositories;
+
+import ch.amphytrion.project.dto.ContinuationToken;
+import ch.amphytrion.project.entities.databaseentities.Message;
+
+import java.util.List;
+
+/**
+ * Custom queries of the MessageBucket collection that cannot be derived from method names
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public interface MessageBucketRepositoryCustom {
+
+    /**
+     * Append a message to the last bucket of a chat that is not full, a new bucket is created if needed
+     * @param chatId the id of the chat
+     * @param message the message to append
+     */
+    void appendMessage(String chatId, Message message);
+
+    /**
+     * Append messages to the last bucket of a chat with room for all of them, a new bucket is created if needed
+     * @param chatId the id of the chat
+     * @param messages the messages to append in the order they were sent, at most a bucket size
+     */
+    void appendMessages(String chatId, List<Message> messages);
+
+    /**
+     * Find the newest messages of a chat sent before a position
+     * @param chatId the id of the chat
+     * @param before the position of the oldest message already known, null to get the latest messages
+     * @param limit maximum number of messages to return
+     * @return List<Message> the messages found, newest first
+     */
+    List<Message> findBefore(String chatId, ContinuationToken before, int limit);
+
+    /**
+     * Find the oldest messages of a chat sent after a position
+     * @param chatId the id of the chat
+     * @param after the position of the newest message already known
+     * @param limit maximum number of messages to return
+     * @return List<Message> the messages found, oldest first
+     */
+    List<Message> findAfter(String chatId, ContinuationToken after, int limit);
+}
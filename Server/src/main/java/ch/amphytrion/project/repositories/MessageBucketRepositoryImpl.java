@@ -0,0 +1,164 @@
+package ch.amphytrion.project.repositories;
+
+import ch.amphytrion.project.dto.ContinuationToken;
+import ch.amphytrion.project.entities.databaseentities.Message;
+import ch.amphytrion.project.entities.databaseentities.MessageBucket;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Implementation of the custom queries of the MessageBucket collection
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public class MessageBucketRepositoryImpl implements MessageBucketRepositoryCustom {
+
+    private static final Comparator<Message> MESSAGE_ORDER = Comparator
+            .comparing(Message::getDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Message::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Constructor of the custom message bucket repository
+     * @param mongoTemplate template used to run the queries
+     */
+    @Autowired
+    public MessageBucketRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Append a message to the last bucket of a chat that is not full, a new bucket is created if needed
+     * @param chatId the id of the chat
+     * @param message the message to append
+     */
+    @Override
+    public void appendMessage(String chatId, Message message) {
+        appendMessages(chatId, Collections.singletonList(message));
+    }
+
+    /**
+     * Append messages to the last bucket of a chat with room for all of them, a new bucket is created if needed
+     * @param chatId the id of the chat
+     * @param messages the messages to append in the order they were sent, at most a bucket size
+     */
+    @Override
+    public void appendMessages(String chatId, List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (messages.size() > MessageBucket.BUCKET_SIZE) {
+            throw new IllegalArgumentException("More messages than the size of a bucket");
+        }
+        LocalDateTime firstDate = messages.stream().map(Message::getDate).filter(Objects::nonNull)
+                .min(Comparator.naturalOrder()).orElse(null);
+        LocalDateTime lastDate = messages.stream().map(Message::getDate).filter(Objects::nonNull)
+                .max(Comparator.naturalOrder()).orElse(null);
+        // Only the chatId is copied in the document inserted by the upsert
+        Query query = new Query(Criteria.where("chatId").is(chatId)
+                .and("count").lte(MessageBucket.BUCKET_SIZE - messages.size()));
+        Update update = new Update()
+                .push("messages").each(messages.toArray())
+                .inc("count", messages.size());
+        if (firstDate != null) {
+            update.min("firstDate", firstDate).max("lastDate", lastDate);
+        }
+        mongoTemplate.upsert(query, update, MessageBucket.class);
+    }
+
+    /**
+     * Find the newest messages of a chat sent before a position
+     * @param chatId the id of the chat
+     * @param before the position of the oldest message already known, null to get the latest messages
+     * @param limit maximum number of messages to return
+     * @return List<Message> the messages found, newest first
+     */
+    @Override
+    public List<Message> findBefore(String chatId, ContinuationToken before, int limit) {
+        Criteria criteria = Criteria.where("chatId").is(chatId);
+        Message cursor = null;
+        if (before != null) {
+            cursor = new Message(before.getId(), null, null, before.localDate());
+            criteria.and("firstDate").lte(cursor.getDate());
+        }
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.DESC, "lastDate"));
+        return findPage(query, cursor, MESSAGE_ORDER.reversed(), limit, MessageBucket::getLastDate);
+    }
+
+    /**
+     * Find the oldest messages of a chat sent after a position
+     * @param chatId the id of the chat
+     * @param after the position of the newest message already known
+     * @param limit maximum number of messages to return
+     * @return List<Message> the messages found, oldest first
+     */
+    @Override
+    public List<Message> findAfter(String chatId, ContinuationToken after, int limit) {
+        Message cursor = new Message(after.getId(), null, null, after.localDate());
+        Query query = new Query(Criteria.where("chatId").is(chatId).and("lastDate").gte(cursor.getDate()))
+                .with(Sort.by(Sort.Direction.ASC, "firstDate"));
+        return findPage(query, cursor, MESSAGE_ORDER, limit, MessageBucket::getFirstDate);
+    }
+
+    /**
+     * Read the buckets one after the other until a page of messages is complete.
+     * The buckets are read in the order of their nearest date to the cursor, the reading stops when the next bucket
+     * cannot contain a message placed before the last message of the page.
+     * @param query the query of the buckets that can contain messages of the page
+     * @param cursor the position after which the messages are taken, null to start at the beginning
+     * @param order the order of the messages in the page
+     * @param limit maximum number of messages to return
+     * @param nearestDate date of a bucket the nearest to the cursor, used to sort the buckets
+     * @return List<Message> the messages of the page
+     */
+    private List<Message> findPage(Query query, Message cursor, Comparator<Message> order, int limit,
+                                   Function<MessageBucket, LocalDateTime> nearestDate) {
+        List<Message> page = new ArrayList<>();
+        try (CloseableIterator<MessageBucket> buckets = mongoTemplate.stream(query, MessageBucket.class)) {
+            while (buckets.hasNext()) {
+                MessageBucket bucket = buckets.next();
+                if (page.size() >= limit && isAfter(nearestDate.apply(bucket), page.get(limit - 1).getDate(), order)) {
+                    break;
+                }
+                for (Message message : bucket.getMessages()) {
+                    if (cursor == null || order.compare(message, cursor) > 0) {
+                        page.add(message);
+                    }
+                }
+                page.sort(order);
+                if (page.size() > limit) {
+                    page.subList(limit, page.size()).clear();
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Check if all the messages of a bucket are placed after a date in an order
+     * @param bucketDate the date of the bucket the nearest to the cursor
+     * @param date the date of the last message of the page
+     * @param order the order of the messages
+     * @return boolean true if the bucket only contains messages placed after the date
+     */
+    private boolean isAfter(LocalDateTime bucketDate, LocalDateTime date, Comparator<Message> order) {
+        if (bucketDate == null || date == null) {
+            return false;
+        }
+        return order.compare(new Message(null, null, null, bucketDate), new Message(null, null, null, date)) > 0;
+    }
+}
@@ -0,0 +1,36 @@
+package ch.amphytrion.project.repositories;
+
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+
+/**
+ * Full-text queries on the text indexes of the collections. The indexes are declared with @TextIndexed on the
+ * entities, analysed in french (stemming, stop words, case and accents ignored) and maintained by MongoDB at every
+ * save and delete. The text index only matches whole words, the words being typed are completed before the search,
+ * see AutocompleteIndex.complete.
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+final class TextSearch {
+
+    private TextSearch() {
+    }
+
+    /**
+     * Criteria of the documents containing at least one word of a text
+     * @param text the words searched, a sentence between double quotes to search it exactly
+     * @return TextCriteria the criteria on the text index
+     */
+    static TextCriteria matching(String text) {
+        return TextCriteria.forDefaultLanguage().matching(text);
+    }
+
+    /**
+     * Query of the documents containing at least one word of a text, the best matches first
+     * @param text the words searched, a sentence between double quotes to search it exactly
+     * @return TextQuery the query sorted by relevance
+     */
+    static TextQuery ranked(String text) {
+        return TextQuery.queryText(matching(text)).sortByScore();
+    }
+}
@@ -0,0 +1,25 @@
+package ch.amphytrion.project.repositories;
+
+/**
+ * Custom queries of the User collection that cannot be derived from method names
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Add a meeting to the participations of a student, if not already there
+     * @param userId the id of the student
+     * @param meetingId the id of the meeting
+     * @return boolean true if the student has been found
+     */
+    boolean addMeetingParticipation(String userId, String meetingId);
+
+    /**
+     * Remove a meeting from the participations of a student
+     * @param userId the id of the student
+     * @param meetingId the id of the meeting
+     * @return boolean true if the student has been found
+     */
+    boolean removeMeetingParticipation(String userId, String meetingId);
+}
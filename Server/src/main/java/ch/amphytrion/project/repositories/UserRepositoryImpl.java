@@ -0,0 +1,53 @@
+package ch.amphytrion.project.repositories;
+
+import ch.amphytrion.project.entities.databaseentities.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * Implementation of the custom queries of the User collection
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Constructor of the custom user repository
+     * @param mongoTemplate template used to run the queries
+     */
+    @Autowired
+    public UserRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Add a meeting to the participations of a student, if not already there
+     * @param userId the id of the student
+     * @param meetingId the id of the meeting
+     * @return boolean true if the student has been found
+     */
+    @Override
+    public boolean addMeetingParticipation(String userId, String meetingId) {
+        Query query = new Query(Criteria.where("id").is(userId).and("studentProfil").ne(null));
+        Update update = new Update().addToSet("studentProfil.meetingsParticipationsID", meetingId);
+        return mongoTemplate.updateFirst(query, update, User.class).getMatchedCount() > 0;
+    }
+
+    /**
+     * Remove a meeting from the participations of a student
+     * @param userId the id of the student
+     * @param meetingId the id of the meeting
+     * @return boolean true if the student has been found
+     */
+    @Override
+    public boolean removeMeetingParticipation(String userId, String meetingId) {
+        Query query = new Query(Criteria.where("id").is(userId).and("studentProfil").ne(null));
+        Update update = new Update().pull("studentProfil.meetingsParticipationsID", meetingId);
+        return mongoTemplate.updateFirst(query, update, User.class).getMatchedCount() > 0;
+    }
+}
@@ -0,0 +1,668 @@
+package ch.amphytrion.project.services;
+
+import ch.amphytrion.project.dto.SuggestionResponse;
+import ch.amphytrion.project.entities.databaseentities.Location;
+import ch.amphytrion.project.entities.databaseentities.Meeting;
+import ch.amphytrion.project.entities.databaseentities.Tag;
+import ch.amphytrion.project.repositories.LocationRepository;
+import ch.amphytrion.project.repositories.MeetingRepository;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Prefix index (trie) of the names of the public meetings, of the tags and of the names of the locations, to suggest
+ * searches while the user types. Every word of a name starts a key, so "Soirée jeux" is suggested for "soi" as well
+ * as for "jeu", ignoring case and accents. Each node keeps the best suggestions of its subtree, so a suggestion only
+ * costs the walk of the prefix, whatever the number of names.
+ * The popularity of a meeting name is its number of meetings and members, of a tag its number of meetings and
+ * locations, and of a location its number of meetings. The index is loaded by the first suggestion and kept up to
+ * date by the saves and deletes of the meetings and locations.
+ * The words of the public meeting names are also kept sorted, to complete the words typed in a search by a range of
+ * words instead of scanning the names in the database.
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@Component
+public class AutocompleteIndex extends AbstractMongoEventListener<Object> {
+
+    public static final int MAX_SUGGESTIONS = 10;
+    public static final int MAX_COMPLETIONS = 20;
+    // Longer keys are cut, the names are suggested by their beginning
+    private static final int MAX_KEY_LENGTH = 40;
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Suggestion[] NONE = new Suggestion[0];
+    private static final Comparator<Suggestion> BEST_FIRST = Comparator.comparingLong((Suggestion suggestion) -> -suggestion.weight)
+            .thenComparing(suggestion -> suggestion.text)
+            .thenComparing(suggestion -> suggestion.type);
+
+    private final Supplier<List<Meeting>> loadMeetings;
+    private final Supplier<List<Location>> loadLocations;
+    private final Function<String, Meeting> loadMeeting;
+    private final Function<String, Location> loadLocation;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node(null, ' ');
+    private final Map<String, Suggestion> suggestions = new HashMap<>();
+    private final Map<String, MeetingEntry> meetings = new HashMap<>();
+    private final Map<String, LocationEntry> locations = new HashMap<>();
+    private final Map<String, Long> meetingNames = new HashMap<>();
+    // Number of public meetings having each word in their name
+    private final NavigableMap<String, Long> nameWords = new TreeMap<>();
+    private final Map<String, Long> tags = new HashMap<>();
+    private final Map<String, Long> meetingsAtLocation = new HashMap<>();
+    private boolean loaded;
+
+    /**
+     * Autocomplete index constructor
+     * @param meetingRepository repository used to load the meetings
+     * @param locationRepository repository used to load the locations
+     */
+    @Autowired
+    public AutocompleteIndex(MeetingRepository meetingRepository, LocationRepository locationRepository) {
+        this(meetingRepository::findAllPublicSuggestions, locationRepository::findAllNamesAndTags,
+                id -> meetingRepository.findById(id).orElse(null), id -> locationRepository.findById(id).orElse(null));
+    }
+
+    /**
+     * Autocomplete index constructor
+     * @param loadMeetings loads the name, tags, location and members of the public meetings
+     * @param loadLocations loads the name and tags of all the locations
+     * @param loadMeeting loads a meeting by its id, null if not found
+     * @param loadLocation loads a location by its id, null if not found
+     */
+    public AutocompleteIndex(Supplier<List<Meeting>> loadMeetings, Supplier<List<Location>> loadLocations,
+                             Function<String, Meeting> loadMeeting, Function<String, Location> loadLocation) {
+        this.loadMeetings = loadMeetings;
+        this.loadLocations = loadLocations;
+        this.loadMeeting = loadMeeting;
+        this.loadLocation = loadLocation;
+    }
+
+    /**
+     * Find the most popular suggestions having a word starting with a prefix
+     * @param prefix the text typed by the user
+     * @param limit the maximum number of suggestions, bounded by MAX_SUGGESTIONS
+     * @return List<SuggestionResponse> the suggestions, the most popular first
+     */
+    public List<SuggestionResponse> suggest(String prefix, int limit) {
+        String key = prefix != null ? normalize(prefix, false) : "";
+        if (key.isEmpty()) {
+            return new ArrayList<>();
+        }
+        key = key.substring(0, Math.min(key.length(), MAX_KEY_LENGTH));
+        int max = limit <= 0 ? MAX_SUGGESTIONS : Math.min(limit, MAX_SUGGESTIONS);
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            List<SuggestionResponse> found = new ArrayList<>();
+            if (node != null) {
+                for (int i = 0; i < node.best.length && i < max; i++) {
+                    Suggestion suggestion = node.best[i];
+                    found.add(new SuggestionResponse(suggestion.type, suggestion.text, suggestion.id));
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Complete the words of a search with the words of the public meeting names starting with them, case and accents
+     * ignored, so that a word being typed still matches in the text index, which only matches whole words. A sentence
+     * between double quotes is searched exactly and the excluded words (starting with a minus) are not completed
+     * @param text the words searched
+     * @return String the words searched followed by at most MAX_COMPLETIONS words completing them
+     */
+    public String complete(String text) {
+        if (text == null || text.indexOf('"') >= 0) {
+            return text;
+        }
+        Set<String> prefixes = new LinkedHashSet<>();
+        for (String term : text.trim().split("\\s+")) {
+            String normalized = normalize(term, true);
+            if (!term.startsWith("-") && !normalized.isEmpty()) {
+                prefixes.addAll(Arrays.asList(normalized.split(" ")));
+            }
+        }
+        if (prefixes.isEmpty()) {
+            return text;
+        }
+        ensureLoaded();
+        Set<String> completions = new LinkedHashSet<>();
+        lock.readLock().lock();
+        try {
+            for (String prefix : prefixes) {
+                // The words starting with the prefix are the range between the prefix and its last possible word
+                for (String word : nameWords.subMap(prefix, false, prefix + Character.MAX_VALUE, false).keySet()) {
+                    if (completions.size() >= MAX_COMPLETIONS) {
+                        break;
+                    }
+                    if (!prefixes.contains(word)) {
+                        completions.add(word);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return completions.isEmpty() ? text : text + " " + String.join(" ", completions);
+    }
+
+    /**
+     * Add or update a meeting in the index, a private meeting is removed
+     * @param meeting the meeting saved
+     */
+    public void index(Meeting meeting) {
+        if (meeting.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                Set<String> changed = new HashSet<>();
+                removeMeeting(meeting.getId(), changed);
+                addMeeting(meeting, changed);
+                update(changed);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add or update a location in the index
+     * @param location the location saved
+     */
+    public void index(Location location) {
+        if (location.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                Set<String> changed = new HashSet<>();
+                removeLocation(location.getId(), changed);
+                addLocation(location, changed);
+                update(changed);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a meeting from the index
+     * @param meetingId the id of the meeting
+     */
+    public void removeMeeting(String meetingId) {
+        lock.writeLock().lock();
+        try {
+            Set<String> changed = new HashSet<>();
+            removeMeeting(meetingId, changed);
+            update(changed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a location from the index
+     * @param locationId the id of the location
+     */
+    public void removeLocation(String locationId) {
+        lock.writeLock().lock();
+        try {
+            Set<String> changed = new HashSet<>();
+            removeLocation(locationId, changed);
+            update(changed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Read a meeting again in the database, after a change made by another instance
+     * @param meetingId the id of the meeting
+     */
+    public void refreshMeeting(String meetingId) {
+        if (isLoaded()) {
+            Meeting meeting = loadMeeting.apply(meetingId);
+            if (meeting != null) {
+                index(meeting);
+            } else {
+                removeMeeting(meetingId);
+            }
+        }
+    }
+
+    /**
+     * Read a location again in the database, after a change made by another instance
+     * @param locationId the id of the location
+     */
+    public void refreshLocation(String locationId) {
+        if (isLoaded()) {
+            Location location = loadLocation.apply(locationId);
+            if (location != null) {
+                index(location);
+            } else {
+                removeLocation(locationId);
+            }
+        }
+    }
+
+    /**
+     * Empty the index, it is loaded again by the next suggestion
+     */
+    public void reset() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            root.children.clear();
+            root.ending.clear();
+            root.best = NONE;
+            suggestions.clear();
+            meetings.clear();
+            locations.clear();
+            meetingNames.clear();
+            nameWords.clear();
+            tags.clear();
+            meetingsAtLocation.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of suggestions in the index
+     * @return int the number of meeting names, tags and locations
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return suggestions.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Object> event) {
+        Object source = event.getSource();
+        if (source instanceof Meeting) {
+            index((Meeting) source);
+        } else if (source instanceof Location) {
+            index((Location) source);
+        }
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Object> event) {
+        Class<?> type = event.getType();
+        if (type != Meeting.class && type != Location.class) {
+            return;
+        }
+        Document query = event.getSource();
+        Object id = query != null ? query.get("_id") : null;
+        if (!(id instanceof String || id instanceof ObjectId)) {
+            // Deleted by a query on other fields or many ids
+            reset();
+        } else if (type == Meeting.class) {
+            removeMeeting(id.toString());
+        } else {
+            removeLocation(id.toString());
+        }
+    }
+
+    /**
+     * Normalize a text as the keys of the index: lower case, without accents, the words separated by a space
+     * @param text the text to normalize
+     * @param trim true to remove the separator at the end, false to keep it and only find the next words
+     * @return String the text normalized
+     */
+    static String normalize(String text, boolean trim) {
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        normalized = SEPARATORS.matcher(normalized.toLowerCase(Locale.ROOT)).replaceAll(" ");
+        int start = normalized.startsWith(" ") ? 1 : 0;
+        int end = trim && normalized.endsWith(" ") ? normalized.length() - 1 : normalized.length();
+        return start < end ? normalized.substring(start, end) : "";
+    }
+
+    private boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return loaded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (isLoaded()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                // The best suggestions are computed once all the suggestions are added, instead of along their keys
+                Set<String> changed = new HashSet<>();
+                for (Location location : loadLocations.get()) {
+                    if (location.getId() != null) {
+                        addLocation(location, changed);
+                    }
+                }
+                for (Meeting meeting : loadMeetings.get()) {
+                    if (meeting.getId() != null) {
+                        addMeeting(meeting, changed);
+                    }
+                }
+                updateAll(root);
+                loaded = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add the contributions of a public meeting to the popularity of its name, tags and location, must be called while
+     * holding the write lock
+     * @param meeting the meeting to add
+     * @param changed the keys whose best suggestions changed
+     */
+    private void addMeeting(Meeting meeting, Set<String> changed) {
+        if (!Boolean.FALSE.equals(meeting.getIsPrivate())) {
+            return;
+        }
+        MeetingEntry entry = new MeetingEntry(meeting);
+        meetings.put(meeting.getId(), entry);
+        count(entry, 1, changed);
+    }
+
+    private void removeMeeting(String meetingId, Set<String> changed) {
+        MeetingEntry entry = meetings.remove(meetingId);
+        if (entry != null) {
+            count(entry, -1, changed);
+        }
+    }
+
+    private void count(MeetingEntry entry, int sign, Set<String> changed) {
+        if (entry.name != null) {
+            long weight = add(meetingNames, entry.name, sign * entry.popularity);
+            set(SuggestionResponse.MEETING, entry.name, null, weight, changed);
+            for (String word : entry.words) {
+                add(nameWords, word, sign);
+            }
+        }
+        for (String tag : entry.tags) {
+            set(SuggestionResponse.TAG, tag, null, add(tags, tag, sign), changed);
+        }
+        if (entry.locationID != null) {
+            add(meetingsAtLocation, entry.locationID, sign);
+            setLocation(entry.locationID, changed);
+        }
+    }
+
+    private void addLocation(Location location, Set<String> changed) {
+        LocationEntry entry = new LocationEntry(location);
+        locations.put(location.getId(), entry);
+        for (String tag : entry.tags) {
+            set(SuggestionResponse.TAG, tag, null, add(tags, tag, 1), changed);
+        }
+        setLocation(location.getId(), changed);
+    }
+
+    private void removeLocation(String locationId, Set<String> changed) {
+        LocationEntry entry = locations.remove(locationId);
+        if (entry != null) {
+            for (String tag : entry.tags) {
+                set(SuggestionResponse.TAG, tag, null, add(tags, tag, -1), changed);
+            }
+            setLocation(locationId, changed);
+        }
+    }
+
+    /**
+     * Suggest a location while it exists, with its current name, must be called while holding the write lock
+     * @param locationId the id of the location
+     * @param changed the keys whose best suggestions changed
+     */
+    private void setLocation(String locationId, Set<String> changed) {
+        LocationEntry entry = locations.get(locationId);
+        Suggestion previous = suggestions.get(SuggestionResponse.LOCATION + ":" + locationId);
+        if (previous != null && (entry == null || !previous.text.equals(entry.name))) {
+            set(SuggestionResponse.LOCATION, previous.text, locationId, 0, changed);
+        }
+        if (entry != null && entry.name != null) {
+            long weight = 1 + meetingsAtLocation.getOrDefault(locationId, 0L);
+            set(SuggestionResponse.LOCATION, entry.name, locationId, weight, changed);
+        }
+    }
+
+    private static long add(Map<String, Long> counts, String key, long delta) {
+        Long count = counts.merge(key, delta, Long::sum);
+        if (count <= 0) {
+            counts.remove(key);
+            return 0;
+        }
+        return count;
+    }
+
+    /**
+     * Set the popularity of a suggestion, the suggestion is removed if it is no longer popular, must be called while
+     * holding the write lock
+     * @param type the kind of suggestion
+     * @param text the text suggested
+     * @param id the id of the location suggested, null for the meeting names and the tags
+     * @param weight the popularity of the suggestion
+     * @param changed the keys whose best suggestions changed
+     */
+    private void set(String type, String text, String id, long weight, Set<String> changed) {
+        String identity = type + ":" + (id != null ? id : text);
+        Suggestion suggestion = suggestions.get(identity);
+        if (weight <= 0) {
+            if (suggestion != null) {
+                suggestions.remove(identity);
+                for (String key : suggestion.keys) {
+                    Node node = find(key);
+                    if (node != null) {
+                        node.ending.remove(suggestion);
+                    }
+                }
+                changed.addAll(suggestion.keys);
+            }
+            return;
+        }
+        if (suggestion == null) {
+            suggestion = new Suggestion(type, text, id);
+            if (suggestion.keys.isEmpty()) {
+                return;
+            }
+            suggestions.put(identity, suggestion);
+            for (String key : suggestion.keys) {
+                Node node = root;
+                for (int i = 0; i < key.length(); i++) {
+                    node = node.child(key.charAt(i));
+                }
+                node.ending.add(suggestion);
+            }
+        }
+        suggestion.weight = weight;
+        changed.addAll(suggestion.keys);
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        return node;
+    }
+
+    /**
+     * Compute again the best suggestions of the nodes along keys, from the deepest nodes to the root, and remove the
+     * nodes left empty. Nothing is done while loading, must be called while holding the write lock
+     * @param keys the keys whose suggestions changed
+     */
+    private void update(Set<String> keys) {
+        if (!loaded || keys.isEmpty()) {
+            return;
+        }
+        List<Set<Node>> levels = new ArrayList<>();
+        for (String key : keys) {
+            Node node = root;
+            for (int depth = 0; node != null; depth++) {
+                if (levels.size() <= depth) {
+                    levels.add(new HashSet<>());
+                }
+                levels.get(depth).add(node);
+                node = depth < key.length() ? node.children.get(key.charAt(depth)) : null;
+            }
+        }
+        for (int depth = levels.size() - 1; depth >= 0; depth--) {
+            for (Node node : levels.get(depth)) {
+                node.updateBest();
+                if (node.parent != null && node.ending.isEmpty() && node.children.isEmpty()) {
+                    node.parent.children.remove(node.character);
+                }
+            }
+        }
+    }
+
+    private static void updateAll(Node node) {
+        for (Node child : node.children.values()) {
+            updateAll(child);
+        }
+        node.updateBest();
+    }
+
+    /**
+     * Text suggested, found by the keys starting at each of its words
+     */
+    private static final class Suggestion {
+        private final String type;
+        private final String text;
+        private final String id;
+        private final List<String> keys = new ArrayList<>();
+        private long weight;
+
+        private Suggestion(String type, String text, String id) {
+            this.type = type;
+            this.text = text;
+            this.id = id;
+            String normalized = normalize(text, true);
+            Set<String> unique = new LinkedHashSet<>();
+            int start = 0;
+            while (start < normalized.length()) {
+                unique.add(normalized.substring(start, Math.min(normalized.length(), start + MAX_KEY_LENGTH)));
+                int separator = normalized.indexOf(' ', start);
+                if (separator < 0) {
+                    break;
+                }
+                start = separator + 1;
+            }
+            keys.addAll(unique);
+        }
+    }
+
+    /**
+     * Node of the trie, with the suggestions whose key ends there and the best suggestions of its subtree
+     */
+    private static final class Node {
+        private final Node parent;
+        private final char character;
+        private final Map<Character, Node> children = new HashMap<>();
+        private final List<Suggestion> ending = new ArrayList<>(1);
+        private Suggestion[] best = NONE;
+
+        private Node(Node parent, char character) {
+            this.parent = parent;
+            this.character = character;
+        }
+
+        private Node child(char character) {
+            return children.computeIfAbsent(character, c -> new Node(this, c));
+        }
+
+        /**
+         * The best suggestions of a subtree are among the best suggestions of the subtrees of the children, a
+         * suggestion ending under several children is only kept once
+         */
+        private void updateBest() {
+            List<Suggestion> candidates = new ArrayList<>(ending);
+            for (Node child : children.values()) {
+                Collections.addAll(candidates, child.best);
+            }
+            candidates.sort(BEST_FIRST);
+            Set<Suggestion> kept = new LinkedHashSet<>();
+            for (int i = 0; i < candidates.size() && kept.size() < MAX_SUGGESTIONS; i++) {
+                kept.add(candidates.get(i));
+            }
+            best = kept.toArray(NONE);
+        }
+    }
+
+    /**
+     * Contributions of a public meeting to the popularity of the suggestions
+     */
+    private static final class MeetingEntry {
+        private final String name;
+        private final Set<String> words = new HashSet<>();
+        private final Set<String> tags = new HashSet<>();
+        private final String locationID;
+        private final long popularity;
+
+        private MeetingEntry(Meeting meeting) {
+            this.name = meeting.getName();
+            String normalized = name != null ? normalize(name, true) : "";
+            if (!normalized.isEmpty()) {
+                words.addAll(Arrays.asList(normalized.split(" ")));
+            }
+            this.locationID = meeting.getLocationID();
+            this.popularity = 1 + (meeting.getMembersID() != null ? meeting.getMembersID().size() : 0);
+            tags.addAll(tagNames(meeting.getTags()));
+        }
+    }
+
+    /**
+     * Name and tags of a location
+     */
+    private static final class LocationEntry {
+        private final String name;
+        private final Set<String> tags = new HashSet<>();
+
+        private LocationEntry(Location location) {
+            this.name = location.getName();
+            tags.addAll(tagNames(location.getTags()));
+        }
+    }
+
+    private static List<String> tagNames(List<Tag> tags) {
+        List<String> names = new ArrayList<>();
+        if (tags != null) {
+            for (Tag tag : tags) {
+                if (tag != null && tag.getName() != null) {
+                    names.add(tag.getName());
+                }
+            }
+        }
+        return names;
+    }
+}
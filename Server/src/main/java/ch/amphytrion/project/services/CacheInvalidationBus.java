@@ -0,0 +1,406 @@
+package ch.amphytrion.project.services;
+
+import ch.amphytrion.project.authentication.jwt_authentication.PrincipalCache;
+import ch.amphytrion.project.entities.databaseentities.Location;
+import ch.amphytrion.project.entities.databaseentities.Meeting;
+import ch.amphytrion.project.entities.databaseentities.MessageBucket;
+import ch.amphytrion.project.entities.databaseentities.User;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Field;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Remove from the caches of this instance the users, locations, meetings and chat messages written by any instance, by
+ * following the change stream of their collections. The position in the stream is saved, so that a restarted stream continues after
+ * the last change seen. When change streams are not available (standalone server) the caches only rely on their TTL.
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@Component
+public class CacheInvalidationBus {
+
+    public static final String ENABLED_PROPERTY = "cache.invalidation.enabled";
+    public static final String INSTANCE_PROPERTY = "cache.invalidation.instance";
+    public static final String STATE_COLLECTION = "cacheInvalidation";
+    public static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_AWAIT = TimeUnit.SECONDS.toMillis(1);
+    private static final long SAVE_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+    // Change streams not supported by the server: standalone, too old or not allowed
+    private static final Set<Integer> UNSUPPORTED_CODES = new HashSet<>(Arrays.asList(40573, 40324, 115));
+    // The saved position is no longer in the oplog
+    private static final Set<Integer> LOST_POSITION_CODES = new HashSet<>(Arrays.asList(286, 280, 260));
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final String instance;
+    private final Map<String, CollectionCache> caches = new HashMap<>();
+    private final Map<String, Counter> events = new HashMap<>();
+    private volatile boolean running;
+    private volatile boolean active;
+    private Thread watcher;
+    private BsonDocument resumeToken;
+    private BsonDocument savedToken;
+    private long lastSave;
+
+    /**
+     * Cache invalidation bus constructor
+     * @param mongoTemplate template used to follow the changes and save the position
+     * @param principalCache cache of the users
+     * @param locationCache cache of the locations
+     * @param autocompleteIndex index of the suggestions of meetings, tags and locations
+     * @param recentMessagesCache latest messages of the active chats
+     * @param registry registry of the metrics of the bus
+     * @param environment environment containing the cache.invalidation properties
+     */
+    @Autowired
+    public CacheInvalidationBus(MongoTemplate mongoTemplate, PrincipalCache principalCache, LocationCache locationCache,
+                                AutocompleteIndex autocompleteIndex, RecentMessagesCache recentMessagesCache,
+                                MeterRegistry registry, Environment environment) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = environment.getProperty(ENABLED_PROPERTY, Boolean.class, true);
+        this.instance = environment.getProperty(INSTANCE_PROPERTY, defaultInstance());
+        register(mongoTemplate.getCollectionName(User.class), principalCache::invalidate, principalCache::clear, registry);
+        register(mongoTemplate.getCollectionName(Location.class), id -> {
+            locationCache.invalidate(id);
+            autocompleteIndex.refreshLocation(id);
+        }, () -> {
+            locationCache.clear();
+            autocompleteIndex.reset();
+        }, registry);
+        register(mongoTemplate.getCollectionName(Meeting.class), autocompleteIndex::refreshMeeting, autocompleteIndex::reset, registry);
+        // The messages are stored in buckets, the chat of a bucket is read from the document looked up by the stream.
+        // The messages added by this instance are already in memory, only the ones missing evict the chat
+        register(mongoTemplate.getCollectionName(MessageBucket.class), CacheInvalidationBus::chatIdOf,
+                (chatId, change) -> recentMessagesCache.invalidateUnlessKnown(chatId, messageIdsOf(change)),
+                recentMessagesCache::clear, registry);
+        Gauge.builder("cache.invalidation.active", this, bus -> bus.isActive() ? 1 : 0)
+                .description("1 when the caches follow the changes of the other instances, 0 when they only rely on their TTL")
+                .register(registry);
+    }
+
+    /**
+     * Start following the changes, if not already started
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        watcher = new Thread(this::watch, "cache-invalidation");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Stop following the changes and save the position reached
+     */
+    @PreDestroy
+    public void stop() {
+        Thread stopped;
+        synchronized (this) {
+            running = false;
+            stopped = watcher;
+        }
+        if (stopped != null) {
+            try {
+                stopped.join(2 * MAX_AWAIT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Check if the caches are invalidated by the changes of the other instances
+     * @return boolean true if the change stream is open, false if the caches only rely on their TTL
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Name of this instance, under which the position in the stream is saved
+     * @return String the name of the instance
+     */
+    public String getInstance() {
+        return instance;
+    }
+
+    private void register(String collection, Consumer<String> invalidate, Runnable clear, MeterRegistry registry) {
+        register(collection, change -> change.getDocumentKey() != null ? idOf(change.getDocumentKey().get("_id")) : null,
+                (id, change) -> invalidate.accept(id), clear, registry);
+    }
+
+    private void register(String collection, Function<ChangeStreamDocument<Document>, String> key,
+                          BiConsumer<String, ChangeStreamDocument<Document>> invalidate, Runnable clear,
+                          MeterRegistry registry) {
+        caches.put(collection, new CollectionCache(key, invalidate, clear));
+        events.put(collection, Counter.builder("cache.invalidation.events").tag("collection", collection).register(registry));
+    }
+
+    /**
+     * Follow the change stream until stopped, reopened after an error
+     */
+    private void watch() {
+        resumeToken = loadToken();
+        savedToken = resumeToken;
+        while (running) {
+            try {
+                follow();
+            } catch (MongoCommandException e) {
+                active = false;
+                if (UNSUPPORTED_CODES.contains(e.getErrorCode())) {
+                    LOGGER.info("Change streams not available, the caches only rely on their TTL: {}", e.getErrorMessage());
+                    running = false;
+                    return;
+                }
+                if (LOST_POSITION_CODES.contains(e.getErrorCode())) {
+                    LOGGER.warn("Position in the change stream lost, the caches are cleared: {}", e.getErrorMessage());
+                    resumeToken = null;
+                    continue;
+                }
+                LOGGER.warn("Change stream closed, retry in {} ms", RETRY_DELAY, e);
+                pause();
+            } catch (MongoException | IllegalStateException e) {
+                active = false;
+                if (running) {
+                    LOGGER.warn("Change stream closed, retry in {} ms", RETRY_DELAY, e);
+                    pause();
+                }
+            }
+        }
+        active = false;
+        saveToken(true);
+    }
+
+    /**
+     * Read the change stream, from the saved position if any
+     */
+    private void follow() {
+        List<Bson> pipeline = Arrays.asList(
+                Aggregates.match(Filters.or(
+                        Filters.in("ns.coll", caches.keySet()),
+                        Filters.in("operationType", Arrays.asList("dropDatabase", "invalidate")))),
+                // Only the chat of the message buckets is read from the documents looked up, and the ids of the
+                // messages of the new buckets; the messages pushed to a bucket are in its updated fields
+                Aggregates.addFields(new Field<>("fullDocument.messages", new Document("$cond", Arrays.asList(
+                        new Document("$eq", Arrays.asList("$operationType", "insert")),
+                        "$fullDocument.messages._id",
+                        "$$REMOVE")))));
+        boolean resumed = resumeToken != null;
+        ChangeStreamIterable<Document> stream = mongoTemplate.getDb().watch(pipeline)
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(MAX_AWAIT, TimeUnit.MILLISECONDS);
+        if (resumed) {
+            stream = stream.resumeAfter(resumeToken);
+        }
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+            if (!resumed) {
+                // Changes made before the stream was opened were not seen
+                clearAll();
+            }
+            active = true;
+            while (running) {
+                ChangeStreamDocument<Document> change = cursor.tryNext();
+                if (change != null && !apply(change)) {
+                    // The stream was invalidated, it is opened again from now
+                    resumeToken = null;
+                    return;
+                }
+                if (cursor.getResumeToken() != null) {
+                    resumeToken = cursor.getResumeToken();
+                }
+                saveToken(false);
+            }
+        }
+    }
+
+    /**
+     * Remove from the caches the document of a change
+     * @param change the change read from the stream
+     * @return boolean false if the stream was invalidated
+     */
+    private boolean apply(ChangeStreamDocument<Document> change) {
+        OperationType operation = change.getOperationType();
+        if (operation == OperationType.INVALIDATE || operation == OperationType.DROP_DATABASE) {
+            clearAll();
+            return operation != OperationType.INVALIDATE;
+        }
+        String collection = change.getNamespace() != null ? change.getNamespace().getCollectionName() : null;
+        CollectionCache cache = caches.get(collection);
+        if (cache == null) {
+            return true;
+        }
+        events.get(collection).increment();
+        String id = cache.key.apply(change);
+        if (id != null) {
+            cache.invalidate.accept(id, change);
+        } else {
+            // Dropped or renamed collection, or document whose key cannot be read
+            cache.clear.run();
+        }
+        return true;
+    }
+
+    private static String idOf(BsonValue id) {
+        if (id == null) {
+            return null;
+        }
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : null;
+    }
+
+    /**
+     * Chat of the message bucket of a change
+     * @param change the change of a message bucket
+     * @return String the id of the chat, null if the bucket has been deleted
+     */
+    private static String chatIdOf(ChangeStreamDocument<Document> change) {
+        return change.getFullDocument() != null ? change.getFullDocument().getString("chatId") : null;
+    }
+
+    /**
+     * Messages written by the change of a message bucket
+     * @param change the change of a message bucket
+     * @return List<String> the ids of the messages inserted or pushed, empty if unknown
+     */
+    private static List<String> messageIdsOf(ChangeStreamDocument<Document> change) {
+        List<String> ids = new ArrayList<>();
+        if (change.getOperationType() == OperationType.INSERT) {
+            List<?> inserted = change.getFullDocument().get("messages", List.class);
+            if (inserted != null) {
+                inserted.forEach(id -> ids.add(id instanceof ObjectId ? ((ObjectId) id).toHexString() : String.valueOf(id)));
+            }
+        } else if (change.getOperationType() == OperationType.UPDATE && change.getUpdateDescription() != null) {
+            if (change.getUpdateDescription().getRemovedFields() != null
+                    && !change.getUpdateDescription().getRemovedFields().isEmpty()) {
+                return Collections.emptyList();
+            }
+            // A push reports each message added as messages.<index>, a replaced array as messages
+            for (Map.Entry<String, BsonValue> field : change.getUpdateDescription().getUpdatedFields().entrySet()) {
+                if (field.getKey().equals("messages") && field.getValue().isArray()) {
+                    for (BsonValue message : field.getValue().asArray()) {
+                        ids.add(message.isDocument() ? idOf(message.asDocument().get("_id")) : null);
+                    }
+                } else if (field.getKey().startsWith("messages.")) {
+                    ids.add(field.getValue().isDocument() ? idOf(field.getValue().asDocument().get("_id")) : null);
+                }
+            }
+        }
+        // A message without a readable id cannot be recognized
+        return ids.contains(null) ? Collections.emptyList() : ids;
+    }
+
+    private void clearAll() {
+        caches.values().forEach(cache -> cache.clear.run());
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(RETRY_DELAY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private MongoCollection<Document> stateCollection() {
+        return mongoTemplate.getCollection(STATE_COLLECTION);
+    }
+
+    /**
+     * Read the position saved by this instance
+     * @return BsonDocument the resume token, null if none
+     */
+    private BsonDocument loadToken() {
+        try {
+            Document state = stateCollection().find(Filters.eq("_id", instance)).first();
+            return state != null && state.getString("resumeToken") != null ? BsonDocument.parse(state.getString("resumeToken")) : null;
+        } catch (MongoException e) {
+            LOGGER.warn("Saved position in the change stream not readable", e);
+            return null;
+        }
+    }
+
+    /**
+     * Save the position reached, at most once per SAVE_INTERVAL unless forced
+     * @param force true to save even if saved recently
+     */
+    private void saveToken(boolean force) {
+        long now = System.currentTimeMillis();
+        if (resumeToken == null || resumeToken.equals(savedToken) || (!force && now - lastSave < SAVE_INTERVAL)) {
+            return;
+        }
+        try {
+            Document state = new Document("_id", instance)
+                    .append("resumeToken", resumeToken.toJson())
+                    .append("date", new Date(now));
+            stateCollection().replaceOne(Filters.eq("_id", instance), state, new ReplaceOptions().upsert(true));
+            savedToken = resumeToken;
+            lastSave = now;
+        } catch (MongoException e) {
+            LOGGER.warn("Position in the change stream not saved", e);
+        }
+    }
+
+    private static String defaultInstance() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "default";
+        }
+    }
+
+    /**
+     * Operations removing the documents of a collection from its cache
+     */
+    private static class CollectionCache {
+        private final Function<ChangeStreamDocument<Document>, String> key;
+        private final BiConsumer<String, ChangeStreamDocument<Document>> invalidate;
+        private final Runnable clear;
+
+        CollectionCache(Function<ChangeStreamDocument<Document>, String> key,
+                        BiConsumer<String, ChangeStreamDocument<Document>> invalidate, Runnable clear) {
+            this.key = key;
+            this.invalidate = invalidate;
+            this.clear = clear;
+        }
+    }
+}
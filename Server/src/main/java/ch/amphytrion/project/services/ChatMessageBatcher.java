@@ -0,0 +1,241 @@
+package ch.amphytrion.project.services;
+
+import ch.amphytrion.project.entities.databaseentities.Message;
+import ch.amphytrion.project.repositories.MessageBucketRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Group the messages posted at the same time in a chat and write them with a single update.
+ * The first message of a batch waits at most the window, a batch is written as soon as it is full. The future of a
+ * message is completed once its batch is stored in the database. The messages are stamped when they join a batch and
+ * the batches of a chat are written one after the other, so that a message never becomes visible before an earlier
+ * one of the same chat. The windows are closed by a timer thread and the batches written by a pool of writers, so
+ * that slow writes never delay the end of the windows of the other chats.
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@Component
+public class ChatMessageBatcher {
+
+    public static final long WINDOW_MILLIS = 5;
+    public static final int MAX_BATCH_SIZE = 50;
+    public static final int WRITER_THREADS = 8;
+    private static final long SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    private final MessageBucketRepository messageBucketRepository;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final Map<String, ChatBatches> chats = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("chat-batch-timer"));
+    private final ExecutorService writer = Executors.newFixedThreadPool(WRITER_THREADS, daemonThreads("chat-batch-write"));
+    private final DistributionSummary batchSize;
+    private final Timer flushLatency;
+
+    /**
+     * Chat message batcher constructor
+     * @param messageBucketRepository Repository of the messages of the chats
+     * @param registry registry of the metrics of the batches
+     */
+    @Autowired
+    public ChatMessageBatcher(MessageBucketRepository messageBucketRepository, MeterRegistry registry) {
+        this(messageBucketRepository, registry, WINDOW_MILLIS, MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Chat message batcher constructor
+     * @param messageBucketRepository Repository of the messages of the chats
+     * @param registry registry of the metrics of the batches
+     * @param windowMillis maximum time in milliseconds a message waits for others
+     * @param maxBatchSize number of messages after which a batch is written without waiting
+     */
+    public ChatMessageBatcher(MessageBucketRepository messageBucketRepository, MeterRegistry registry,
+                              long windowMillis, int maxBatchSize) {
+        this.messageBucketRepository = messageBucketRepository;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.batchSize = DistributionSummary.builder("chat.messages.batch.size")
+                .description("Number of messages written together")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.flushLatency = Timer.builder("chat.messages.batch.flush")
+                .description("Time to write a batch of messages")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Add a message to the current batch of its chat, its id and date are set in the order of the writes
+     * @param chatId the id of the chat
+     * @param message the message to store
+     * @return CompletableFuture<Message> completed with the message once it is stored
+     */
+    public CompletableFuture<Message> append(String chatId, Message message) {
+        CompletableFuture<Message> stored = new CompletableFuture<>();
+        chats.compute(chatId, (id, chat) -> {
+            if (chat == null) {
+                chat = new ChatBatches();
+            }
+            if (chat.current == null) {
+                Batch batch = new Batch(chatId);
+                try {
+                    // The window is started before the message joins the batch, a stopped timer never leaves it pending
+                    timer.schedule(() -> closeWindow(batch), windowMillis, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    stored.completeExceptionally(e);
+                    return chat.last != null ? chat : null;
+                }
+                chat.current = batch;
+            }
+            message.setId(new ObjectId().toHexString());
+            message.setDate(LocalDateTime.now());
+            chat.current.messages.add(message);
+            chat.current.futures.add(stored);
+            if (chat.current.messages.size() >= maxBatchSize) {
+                // The next message starts a new batch
+                submit(chat);
+            }
+            return chat;
+        });
+        return stored;
+    }
+
+    /**
+     * Write the pending batches and stop the timer and the writers when the application stops
+     */
+    @PreDestroy
+    public void shutdown() {
+        // The messages appended from now on are failed
+        timer.shutdown();
+        List<CompletableFuture<Void>> written = new ArrayList<>();
+        for (String chatId : new ArrayList<>(chats.keySet())) {
+            chats.computeIfPresent(chatId, (id, chat) -> {
+                if (chat.current != null) {
+                    submit(chat);
+                }
+                if (chat.last != null) {
+                    written.add(chat.last.written);
+                }
+                return chat;
+            });
+        }
+        try {
+            CompletableFuture.allOf(written.toArray(new CompletableFuture[0])).get(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // The messages not written are failed by the stop of the writer
+        }
+        writer.shutdown();
+    }
+
+    /**
+     * Submit a batch at the end of its window, unless it was already submitted because it was full
+     * @param batch the batch whose window ends
+     */
+    private void closeWindow(Batch batch) {
+        chats.computeIfPresent(batch.chatId, (id, chat) -> {
+            if (chat.current == batch) {
+                submit(chat);
+            }
+            return chat;
+        });
+    }
+
+    /**
+     * Close the current batch of a chat and write it after the previous one, must be called inside the compute of the
+     * map of the chats
+     * @param chat the batches of the chat
+     */
+    private void submit(ChatBatches chat) {
+        Batch batch = chat.current;
+        CompletableFuture<Void> previous = chat.last != null ? chat.last.written : CompletableFuture.completedFuture(null);
+        chat.current = null;
+        chat.last = batch;
+        try {
+            previous.whenCompleteAsync((result, e) -> flush(batch), writer).exceptionally(e -> {
+                reject(batch, e);
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            reject(batch, e);
+        }
+    }
+
+    /**
+     * Fail the messages of a batch that cannot be written because the writer is stopped
+     * @param batch the batch rejected
+     * @param e the cause of the failure
+     */
+    private void reject(Batch batch, Throwable e) {
+        batch.futures.forEach(future -> future.completeExceptionally(e));
+        batch.written.complete(null);
+    }
+
+    /**
+     * Write a batch and notify its messages, the batches of the chat are no longer kept once the last one is written
+     * @param batch the batch to write
+     */
+    private void flush(Batch batch) {
+        batchSize.record(batch.messages.size());
+        long start = System.nanoTime();
+        try {
+            messageBucketRepository.appendMessages(batch.chatId, batch.messages);
+            flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            for (int i = 0; i < batch.messages.size(); i++) {
+                batch.futures.get(i).complete(batch.messages.get(i));
+            }
+        } catch (Exception e) {
+            batch.futures.forEach(future -> future.completeExceptionally(e));
+        } finally {
+            batch.written.complete(null);
+            chats.computeIfPresent(batch.chatId, (id, chat) -> chat.current == null && chat.last == batch ? null : chat);
+        }
+    }
+
+    /**
+     * Build a factory of daemon threads
+     * @param name the name of the threads
+     * @return ThreadFactory the factory
+     */
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Batch being filled and last batch submitted of a chat, only modified inside the compute of the map
+     */
+    private static class ChatBatches {
+        private Batch current;
+        private Batch last;
+    }
+
+    /**
+     * Messages of a chat waiting to be written, only modified inside the compute of the map
+     */
+    private static class Batch {
+        private final String chatId;
+        private final List<Message> messages = new ArrayList<>();
+        private final List<CompletableFuture<Message>> futures = new ArrayList<>();
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        Batch(String chatId) {
+            this.chatId = chatId;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package ch.amphytrion.project.services;
+
+import ch.amphytrion.project.dto.ContinuationToken;
+import ch.amphytrion.project.entities.databaseentities.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Push the new messages of the chats to the connected clients with server-sent events.
+ * Each connection has a bounded queue of events emptied by one writer at a time, a connection that cannot keep up or
+ * whose write is blocked for more than the write timeout is dropped, and the client reloads the messages missed with
+ * the after cursor of the messages endpoint. The heartbeats are queued like the messages, so that no write is ever
+ * done by the publishers or by the scheduler. The writers are a bounded pool, the connections waiting for a writer
+ * are served once the blocked writes are dropped.
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@Service
+public class ChatPushService {
+
+    public static final long TIMEOUT = 30 * 60 * 1000L;
+    public static final int QUEUE_CAPACITY = 100;
+    public static final long HEARTBEAT_PERIOD = TimeUnit.SECONDS.toMillis(25);
+    public static final long WRITE_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    public static final int MAX_WRITERS = 64;
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChatPushService.class);
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    // Connections with a write in progress, including the ones already closed and waiting for their write to end
+    private final Set<Subscriber> writing = ConcurrentHashMap.newKeySet();
+    // A blocked write only holds its own thread, so it never delays the connections of the other chats while writers
+    // are free. A connection queues at most one task, so the queue never holds more tasks than connections
+    private final ThreadPoolExecutor writers;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("chat-heartbeat"));
+    private final long writeTimeout;
+
+    /**
+     * Chat push service constructor
+     */
+    @Autowired
+    public ChatPushService() {
+        this(HEARTBEAT_PERIOD, WRITE_TIMEOUT);
+    }
+
+    /**
+     * Chat push service constructor
+     * @param heartbeatPeriod milliseconds between two heartbeats
+     * @param writeTimeout milliseconds after which a connection whose write is blocked is dropped
+     */
+    public ChatPushService(long heartbeatPeriod, long writeTimeout) {
+        this(heartbeatPeriod, writeTimeout, MAX_WRITERS);
+    }
+
+    /**
+     * Chat push service constructor
+     * @param heartbeatPeriod milliseconds between two heartbeats
+     * @param writeTimeout milliseconds after which a connection whose write is blocked is dropped
+     * @param maxWriters maximum number of connections written at the same time
+     */
+    public ChatPushService(long heartbeatPeriod, long writeTimeout, int maxWriters) {
+        this.writeTimeout = writeTimeout;
+        this.writers = new ThreadPoolExecutor(maxWriters, maxWriters, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("chat-push"));
+        writers.allowCoreThreadTimeOut(true);
+        scheduler.scheduleAtFixedRate(this::queueHeartbeats, heartbeatPeriod, heartbeatPeriod, TimeUnit.MILLISECONDS);
+        long checkPeriod = Math.max(writeTimeout / 4, 1);
+        scheduler.scheduleAtFixedRate(this::dropBlockedWriters, checkPeriod, checkPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Open a connection receiving the new messages of a chat
+     * @param chatId the id of the chat
+     * @return SseEmitter the connection
+     */
+    public SseEmitter subscribe(String chatId) {
+        return subscribe(chatId, new SseEmitter(TIMEOUT));
+    }
+
+    /**
+     * Register a connection receiving the new messages of a chat
+     * @param chatId the id of the chat
+     * @param emitter the connection
+     * @return SseEmitter the connection registered
+     */
+    public SseEmitter subscribe(String chatId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(chatId, emitter);
+        subscribers.computeIfAbsent(chatId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+        return emitter;
+    }
+
+    /**
+     * Send a new message to all the connections of a chat
+     * @param chatId the id of the chat
+     * @param message the message sent
+     */
+    public void publish(String chatId, Message message) {
+        Set<Subscriber> chatSubscribers = subscribers.get(chatId);
+        if (chatSubscribers != null) {
+            String id = new ContinuationToken(message).encode();
+            for (Subscriber subscriber : chatSubscribers) {
+                subscriber.offer(SseEmitter.event().id(id).name("message").data(message));
+            }
+        }
+    }
+
+    /**
+     * Number of connections of a chat
+     * @param chatId the id of the chat
+     * @return int the number of connections
+     */
+    public int subscriberCount(String chatId) {
+        Set<Subscriber> chatSubscribers = subscribers.get(chatId);
+        return chatSubscribers != null ? chatSubscribers.size() : 0;
+    }
+
+    /**
+     * Close all the connections when the application stops
+     */
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        subscribers.values().forEach(chatSubscribers -> chatSubscribers.forEach(Subscriber::close));
+        subscribers.clear();
+        writers.shutdown();
+    }
+
+    /**
+     * Remove a connection from the registry
+     * @param subscriber the connection to remove
+     */
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.chatId, (id, chatSubscribers) -> {
+            chatSubscribers.remove(subscriber);
+            return chatSubscribers.isEmpty() ? null : chatSubscribers;
+        });
+    }
+
+    /**
+     * Queue a comment on every idle connection, so that the connections closed by the clients are detected
+     */
+    private void queueHeartbeats() {
+        subscribers.values().forEach(chatSubscribers -> chatSubscribers.forEach(Subscriber::offerHeartbeat));
+    }
+
+    /**
+     * Drop the connections whose current write has lasted more than the write timeout
+     */
+    private void dropBlockedWriters() {
+        long now = System.currentTimeMillis();
+        writing.forEach(subscriber -> {
+            if (subscriber.isBlockedSince(now - writeTimeout)) {
+                LOGGER.info("Closing a blocked connection to chat {}", subscriber.chatId);
+                subscriber.abort();
+            }
+        });
+    }
+
+    /**
+     * Build a factory of daemon threads
+     * @param name the name of the threads
+     * @return ThreadFactory the factory
+     */
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A connection to a chat and its queue of events to send
+     */
+    private class Subscriber {
+        private final String chatId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private final AtomicBoolean completed = new AtomicBoolean(false);
+        private volatile boolean closed = false;
+        private volatile long writeStart = 0;
+        private Thread writer;
+
+        Subscriber(String chatId, SseEmitter emitter) {
+            this.chatId = chatId;
+            this.emitter = emitter;
+        }
+
+        /**
+         * Queue an event, the connection is closed if its queue is full
+         * @param event the event to send
+         */
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                LOGGER.info("Closing a slow connection to chat {}", chatId);
+                close();
+                return;
+            }
+            startDraining();
+        }
+
+        /**
+         * Queue a heartbeat if nothing is waiting to be sent
+         */
+        void offerHeartbeat() {
+            if (queue.isEmpty() && !draining.get()) {
+                offer(SseEmitter.event().comment("heartbeat"));
+            }
+        }
+
+        /**
+         * Check if a write started before a date is still in progress
+         * @param date the date in milliseconds
+         * @return boolean true if the connection is blocked
+         */
+        boolean isBlockedSince(long date) {
+            long start = writeStart;
+            return start != 0 && start < date;
+        }
+
+        /**
+         * Send the queued events, then complete the connection if it has been closed
+         */
+        void drain() {
+            synchronized (this) {
+                writer = Thread.currentThread();
+            }
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed && (event = queue.poll()) != null) {
+                    writeStart = System.currentTimeMillis();
+                    writing.add(this);
+                    emitter.send(event);
+                    writing.remove(this);
+                    writeStart = 0;
+                }
+            } catch (Exception e) {
+                closed = true;
+                unsubscribe(this);
+            } finally {
+                writing.remove(this);
+                synchronized (this) {
+                    writeStart = 0;
+                    writer = null;
+                    // The interruption of a blocked write must not leak to the next task of the thread
+                    Thread.interrupted();
+                }
+                if (closed) {
+                    complete();
+                }
+                draining.set(false);
+            }
+            // The connection may have been closed or an event queued after the last check
+            if (closed ? !completed.get() : !queue.isEmpty()) {
+                startDraining();
+            }
+        }
+
+        /**
+         * Close the connection, completed by its writer once the current write is over
+         */
+        void close() {
+            closed = true;
+            unsubscribe(this);
+            queue.clear();
+            startDraining();
+        }
+
+        /**
+         * Close a connection whose write is blocked and interrupt the write
+         */
+        void abort() {
+            close();
+            synchronized (this) {
+                if (writer != null) {
+                    writer.interrupt();
+                }
+            }
+        }
+
+        /**
+         * Run the writer of the connection if it is not already running
+         */
+        private void startDraining() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    writers.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // The application is stopping
+                    draining.set(false);
+                }
+            }
+        }
+
+        /**
+         * Complete the connection, called by its writer only so that it never waits for a blocked write
+         */
+        private void complete() {
+            queue.clear();
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                emitter.complete();
+            } catch (Exception e) {
+                // Already closed
+            }
+        }
+    }
+}
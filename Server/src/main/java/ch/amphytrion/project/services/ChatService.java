@@ -1,12 +1,19 @@
 package ch.amphytrion.project.services;
 
 import ch.amphytrion.project.controller.CustomException;
+import ch.amphytrion.project.dto.ContinuationToken;
+import ch.amphytrion.project.entities.databaseentities.Message;
+import ch.amphytrion.project.entities.databaseentities.MessageBucket;
 import ch.amphytrion.project.repositories.ChatRepository;
 import ch.amphytrion.project.entities.databaseentities.Chat;
+import ch.amphytrion.project.repositories.MessageBucketRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 
 /**
  * Contains all the logic of the chat data management
@@ -16,15 +23,33 @@ import java.util.List;
 @Service
 public class ChatService implements IGenericService<Chat> {
 
+    private static final Comparator<Message> MESSAGE_ORDER = Comparator
+            .comparing(Message::getDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Message::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
     private ChatRepository chatRepository;
+    private MessageBucketRepository messageBucketRepository;
+    private RecentMessagesCache recentMessagesCache;
+    private ChatMessageBatcher chatMessageBatcher;
+    private CacheInvalidationBus cacheInvalidationBus;
 
     /**
      * Chat service constructor
      * @param chatRepository Repository of chat class
+     * @param messageBucketRepository Repository of the messages of the chats
+     * @param recentMessagesCache Latest messages of the active chats
+     * @param chatMessageBatcher Writer of the new messages
+     * @param cacheInvalidationBus Follower of the messages written by the other instances
      */
     @Autowired
-    public ChatService(ChatRepository chatRepository) {
+    public ChatService(ChatRepository chatRepository, MessageBucketRepository messageBucketRepository,
+                       RecentMessagesCache recentMessagesCache, ChatMessageBatcher chatMessageBatcher,
+                       CacheInvalidationBus cacheInvalidationBus) {
         this.chatRepository = chatRepository;
+        this.messageBucketRepository = messageBucketRepository;
+        this.recentMessagesCache = recentMessagesCache;
+        this.chatMessageBatcher = chatMessageBatcher;
+        this.cacheInvalidationBus = cacheInvalidationBus;
     }
 
     /**
@@ -37,7 +62,7 @@ public class ChatService implements IGenericService<Chat> {
     }
 
     /**
-     * Create or update a chat
+     * Create or update a chat, without its messages (see addMessage)
      * @param host the chat to add/modify
      * @return Chat the chat that has been added or modified
      */
@@ -53,7 +78,87 @@ public class ChatService implements IGenericService<Chat> {
      */
     @Override
     public Chat findById(String id) {
-        return chatRepository.findById(id).orElse(null);
+        Chat chat = chatRepository.findById(id).orElse(null);
+        if (chat != null) {
+            chat.setMessages(findMessages(id));
+        }
+        return chat;
+    }
+
+    /**
+     * Check if a chat exists, without loading its messages. The chats in the recent messages cache exist
+     * @param id the id of the chat
+     * @return boolean true if the chat exists
+     */
+    public boolean existsById(String id) {
+        return (useRecentMessages() && recentMessagesCache.contains(id)) || chatRepository.existsById(id);
+    }
+
+    /**
+     * Retrieve all the messages of a chat
+     * @param chatId the id of the chat
+     * @return List<Message> the messages ordered by date
+     */
+    public List<Message> findMessages(String chatId) {
+        List<Message> messages = new ArrayList<>();
+        for (MessageBucket bucket : messageBucketRepository.findByChatIdOrderByFirstDateAsc(chatId)) {
+            messages.addAll(bucket.getMessages());
+        }
+        // Buckets filled concurrently can overlap
+        messages.sort(MESSAGE_ORDER);
+        return messages;
+    }
+
+    /**
+     * Retrieve the newest messages of a chat sent before a cursor
+     * @param chatId the id of the chat
+     * @param before the cursor of the oldest message already known, null to get the latest messages
+     * @param limit maximum number of messages to return
+     * @return List<Message> the messages found, newest first
+     */
+    public List<Message> findMessagesBefore(String chatId, String before, int limit) {
+        if (before == null && limit <= recentMessagesCache.getCapacity() && useRecentMessages()) {
+            return recentMessagesCache.recent(chatId, limit,
+                    () -> messageBucketRepository.findBefore(chatId, null, recentMessagesCache.getCapacity()));
+        }
+        return messageBucketRepository.findBefore(chatId, ContinuationToken.decode(before), limit);
+    }
+
+    /**
+     * Retrieve the messages of a chat sent after a cursor
+     * @param chatId the id of the chat
+     * @param after the cursor of the newest message already known
+     * @param limit maximum number of messages to return
+     * @return List<Message> the messages found, oldest first
+     */
+    public List<Message> findMessagesAfter(String chatId, String after, int limit) {
+        return messageBucketRepository.findAfter(chatId, ContinuationToken.decode(after), limit);
+    }
+
+    /**
+     * Add a message to a chat, only the message is written in the database. The messages posted at the same time in
+     * a chat are written together, the method returns once the message is stored
+     * @param chatId the id of the chat
+     * @param message the message to add, its id and date are set by the server in the order of the writes
+     * @return Message the message added
+     */
+    public Message addMessage(String chatId, Message message) {
+        try {
+            chatMessageBatcher.append(chatId, message).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        recentMessagesCache.add(chatId, message);
+        return message;
+    }
+
+    /**
+     * Check if the recent messages cache can be read: without change stream, the messages written by the other
+     * instances would not be seen
+     * @return boolean true if the cache follows the changes of the other instances
+     */
+    private boolean useRecentMessages() {
+        return cacheInvalidationBus.isActive();
     }
 
     /**
@@ -63,6 +168,8 @@ public class ChatService implements IGenericService<Chat> {
     @Override
     public void delete(Chat host) {
         chatRepository.delete(host);
+        messageBucketRepository.deleteByChatId(host.getId());
+        recentMessagesCache.invalidate(host.getId());
     }
 
     /**
@@ -72,6 +179,8 @@ public class ChatService implements IGenericService<Chat> {
     @Override
     public void deleteById(String id) {
         chatRepository.deleteById(id);
+        messageBucketRepository.deleteByChatId(id);
+        recentMessagesCache.invalidate(id);
     }
 
 
@@ -0,0 +1,244 @@
+package ch.amphytrion.project.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Entities read recently, kept in their database form with an expiration time and evicted by least recent use.
+ * An entity is removed when it is saved or deleted through a repository, the updates made with queries must call
+ * invalidate. Each caller gets its own copy of the entity, the changes of a controller never leak to other requests.
+ *
+ * @param <T> the type of the entities
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public abstract class EntityCache<T> extends AbstractMongoEventListener<T> {
+
+    private final MongoConverter converter;
+    private final Class<T> type;
+    private final Function<T, String> idOf;
+    private final long ttl;
+    private final LongSupplier clock;
+    // Incremented by each invalidation, an entity loaded meanwhile may be stale and is not cached
+    private final AtomicLong generation = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expirations;
+    private final Map<String, CachedEntity> entities;
+
+    /**
+     * Entity cache constructor
+     * @param converter converter used to copy the entities
+     * @param type the type of the entities
+     * @param idOf gives the id of an entity
+     * @param name prefix of the metrics of the cache
+     * @param registry registry of the metrics of the cache
+     * @param maxEntities number of entities kept
+     * @param ttl time in milliseconds after which an entity is read again in the database
+     * @param clock source of the current time in milliseconds
+     */
+    protected EntityCache(MongoConverter converter, Class<T> type, Function<T, String> idOf, String name,
+                          MeterRegistry registry, int maxEntities, long ttl, LongSupplier clock) {
+        this.converter = converter;
+        this.type = type;
+        this.idOf = idOf;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.entities = new LinkedHashMap<String, CachedEntity>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedEntity> eldest) {
+                if (size() > maxEntities) {
+                    sizeEvictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.hits = Counter.builder(name + ".cache.requests").tag("result", "hit").register(registry);
+        this.misses = Counter.builder(name + ".cache.requests").tag("result", "miss").register(registry);
+        this.sizeEvictions = Counter.builder(name + ".cache.evictions").tag("cause", "size").register(registry);
+        this.expirations = Counter.builder(name + ".cache.evictions").tag("cause", "expired").register(registry);
+        Gauge.builder(name + ".cache.size", this, EntityCache::size).register(registry);
+    }
+
+    /**
+     * Get a copy of an entity, loaded if not in the cache
+     * @param id the id of the entity
+     * @param loader loads the entity from the database
+     * @return T the entity, null if not found
+     */
+    public T get(String id, Function<String, T> loader) {
+        Document document;
+        synchronized (this) {
+            document = lookup(id);
+        }
+        if (document != null) {
+            hits.increment();
+            return converter.read(type, document);
+        }
+        misses.increment();
+        long loadGeneration = generation.get();
+        T entity = loader.apply(id);
+        if (entity != null) {
+            store(Collections.singletonList(entity), loadGeneration);
+        }
+        return entity;
+    }
+
+    /**
+     * Get copies of many entities, the ones not in the cache are loaded together
+     * @param ids the ids of the entities
+     * @param loader loads the missing entities from the database, by id
+     * @return Map<String, T> the entities found, by id
+     */
+    public Map<String, T> getAll(Collection<String> ids, Function<Set<String>, Map<String, T>> loader) {
+        Map<String, Document> documents = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        synchronized (this) {
+            for (String id : ids) {
+                Document document = lookup(id);
+                if (document != null) {
+                    documents.put(id, document);
+                } else {
+                    missing.add(id);
+                }
+            }
+        }
+        hits.increment(documents.size());
+        misses.increment(missing.size());
+        Map<String, T> found = new HashMap<>();
+        documents.forEach((id, document) -> found.put(id, converter.read(type, document)));
+        if (!missing.isEmpty()) {
+            long loadGeneration = generation.get();
+            Map<String, T> loaded = loader.apply(missing);
+            store(loaded.values(), loadGeneration);
+            found.putAll(loaded);
+        }
+        return found;
+    }
+
+    /**
+     * Remove an entity from the cache
+     * @param id the id of the entity
+     */
+    public synchronized void invalidate(String id) {
+        generation.incrementAndGet();
+        entities.remove(id);
+    }
+
+    /**
+     * Remove all the entities from the cache
+     */
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        entities.clear();
+    }
+
+    /**
+     * Number of entities in the cache
+     * @return int the number of entities
+     */
+    public synchronized int size() {
+        long now = clock.getAsLong();
+        Iterator<CachedEntity> iterator = entities.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAt < now) {
+                iterator.remove();
+                expirations.increment();
+            }
+        }
+        return entities.size();
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<T> event) {
+        invalidate(idOf.apply(event.getSource()));
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<T> event) {
+        Document query = event.getSource();
+        Object id = query != null ? query.get("_id") : null;
+        if (id instanceof String || id instanceof ObjectId) {
+            invalidate(id.toString());
+        } else {
+            // Deleted by a query on other fields or many ids
+            clear();
+        }
+    }
+
+    /**
+     * Remove from the cache the entities whose database form matches a predicate
+     * @param predicate the predicate on the database form of the entities
+     */
+    protected synchronized void invalidateIf(Predicate<Document> predicate) {
+        generation.incrementAndGet();
+        entities.values().removeIf(entry -> predicate.test(entry.document));
+    }
+
+    /**
+     * Find an entity in the cache, must be called while holding the lock
+     * @param id the id of the entity
+     * @return Document the entity in its database form, null if not in the cache or expired
+     */
+    private Document lookup(String id) {
+        CachedEntity entry = entities.get(id);
+        if (entry != null && entry.expiresAt < clock.getAsLong()) {
+            entities.remove(id);
+            expirations.increment();
+            return null;
+        }
+        return entry != null ? entry.document : null;
+    }
+
+    /**
+     * Store copies of entities loaded from the database, unless an invalidation happened during their loading
+     * @param loaded the entities loaded
+     * @param loadGeneration the generation when the loading started
+     */
+    private void store(Collection<T> loaded, long loadGeneration) {
+        List<CachedEntity> copies = new ArrayList<>();
+        for (T entity : loaded) {
+            Document copy = new Document();
+            converter.write(entity, copy);
+            copies.add(new CachedEntity(idOf.apply(entity), copy));
+        }
+        synchronized (this) {
+            if (generation.get() != loadGeneration) {
+                return;
+            }
+            long expiresAt = clock.getAsLong() + ttl;
+            for (CachedEntity copy : copies) {
+                copy.expiresAt = expiresAt;
+                entities.put(copy.id, copy);
+            }
+        }
+    }
+
+    /**
+     * An entity stored in its database form, with its expiration time
+     */
+    private static class CachedEntity {
+        private final String id;
+        private final Document document;
+        private long expiresAt;
+
+        CachedEntity(String id, Document document) {
+            this.id = id;
+            this.document = document;
+        }
+    }
+}
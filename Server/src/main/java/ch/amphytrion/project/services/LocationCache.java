@@ -0,0 +1,53 @@
+package ch.amphytrion.project.services;
+
+import ch.amphytrion.project.entities.databaseentities.Location;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Locations read recently, so that the meetings do not read their location in the database for every request
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@Component
+public class LocationCache extends EntityCache<Location> {
+
+    public static final int MAX_LOCATIONS = 5000;
+    public static final long TTL = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Location cache constructor
+     * @param converter converter used to copy the locations
+     * @param registry registry of the metrics of the cache
+     */
+    @Autowired
+    public LocationCache(MongoConverter converter, MeterRegistry registry) {
+        this(converter, registry, MAX_LOCATIONS, TTL, System::currentTimeMillis);
+    }
+
+    /**
+     * Location cache constructor
+     * @param converter converter used to copy the locations
+     * @param registry registry of the metrics of the cache
+     * @param maxLocations number of locations kept
+     * @param ttl time in milliseconds after which a location is read again in the database
+     * @param clock source of the current time in milliseconds
+     */
+    public LocationCache(MongoConverter converter, MeterRegistry registry, int maxLocations, long ttl, LongSupplier clock) {
+        super(converter, Location.class, Location::getId, "location", registry, maxLocations, ttl, clock);
+    }
+
+    /**
+     * Remove all the locations of a host from the cache
+     * @param hostId the id of the host
+     */
+    public void invalidateHost(String hostId) {
+        invalidateIf(document -> Objects.equals(hostId, document.get("hostId")));
+    }
+}
@@ -1,11 +1,16 @@
 package ch.amphytrion.project.services;
 
+import ch.amphytrion.project.entities.databaseentities.HostProfil;
 import ch.amphytrion.project.entities.databaseentities.Location;
+import ch.amphytrion.project.entities.databaseentities.User;
 import ch.amphytrion.project.repositories.LocationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Contains all the logic of the location data management
@@ -16,14 +21,17 @@ import java.util.List;
 public class LocationService implements IGenericService<Location> {
 
     private LocationRepository locationRepository;
+    private LocationCache locationCache;
 
     /**
      * Location service constructor
      * @param locationRepository Repository of location class
+     * @param locationCache Cache of the locations read recently
      */
     @Autowired
-    public LocationService(LocationRepository locationRepository) {
+    public LocationService(LocationRepository locationRepository, LocationCache locationCache) {
         this.locationRepository = locationRepository;
+        this.locationCache = locationCache;
     }
 
     /**
@@ -42,7 +50,9 @@ public class LocationService implements IGenericService<Location> {
      */
     @Override
     public Location save(Location location) {
-        return locationRepository.save(location);
+        Location saved = locationRepository.save(location);
+        locationCache.invalidate(saved.getId());
+        return saved;
     }
 
     /**
@@ -52,7 +62,73 @@ public class LocationService implements IGenericService<Location> {
      */
     @Override
     public Location findById(String id) {
-            return locationRepository.findById(id).orElse(null);
+        return locationCache.get(id, locationId -> locationRepository.findById(locationId).orElse(null));
+    }
+
+    /**
+     * find the locations having one of the ids, in a single query
+     * @param ids The ids of the locations to find
+     * @return Map<String, Location> The locations found, by id
+     */
+    public Map<String, Location> findByIds(Collection<String> ids) {
+        Set<String> distinctIds = ids.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        return locationCache.getAll(distinctIds, missingIds -> {
+            Map<String, Location> locations = new HashMap<>();
+            locationRepository.findAllById(missingIds).forEach(location -> locations.put(location.getId(), location));
+            return locations;
+        });
+    }
+
+    /**
+     * find all the locations whose host is open
+     * @return List<Location> The open locations, ordered by id
+     */
+    public List<Location> findOpen() {
+        return locationRepository.findByHostOpenTrue(Sort.by("id"));
+    }
+
+    /**
+     * find a page of the locations whose host is open
+     * @param page The number of the page, starting at 0
+     * @param size The number of locations in a page
+     * @return List<Location> The locations of the page, ordered by id
+     */
+    public List<Location> findOpen(int page, int size) {
+        return locationRepository.findByHostOpenTrue(PageRequest.of(page, size, Sort.by("id")));
+    }
+
+    /**
+     * search a page of the locations whose host is open by their name, description and tags
+     * @param text The words searched
+     * @param page The number of the page, starting at 0
+     * @param size The number of locations in a page
+     * @return List<Location> The locations of the page, the best matches first
+     */
+    public List<Location> searchOpen(String text, int page, int size) {
+        return locationRepository.searchOpen(text, page, size);
+    }
+
+    /**
+     * Copy the opening status of a host on all its locations
+     * @param host The host whose covid data changed
+     * @return long The number of locations modified
+     */
+    public long updateHostOpen(User host) {
+        long modified = locationRepository.updateHostOpen(host.getId(), isOpen(host.getHostProfil()));
+        if (modified > 0) {
+            locationCache.invalidateHost(host.getId());
+        }
+        return modified;
+    }
+
+    /**
+     * Check if a host is open according to its covid data
+     * @param hostProfil The profile of the host
+     * @return boolean true if the host is open
+     */
+    public static boolean isOpen(HostProfil hostProfil) {
+        return hostProfil != null && hostProfil.getCovidData() != null
+                && Boolean.TRUE.equals(hostProfil.getCovidData().getIsOpen());
     }
 
     /**
@@ -75,6 +151,7 @@ public class LocationService implements IGenericService<Location> {
     @Override
     public void delete(Location location) {
         locationRepository.delete(location);
+        locationCache.invalidate(location.getId());
     }
 
     /**
@@ -84,6 +161,7 @@ public class LocationService implements IGenericService<Location> {
     @Override
     public void deleteById(String id) {
         locationRepository.deleteById(id);
+        locationCache.invalidate(id);
     }
 
 
@@ -1,7 +1,11 @@
 package ch.amphytrion.project.services;
 
+import ch.amphytrion.project.authentication.jwt_authentication.PrincipalCache;
+import ch.amphytrion.project.dto.ContinuationToken;
 import ch.amphytrion.project.dto.DatesFilterDTO;
+import ch.amphytrion.project.dto.FacetResponse;
 import ch.amphytrion.project.dto.FilterRequest;
+import ch.amphytrion.project.dto.MeetingFacetsResponse;
 import ch.amphytrion.project.entities.databaseentities.*;
 import ch.amphytrion.project.repositories.ChatRepository;
 import ch.amphytrion.project.repositories.LocationRepository;
@@ -12,10 +16,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -31,6 +38,8 @@ public class MeetingService implements IGenericService<Meeting> {
     private LocationRepository locationRepository;
     private ChatRepository chatRepository;
     private LocationService locationService;
+    private PrincipalCache principalCache;
+    private AutocompleteIndex autocompleteIndex;
 
     /**
      * Location service constructor
@@ -39,15 +48,19 @@ public class MeetingService implements IGenericService<Meeting> {
      * @param chatRepository Repository of chat class
      * @param locationService Service of location class
      * @param userRepository Repository of user class
+     * @param principalCache Cache of the authenticated users
+     * @param autocompleteIndex Index of the suggestions of meeting names, tags and locations
      */
     @Autowired
-    public MeetingService(MeetingRepository meetingRepository, LocationRepository locationRepository, ChatRepository chatRepository, LocationService locationService, UserRepository userRepository) {
+    public MeetingService(MeetingRepository meetingRepository, LocationRepository locationRepository, ChatRepository chatRepository, LocationService locationService, UserRepository userRepository, PrincipalCache principalCache, AutocompleteIndex autocompleteIndex) {
         this.meetingRepository = meetingRepository;
         this.userRepository = userRepository;
         this.chatRepository = chatRepository;
         this.locationRepository = locationRepository;
         this.locationService = locationService;
         this.userRepository = userRepository;
+        this.principalCache = principalCache;
+        this.autocompleteIndex = autocompleteIndex;
     }
 
     /**
@@ -105,19 +118,7 @@ public class MeetingService implements IGenericService<Meeting> {
      * @return Meeting The list of meetings found
      */
     public ArrayList<Meeting> findOwnerFutureMeetings(String ownerID) {
-        ArrayList<Meeting> meetings = findByOwnerID(ownerID);
-        ArrayList<Meeting> futureMeetings = new ArrayList<>();
-        LocalDateTime now = LocalDateTime.now();
-
-        for(Meeting meeting : meetings) {
-            String end = meeting.getEndDate();
-            Instant instant = Instant.parse(end);
-            LocalDateTime dateTime = LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
-            if(dateTime.isAfter(now)) {
-                futureMeetings.add(meeting);
-            }
-        }
-        return futureMeetings;
+        return meetingRepository.findByOwnerIDAndEndDateAfter(ownerID, Instant.now());
     }
 
     /**
@@ -148,61 +149,207 @@ public class MeetingService implements IGenericService<Meeting> {
         try {
             StudentProfil studentProfil = member.getStudentProfil();
             Meeting meeting = findById(meetingID);
-            // Check if student is already part of the meeting
-            if (studentProfil == null
-                    || meeting.getMembersID().contains(member.getId())) {
+            if (meeting == null || studentProfil == null) {
                 return meeting;
-            } else {
-                Location location = locationService.findById(meeting.getLocationID());
-                if (location != null && meeting.getMembersID().size() >= location.getNbPeople()){
-                    return null;
+            }
+            Meeting joined = null;
+            // Check if student is already part of the meeting
+            if (!meeting.getMembersID().contains(member.getId())) {
+                Location location = meeting.getLocationID() != null ? locationService.findById(meeting.getLocationID()) : null;
+                Integer capacity = location != null ? location.getNbPeople() : null;
+                // The capacity is checked and the member added in a single operation, so concurrent joins cannot overbook
+                joined = meetingRepository.addMember(meetingID, member.getId(), capacity);
+                if (joined == null) {
+                    meeting = findById(meetingID);
+                    if (meeting == null || !meeting.getMembersID().contains(member.getId())) {
+                        return null;
+                    }
+                } else {
+                    meeting = joined;
+                    // Updated by a query, the popularity of the meeting changed
+                    autocompleteIndex.index(joined);
                 }
-                meeting.getMembersID().add(member.getId());
+            }
+            // Also done if already member, to repair a participation whose student update failed
+            if (!studentProfil.getMeetingsParticipationsID().contains(meeting.getId())) {
                 studentProfil.getMeetingsParticipationsID().add(meeting.getId());
-                save(meeting);
-                userRepository.save(member);
-                return meeting;
             }
+            if (!userRepository.addMeetingParticipation(member.getId(), meeting.getId())) {
+                // The student no longer exists, saving the copy read by the request would overwrite concurrent changes
+                if (joined != null) {
+                    removeMember(meetingID, member.getId());
+                }
+                return null;
+            }
+            // Updated by a query, the cached profile must be reloaded
+            principalCache.invalidate(member.getId());
+            return meeting;
         } catch (Exception e) {
             return null;
         }
     }
 
+    /**
+     * remove a student from a meeting
+     * @param member the student leaving the meeting
+     * @param meetingID the id of the meeting to leave
+     * @return Meeting the meeting updated, null if not found
+     */
+    public Meeting removeMemberFromMeeting(User member, String meetingID) {
+        Meeting meeting = removeMember(meetingID, member.getId());
+        if (member.getStudentProfil() != null) {
+            member.getStudentProfil().getMeetingsParticipationsID().removeIf(id -> id.equals(meetingID));
+        }
+        if (userRepository.removeMeetingParticipation(member.getId(), meetingID)) {
+            // Updated by a query, the cached profile must be reloaded
+            principalCache.invalidate(member.getId());
+        }
+        return meeting;
+    }
+
+    /**
+     * Update the fields of a meeting editable by its owner, its members are not changed
+     * @param meeting the meeting holding the new values
+     * @return Meeting the meeting updated, null if not found
+     */
+    public Meeting updateDetails(Meeting meeting) {
+        Meeting updated = meetingRepository.updateDetails(meeting);
+        if (updated != null) {
+            // Updated by a query, the suggestions must be updated
+            autocompleteIndex.index(updated);
+        }
+        return updated;
+    }
+
+    /**
+     * Remove a member from a meeting with a single update
+     * @param meetingID the id of the meeting
+     * @param memberId the id of the member to remove
+     * @return Meeting the meeting updated, null if not found
+     */
+    private Meeting removeMember(String meetingID, String memberId) {
+        Meeting meeting = meetingRepository.removeMember(meetingID, memberId);
+        if (meeting != null) {
+            // Updated by a query, the popularity of the meeting changed
+            autocompleteIndex.index(meeting);
+        }
+        return meeting;
+    }
+
+    /**
+     * Find the meetings a student takes part in, in a single query
+     * @param studentProfil the profile of the student
+     * @param datesFilter the dates of the meetings to find, null to find all the meetings
+     * @return List<Meeting> the meetings found, ordered by start date
+     */
+    public List<Meeting> findParticipations(StudentProfil studentProfil, DatesFilterDTO datesFilter) {
+        List<String> meetingsIds = studentProfil.getMeetingsParticipationsID();
+        if (CollectionUtils.isEmpty(meetingsIds)) {
+            return new ArrayList<>();
+        }
+        return meetingRepository.findByIdsAndDates(meetingsIds, datesFilter != null ? datesFilter : new DatesFilterDTO());
+    }
+
+    /**
+     * Find the meetings taking place at some locations, in a single query
+     * @param locationIds the ids of the locations
+     * @param datesFilter the dates of the meetings to find, null to find all the meetings
+     * @return List<Meeting> the meetings found, ordered by start date
+     */
+    public List<Meeting> findAtLocations(Collection<String> locationIds, DatesFilterDTO datesFilter) {
+        if (CollectionUtils.isEmpty(locationIds)) {
+            return new ArrayList<>();
+        }
+        return meetingRepository.findByLocationIdsAndDates(locationIds, datesFilter != null ? datesFilter : new DatesFilterDTO());
+    }
+
+    /**
+     * Search the public meetings matching a filter directly in the database
+     * @param filter the filter to use
+     * @return List<Meeting> the meetings matching the filter
+     */
+    public List<Meeting> searchWithFilter(FilterRequest filter) {
+        return meetingRepository.findByFilter(filter, searchedText(filter));
+    }
+
+    /**
+     * Words searched in the text index for the name of a filter, the words being typed are completed with the words of
+     * the public meeting names. Computed once per request and given to all the queries of the filter
+     * @param filter the filter to use
+     * @return String the words searched with their completions, null if the filter has no name
+     */
+    public String searchedText(FilterRequest filter) {
+        return filter.hasName() ? autocompleteIndex.complete(filter.name) : null;
+    }
+
+    /**
+     * Search a page of the public meetings matching a filter directly in the database
+     * @param filter the filter to use, with the page size and the token of the previous page
+     * @param text the words searched for the name of the filter, see searchedText
+     * @return List<Meeting> the meetings of the page, ordered by start date, or by relevance first if a name is searched
+     */
+    public List<Meeting> searchPageWithFilter(FilterRequest filter, String text) {
+        return meetingRepository.findPageByFilter(filter, text, ContinuationToken.decode(filter.continuationToken), filter.pageSize());
+    }
+
+    /**
+     * Count the public meetings matching a filter per tag, per location and per day
+     * @param filter the filter to use, the position of the page is ignored
+     * @param text the words searched for the name of the filter, see searchedText
+     * @return MeetingFacetsResponse the numbers of meetings, the days in the time zone of the server
+     */
+    public MeetingFacetsResponse countFacets(FilterRequest filter, String text) {
+        MeetingFacetsResponse facets = meetingRepository.countFacets(filter, text, ZoneId.systemDefault());
+        List<String> locationIds = facets.locations.stream().map(facet -> facet.value).collect(Collectors.toList());
+        Map<String, Location> locations = locationService.findByIds(locationIds);
+        for (FacetResponse facet : facets.locations) {
+            Location location = locations.get(facet.value);
+            facet.name = location != null ? location.getName() : null;
+        }
+        return facets;
+    }
+
+    /**
+     * Token of the page following a page of search results
+     * @param filter the filter used to search the page
+     * @param page the meetings of the page
+     * @return String the token to send back to get the next page, null if there is no more meetings
+     */
+    public String nextPageToken(FilterRequest filter, List<Meeting> page) {
+        if (page.size() < filter.pageSize()) {
+            return null;
+        }
+        if (filter.hasName()) {
+            // Results ranked by relevance, see MeetingRepositoryCustom.findPageByFilter
+            ContinuationToken after = ContinuationToken.decode(filter.continuationToken);
+            int offset = after != null ? after.getOffset() : 0;
+            return ContinuationToken.atOffset(offset + page.size()).encode();
+        }
+        return new ContinuationToken(page.get(page.size() - 1)).encode();
+    }
+
     /**
      * filter a list of meetings
-     * @param meetings the meetings to filter
+     * @param meetings the meetings to filter, as saved in the database
      * @param filter the filter to use
      * @return List<Meeting> a list of meetings filtered
      */
     public List<Meeting> allFilters(List<Meeting> meetings, FilterRequest filter) {
+        Predicate<Meeting> inDates = datesPredicate(new DatesFilterDTO(filter.startDate, filter.endDate));
+        Predicate<Meeting> withTags = tagsPredicate(filter.tags);
+        // The name is matched by the text index, like the database search does
+        Set<String> withName = filter.hasName() ? meetingRepository.findIdsByText(searchedText(filter)) : null;
         return meetings.stream()
                 .filter(meeting ->
                         filterByPrivate(meeting))
                 .filter(meeting ->
-                        filterByName(meeting, filter.name))
-                .filter(meeting ->
-                        filterByDateFilter(meeting, new DatesFilterDTO(filter.startDate, filter.endDate)))
-                .filter(meeting ->
-                        searchFilterTags(meeting, filter.tags))
+                        withName == null || withName.contains(meeting.getId()))
+                .filter(inDates)
+                .filter(withTags)
                 .filter(meeting ->
                         searchFilterLocations(meeting, filter.location))
                 .collect(Collectors.toList());
     }
-    /**
-     * Check the name of a meeting
-     * @param meeting the meeting to check
-     * @param name the name to compare with
-     * @return boolean true if the name corresponds
-     */
-    public boolean filterByName(Meeting meeting, String name) {
-        if (name == null || name == "") {
-            return true;
-        } else {
-            return meeting.getName().contains(name);
-        }
-
-    }
-
     /**
      * Check if a meeting is private
      * @param meeting the meeting to check
@@ -222,23 +369,38 @@ public class MeetingService implements IGenericService<Meeting> {
         if (datesFilter == null) {
             return true;
         } else {
-            return new DatesFilterDTO(meeting).isBetween(datesFilter);
+            return datesFilter.includes(meeting.getStartDate(), meeting.getEndDate());
 
         }
     }
 
     /**
-     * Check if one of several tags is part of a meeting
-     * @param meeting the meeting to check
-     * @param tags a list of tags
-     * @return boolean true if the meeting has one or more of the tags specified
+     * Build the check of the dates of the meetings, the dates of the filter being parsed once
+     * @param datesFilter the dates
+     * @return Predicate<Meeting> true for the meetings between the dates
+     */
+    private Predicate<Meeting> datesPredicate(DatesFilterDTO datesFilter) {
+        Instant start = datesFilter.startInstant();
+        Instant end = datesFilter.endInstant();
+        if (start == null && end == null) {
+            return meeting -> true;
+        }
+        return meeting -> DatesFilterDTO.isBetween(meeting.getStartDate(), meeting.getEndDate(), start, end);
+    }
+
+    /**
+     * Build the check of the tags of the meetings, comparing the names of the tags like the tags_name index of the
+     * database search
+     * @param tags the tags of the filter
+     * @return Predicate<Meeting> true for the meetings having one or more of the tags
      */
-    public boolean searchFilterTags(Meeting meeting, List<Tag> tags){
+    private Predicate<Meeting> tagsPredicate(List<Tag> tags) {
         if (tags == null || tags.isEmpty()) {
-            return true;
-        } else {
-            return CollectionUtils.containsAny(meeting.getTags(), tags);
+            return meeting -> true;
         }
+        Set<String> names = tags.stream().map(Tag::getName).collect(Collectors.toSet());
+        return meeting -> meeting.getTags() != null
+                && meeting.getTags().stream().anyMatch(tag -> names.contains(tag.getName()));
     }
 
     /**
@@ -248,10 +410,10 @@ public class MeetingService implements IGenericService<Meeting> {
      * @return boolean true if the meeting has the location specified
      */
     public boolean searchFilterLocations(Meeting meeting, Location location){
-        if (location == null || location.getId() == null || location.getId() == "") {
+        if (location == null || location.getId() == null || location.getId().isEmpty()) {
             return true;
         } else {
-            return meeting.getLocationID() == location.getId();
+            return location.getId().equals(meeting.getLocationID());
         }
     }
 
@@ -261,19 +423,7 @@ public class MeetingService implements IGenericService<Meeting> {
      * @return the list of meeting that will happens at the location
      */
     public List<Meeting> findAllWithLocation(String locationID){
-        List<Meeting> meetings = findAll();
-        ArrayList<Meeting> futureAtLocationMeetings = new ArrayList<>();
-        LocalDateTime now = LocalDateTime.now();
-
-        for(Meeting meeting : meetings) {
-            String end = meeting.getEndDate();
-            Instant instant = Instant.parse(end);
-            LocalDateTime dateTime = LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
-            if(dateTime.isAfter(now) && meeting.getLocationID().equals(locationID)) {
-                futureAtLocationMeetings.add(meeting);
-            }
-        }
-        return futureAtLocationMeetings;
+        return meetingRepository.findByLocationIDAndEndDateAfter(locationID, Instant.now());
     }
 
 
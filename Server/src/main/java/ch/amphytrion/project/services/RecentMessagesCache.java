@@ -0,0 +1,309 @@
+package ch.amphytrion.project.services;
+
+import ch.amphytrion.project.entities.databaseentities.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Keep the latest messages of the active chats in memory, in a ring buffer per chat.
+ * A buffer is filled from the database on its first read and with every message added, the chats not used for a
+ * while and the least recently used ones when there are too many are evicted. The messages written by the other
+ * instances are followed by CacheInvalidationBus, which evicts a chat only for the messages missing from its buffer.
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@Component
+public class RecentMessagesCache {
+
+    public static final int CAPACITY = 50;
+    public static final int MAX_CHATS = 1000;
+    public static final long TTL = TimeUnit.MINUTES.toMillis(10);
+    // Rough size of a message object and its references, without the characters of its strings
+    private static final long MESSAGE_OVERHEAD = 96;
+
+    private static final Comparator<Message> MESSAGE_ORDER = Comparator
+            .comparing(Message::getDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Message::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final int capacity;
+    private final int maxChats;
+    private final long ttl;
+    private final LongSupplier clock;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final LinkedHashMap<String, Ring> rings;
+
+    /**
+     * Recent messages cache constructor
+     * @param registry registry of the metrics of the cache
+     */
+    @Autowired
+    public RecentMessagesCache(MeterRegistry registry) {
+        this(registry, CAPACITY, MAX_CHATS, TTL, System::currentTimeMillis);
+    }
+
+    /**
+     * Recent messages cache constructor
+     * @param registry registry of the metrics of the cache
+     * @param capacity number of messages kept per chat
+     * @param maxChats number of chats kept
+     * @param ttl time in milliseconds after which an unused chat is evicted
+     * @param clock source of the current time in milliseconds
+     */
+    public RecentMessagesCache(MeterRegistry registry, int capacity, int maxChats, long ttl, LongSupplier clock) {
+        this.capacity = capacity;
+        this.maxChats = maxChats;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.rings = new LinkedHashMap<String, Ring>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Ring> eldest) {
+                if (size() > RecentMessagesCache.this.maxChats) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.hits = Counter.builder("chat.recent.requests").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("chat.recent.requests").tag("result", "miss").register(registry);
+        this.evictions = Counter.builder("chat.recent.evictions").register(registry);
+        Gauge.builder("chat.recent.chats", this, RecentMessagesCache::size).register(registry);
+        Gauge.builder("chat.recent.memory", this, RecentMessagesCache::estimatedBytes)
+                .baseUnit("bytes")
+                .description("Estimated memory used by the messages kept")
+                .register(registry);
+    }
+
+    /**
+     * Number of messages kept per chat
+     * @return int the capacity of a buffer
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the latest messages of a chat, loaded from the database if the chat is not in the cache
+     * @param chatId the id of the chat
+     * @param limit maximum number of messages to return, at most the capacity
+     * @param loader loads the latest messages of the chat (at least the capacity), newest first
+     * @return List<Message> the messages, newest first
+     */
+    public List<Message> recent(String chatId, int limit, Supplier<List<Message>> loader) {
+        return ring(chatId).newest(Math.min(limit, capacity), loader);
+    }
+
+    /**
+     * Add a new message to the buffer of a chat
+     * @param chatId the id of the chat
+     * @param message the message added to the chat
+     */
+    public void add(String chatId, Message message) {
+        ring(chatId).add(message);
+    }
+
+    /**
+     * Check if a chat is in the cache
+     * @param chatId the id of the chat
+     * @return boolean true if the chat is in the cache
+     */
+    public synchronized boolean contains(String chatId) {
+        evictExpired();
+        return rings.containsKey(chatId);
+    }
+
+    /**
+     * Remove a chat from the cache
+     * @param chatId the id of the chat
+     */
+    public synchronized void invalidate(String chatId) {
+        rings.remove(chatId);
+    }
+
+    /**
+     * Remove a chat from the cache after messages were written to it, unless they are all in its buffer already
+     * because they were added by this instance
+     * @param chatId the id of the chat
+     * @param messageIds the ids of the messages written, empty if unknown
+     */
+    public synchronized void invalidateUnlessKnown(String chatId, Collection<String> messageIds) {
+        Ring ring = rings.get(chatId);
+        if (ring != null && (messageIds.isEmpty() || !ring.containsAll(messageIds))) {
+            rings.remove(chatId);
+        }
+    }
+
+    /**
+     * Remove all the chats from the cache
+     */
+    public synchronized void clear() {
+        rings.clear();
+    }
+
+    /**
+     * Number of chats in the cache
+     * @return int the number of chats
+     */
+    public synchronized int size() {
+        return rings.size();
+    }
+
+    /**
+     * Estimate the memory used by the messages in the cache
+     * @return long the number of bytes
+     */
+    public synchronized long estimatedBytes() {
+        long bytes = 0;
+        for (Ring ring : rings.values()) {
+            bytes += ring.bytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the buffer of a chat, created empty if needed
+     * @param chatId the id of the chat
+     * @return Ring the buffer of the chat
+     */
+    private synchronized Ring ring(String chatId) {
+        evictExpired();
+        long now = clock.getAsLong();
+        Ring ring = rings.get(chatId);
+        if (ring == null) {
+            ring = new Ring();
+            rings.put(chatId, ring);
+        }
+        ring.lastAccess = now;
+        return ring;
+    }
+
+    /**
+     * Remove the chats not used since the TTL. The map is in access order, so they are at its beginning
+     */
+    private void evictExpired() {
+        long limit = clock.getAsLong() - ttl;
+        Iterator<Ring> iterator = rings.values().iterator();
+        while (iterator.hasNext() && iterator.next().lastAccess < limit) {
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Estimate the memory used by a message
+     * @param message the message
+     * @return long the number of bytes
+     */
+    private static long estimate(Message message) {
+        return MESSAGE_OVERHEAD + 2L * (length(message.getId()) + length(message.getMessage()) + length(message.getUsername()));
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    /**
+     * Latest messages of a chat, the oldest one is overwritten when the buffer is full
+     */
+    private class Ring {
+        private final Message[] messages = new Message[capacity];
+        private int start = 0;
+        private int size = 0;
+        private long bytes = 0;
+        private boolean loaded = false;
+        private long lastAccess;
+
+        /**
+         * Add a message, ignored if already present
+         * @param message the message to add
+         */
+        synchronized void add(Message message) {
+            if (contains(message.getId())) {
+                return;
+            }
+            int index = (start + size) % capacity;
+            if (size == capacity) {
+                bytes -= estimate(messages[start]);
+                start = (start + 1) % capacity;
+            } else {
+                size++;
+            }
+            messages[index] = message;
+            bytes += estimate(message);
+        }
+
+        /**
+         * Get the newest messages, the buffer is completed from the database on its first read
+         * @param limit maximum number of messages to return
+         * @param loader loads the latest messages of the chat, newest first
+         * @return List<Message> the messages, newest first
+         */
+        synchronized List<Message> newest(int limit, Supplier<List<Message>> loader) {
+            if (loaded) {
+                hits.increment();
+            } else {
+                misses.increment();
+                // Messages added while the chat was not loaded are merged with the ones stored
+                List<Message> merged = new ArrayList<>(loader.get());
+                for (int i = 0; i < size; i++) {
+                    merged.add(get(i));
+                }
+                merged.sort(MESSAGE_ORDER);
+                Arrays.fill(messages, null);
+                start = 0;
+                size = 0;
+                bytes = 0;
+                merged.forEach(this::add);
+                loaded = true;
+            }
+            List<Message> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(get(i));
+            }
+            // Messages added concurrently can arrive slightly out of order
+            result.sort(MESSAGE_ORDER.reversed());
+            return new ArrayList<>(result.subList(0, Math.min(limit, result.size())));
+        }
+
+        /**
+         * Check if messages are all in the buffer
+         * @param messageIds the ids of the messages
+         * @return boolean true if none of the messages is missing
+         */
+        synchronized boolean containsAll(Collection<String> messageIds) {
+            for (String messageId : messageIds) {
+                if (!contains(messageId)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+
+        private boolean contains(String messageId) {
+            for (int i = 0; i < size; i++) {
+                if (Objects.equals(get(i).getId(), messageId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Message get(int i) {
+            return messages[(start + i) % capacity];
+        }
+    }
+}
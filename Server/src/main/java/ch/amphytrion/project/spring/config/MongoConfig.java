@@ -0,0 +1,40 @@
+package ch.amphytrion.project.spring.config;
+
+import ch.amphytrion.project.dto.DatesFilterDTO;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.time.Instant;
+import java.util.Collections;
+
+/**
+ * Configuration of the mapping between the entities and the MongoDB documents
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@Configuration
+public class MongoConfig {
+
+    /**
+     * Custom conversions used when reading documents
+     * @return MongoCustomConversions
+     */
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(Collections.singletonList(new IsoStringToInstantConverter()));
+    }
+
+    /**
+     * Read dates still stored as ISO strings (documents not yet migrated) as instants
+     */
+    @ReadingConverter
+    static class IsoStringToInstantConverter implements Converter<String, Instant> {
+        @Override
+        public Instant convert(String source) {
+            return DatesFilterDTO.toInstant(source);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ch.amphytrion.project.authentication;
+
+import ch.amphytrion.project.authentication.google_authentication.GoogleAuthenticationFilter;
+import ch.amphytrion.project.authentication.google_authentication.GoogleAuthenticationToken;
+import ch.amphytrion.project.authentication.utils.AbstractMultiReadAuthenticationProcessingFilter;
+import ch.amphytrion.project.entities.databaseentities.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * Test of the reading of the login requests by the Google authentication filter
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public class GoogleAuthenticationFilterTest {
+
+    private static final String LOGIN_BODY = "{\"other\": {\"tokenID\": \"nested\"}, \"tokenID\": \"google-token\"}";
+
+    private AuthenticationManager authenticationManager;
+    private GoogleAuthenticationFilter filter;
+    private MockHttpServletResponse response;
+    private MockFilterChain chain;
+
+    @BeforeEach
+    public void setUp() {
+        authenticationManager = Mockito.mock(AuthenticationManager.class);
+        User user = new User("google-id", "student");
+        user.setId("user-id");
+        Mockito.doReturn(new GoogleAuthenticationToken(user, "google-token", new ArrayList<>()))
+                .when(authenticationManager).authenticate(any());
+        filter = new GoogleAuthenticationFilter(authenticationManager);
+        response = new MockHttpServletResponse();
+        chain = new MockFilterChain();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static MockHttpServletRequest request(String path, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    @Test
+    void otherRequestsShouldNotBeRead() throws Exception {
+        MockHttpServletRequest request = request("/meetings", LOGIN_BODY);
+        filter.doFilter(request, response, chain);
+        assertSame(request, chain.getRequest());
+        assertNull(request.getAttribute(AbstractMultiReadAuthenticationProcessingFilter.TOKEN_ID_ATTRIBUTE));
+        Mockito.verify(authenticationManager, Mockito.never()).authenticate(any());
+    }
+
+    @Test
+    void loginShouldAuthenticateWithTheTokenOfTheBody() throws Exception {
+        filter.doFilter(request(SecurityConstants.LOGIN_URL, LOGIN_BODY), response, chain);
+        ArgumentCaptor<Authentication> captor = ArgumentCaptor.forClass(Authentication.class);
+        Mockito.verify(authenticationManager).authenticate(captor.capture());
+        assertEquals("google-token", captor.getValue().getCredentials());
+        assertNotNull(response.getHeader(SecurityConstants.HEADER_STRING));
+        // The controller can still read the body
+        String body = StreamUtils.copyToString(chain.getRequest().getInputStream(), StandardCharsets.UTF_8);
+        assertEquals(LOGIN_BODY, body);
+    }
+
+    @Test
+    void loginWithoutTokenShouldNotAuthenticate() throws Exception {
+        filter.doFilter(request(SecurityConstants.LOGIN_URL, "{\"username\": \"student\"}"), response, chain);
+        Mockito.verify(authenticationManager, Mockito.never()).authenticate(any());
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    void malformedLoginShouldNotAuthenticate() throws Exception {
+        filter.doFilter(request(SecurityConstants.LOGIN_URL, "{\"tokenID\": "), response, chain);
+        Mockito.verify(authenticationManager, Mockito.never()).authenticate(any());
+    }
+
+    @Test
+    void tooLargeLoginShouldBeRejected() throws Exception {
+        StringBuilder body = new StringBuilder("{\"tokenID\": \"");
+        while (body.length() <= AbstractMultiReadAuthenticationProcessingFilter.MAX_BODY_SIZE) {
+            body.append("aaaaaaaaaa");
+        }
+        body.append("\"}");
+        MockHttpServletRequest request = request(SecurityConstants.LOGIN_URL, body.toString());
+        filter.doFilter(request, response, chain);
+        assertEquals(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, response.getStatus());
+        assertNull(chain.getRequest());
+        Mockito.verify(authenticationManager, Mockito.never()).authenticate(any());
+    }
+}
@@ -0,0 +1,67 @@
+package ch.amphytrion.project.authentication;
+
+import ch.amphytrion.project.authentication.utils.JwtUtils;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of the creation, verification and renewal of the session tokens
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public class JwtUtilsTest {
+
+    private static final String USER_ID = "user-id";
+
+    private static String tokenExpiringIn(long millis) {
+        return JWT.create()
+                .withSubject(USER_ID)
+                .withExpiresAt(new Date(System.currentTimeMillis() + millis))
+                .sign(Algorithm.HMAC512(SecurityConstants.SECRET.getBytes()));
+    }
+
+    @Test
+    void madeTokenShouldBeVerified() {
+        DecodedJWT token = JwtUtils.verifyToken(JwtUtils.makeHeaderToken(USER_ID));
+        assertEquals(USER_ID, token.getSubject());
+    }
+
+    @Test
+    void tokenSignedWithAnotherSecretShouldBeRejected() {
+        String token = JWT.create().withSubject(USER_ID).sign(Algorithm.HMAC512("another-secret".getBytes()));
+        assertThrows(JWTVerificationException.class, () -> JwtUtils.verifyToken(token));
+    }
+
+    @Test
+    void expiredTokenShouldBeRejected() {
+        assertThrows(TokenExpiredException.class, () -> JwtUtils.verifyToken(tokenExpiringIn(-60 * 1000)));
+    }
+
+    @Test
+    void freshTokenShouldNotBeRenewed() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        JwtUtils.renewTokenIfExpiring(response, JwtUtils.verifyToken(JwtUtils.makeHeaderToken(USER_ID)));
+        assertNull(response.getHeader(SecurityConstants.HEADER_STRING));
+    }
+
+    @Test
+    void tokenInRenewalWindowShouldBeRenewed() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        DecodedJWT token = JwtUtils.verifyToken(tokenExpiringIn(SecurityConstants.RENEWAL_WINDOW / 2));
+        JwtUtils.renewTokenIfExpiring(response, token);
+        String header = response.getHeader(SecurityConstants.HEADER_STRING);
+        assertNotNull(header);
+        DecodedJWT renewed = JwtUtils.verifyToken(header.substring(SecurityConstants.TOKEN_PREFIX.length()));
+        assertEquals(USER_ID, renewed.getSubject());
+        assertTrue(renewed.getExpiresAt().after(token.getExpiresAt()));
+    }
+}
@@ -0,0 +1,131 @@
+package ch.amphytrion.project.authentication;
+
+import ch.amphytrion.project.authentication.jwt_authentication.PrincipalCache;
+import ch.amphytrion.project.entities.databaseentities.StudentProfil;
+import ch.amphytrion.project.entities.databaseentities.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of the cache of the authenticated users
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public class PrincipalCacheTest {
+
+    private static final long TTL = 1000;
+    private static final String USER_ID = new ObjectId().toHexString();
+
+    private AtomicLong now;
+    private AtomicInteger loads;
+    private User stored;
+    private PrincipalCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        now = new AtomicLong(0);
+        loads = new AtomicInteger(0);
+        stored = new User("google-id", "student");
+        stored.setId(USER_ID);
+        stored.setStudentProfil(new StudentProfil());
+        cache = new PrincipalCache(converter, new SimpleMeterRegistry(), 2, TTL, now::get);
+    }
+
+    private User load(String id) {
+        loads.incrementAndGet();
+        return USER_ID.equals(id) ? stored : null;
+    }
+
+    @Test
+    void userShouldBeLoadedOnlyOnce() {
+        assertEquals(stored, cache.get(USER_ID, this::load));
+        assertEquals(stored, cache.get(USER_ID, this::load));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void changesOfARequestShouldNotLeakToTheOthers() {
+        cache.get(USER_ID, this::load);
+        User first = cache.get(USER_ID, this::load);
+        first.getStudentProfil().getMeetingsParticipationsID().add("meeting-id");
+        first.setUsername("changed");
+        User second = cache.get(USER_ID, this::load);
+        assertEquals("student", second.getUsername());
+        assertTrue(second.getStudentProfil().getMeetingsParticipationsID().isEmpty());
+    }
+
+    @Test
+    void unknownUserShouldNotBeCached() {
+        assertNull(cache.get("unknown", this::load));
+        assertNull(cache.get("unknown", this::load));
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void expiredUserShouldBeReloaded() {
+        cache.get(USER_ID, this::load);
+        now.addAndGet(TTL + 1);
+        cache.get(USER_ID, this::load);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void savedUserShouldBeReloaded() {
+        cache.get(USER_ID, this::load);
+        stored.setUsername("renamed");
+        cache.onAfterSave(new AfterSaveEvent<>(stored, new Document(), "user"));
+        assertEquals("renamed", cache.get(USER_ID, this::load).getUsername());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void deletedUserShouldBeRemoved() {
+        cache.get(USER_ID, this::load);
+        cache.onAfterDelete(new AfterDeleteEvent<>(new Document("_id", new ObjectId(USER_ID)), User.class, "user"));
+        assertEquals(0, cache.size());
+        cache.get(USER_ID, this::load);
+        cache.onAfterDelete(new AfterDeleteEvent<>(new Document(), User.class, "user"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void userLoadedDuringAnInvalidationShouldNotBeCached() {
+        cache.get(USER_ID, id -> {
+            // The user is saved by another request while this one reads it
+            cache.invalidate(USER_ID);
+            return load(id);
+        });
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void leastRecentlyUsedUserShouldBeEvicted() {
+        User other = new User("google-id-2", "other");
+        other.setId(new ObjectId().toHexString());
+        User third = new User("google-id-3", "third");
+        third.setId(new ObjectId().toHexString());
+        cache.get(USER_ID, this::load);
+        cache.get(other.getId(), id -> other);
+        cache.get(USER_ID, this::load);
+        cache.get(third.getId(), id -> third);
+        assertEquals(2, cache.size());
+        cache.get(USER_ID, this::load);
+        assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,85 @@
+package ch.amphytrion.project.benchmark;
+
+import ch.amphytrion.project.dto.SuggestionResponse;
+import ch.amphytrion.project.entities.databaseentities.Location;
+import ch.amphytrion.project.entities.databaseentities.Meeting;
+import ch.amphytrion.project.entities.databaseentities.Tag;
+import ch.amphytrion.project.services.AutocompleteIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the distribution of the time of the suggestions (p99 in the results) for short prefixes typed by the users,
+ * and the time to update the index when a meeting is saved.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=ch.amphytrion.project.benchmark.AutocompleteBenchmark
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class AutocompleteBenchmark {
+
+    private static final String[] WORDS = {"soirée", "jeux", "sortie", "révisions", "analyse", "cinéma", "sport",
+            "football", "musique", "concert", "randonnée", "lac", "bar", "café", "étude", "examen", "apéro", "fondue"};
+
+    @Param({"10000", "100000"})
+    public int meetings;
+
+    private AutocompleteIndex index;
+    private String[] prefixes;
+    private Meeting saved;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<Meeting> all = new ArrayList<>(meetings);
+        for (int i = 0; i < meetings; i++) {
+            Meeting meeting = new Meeting(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i);
+            meeting.setId("meeting-" + i);
+            meeting.setIsPrivate(false);
+            meeting.setLocationID("location-" + random.nextInt(500));
+            meeting.setTags(Collections.singletonList(new Tag(WORDS[random.nextInt(WORDS.length)])));
+            for (int j = random.nextInt(10); j > 0; j--) {
+                meeting.getMembersID().add("member-" + j);
+            }
+            all.add(meeting);
+        }
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Location location = new Location();
+            location.setId("location-" + i);
+            location.setName(WORDS[random.nextInt(WORDS.length)] + " " + i);
+            locations.add(location);
+        }
+        index = new AutocompleteIndex(() -> all, () -> locations, id -> null, id -> null);
+        prefixes = new String[]{"s", "so", "soi", "ca", "caf", "r", "rev", "1", "12", "fo"};
+        saved = all.get(0);
+        index.suggest("s", AutocompleteIndex.MAX_SUGGESTIONS);
+    }
+
+    @Benchmark
+    public List<SuggestionResponse> suggest() {
+        next = (next + 1) % prefixes.length;
+        return index.suggest(prefixes[next], AutocompleteIndex.MAX_SUGGESTIONS);
+    }
+
+    @Benchmark
+    public void save() {
+        saved.getMembersID().add("member-" + next++);
+        index.index(saved);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AutocompleteBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,57 @@
+package ch.amphytrion.project.benchmark;
+
+import ch.amphytrion.project.authentication.SecurityConstants;
+import ch.amphytrion.project.authentication.utils.JwtUtils;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the JWT work done by the authorization filter for each authenticated request: a verifier built and a new
+ * token signed per request, against the shared verifier with a new token only near the expiry. The user lookup of the
+ * filter is not included.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=ch.amphytrion.project.benchmark.JwtBenchmark
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class JwtBenchmark {
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        token = JwtUtils.makeHeaderToken("user-id");
+    }
+
+    @Benchmark
+    public String newVerifierAndToken() {
+        DecodedJWT decoded = JWT.require(Algorithm.HMAC512(SecurityConstants.SECRET.getBytes())).build().verify(token);
+        return JWT.create()
+                .withSubject(decoded.getSubject())
+                .withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
+                .sign(Algorithm.HMAC512(SecurityConstants.SECRET.getBytes()));
+    }
+
+    @Benchmark
+    public String sharedVerifier() {
+        DecodedJWT decoded = JwtUtils.verifyToken(token);
+        return JwtUtils.needsRenewal(decoded, System.currentTimeMillis()) ? JwtUtils.makeHeaderToken(decoded.getSubject()) : null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtBenchmark.class.getSimpleName()).build()).run();
+    }
+}
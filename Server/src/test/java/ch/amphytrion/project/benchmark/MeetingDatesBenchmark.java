@@ -0,0 +1,101 @@
+package ch.amphytrion.project.benchmark;
+
+import ch.amphytrion.project.dto.DatesFilterDTO;
+import ch.amphytrion.project.dto.FilterRequest;
+import ch.amphytrion.project.entities.databaseentities.Meeting;
+import ch.amphytrion.project.migrations.MongoIndexesMigration;
+import ch.amphytrion.project.repositories.MeetingRepositoryImpl;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compare the search of the public meetings in a week with the former stream filter (all the meetings read, the dates
+ * of the filter parsed for each meeting) and with the query on the dates indexes. Needs a MongoDB server, the meetings
+ * are written in the benchmark database.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=ch.amphytrion.project.benchmark.MeetingDatesBenchmark -Dbenchmark.mongodb.uri=mongodb://localhost:27017
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeetingDatesBenchmark {
+
+    private static final String URI_PROPERTY = "benchmark.mongodb.uri";
+    private static final String DATABASE = "benchmark";
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Param({"1000", "10000", "100000"})
+    public int meetings;
+
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private MeetingRepositoryImpl repository;
+    private FilterRequest week;
+
+    @Setup
+    public void setUp() {
+        client = MongoClients.create(System.getProperty(URI_PROPERTY, "mongodb://localhost:27017"));
+        mongoTemplate = new MongoTemplate(client, DATABASE);
+        mongoTemplate.dropCollection(Meeting.class);
+        new MongoIndexesMigration(mongoTemplate).migrate();
+        long now = System.currentTimeMillis();
+        Random random = new Random(42);
+        List<Meeting> all = new ArrayList<>();
+        for (int i = 0; i < meetings; i++) {
+            // Meetings spread over a year, one in five private
+            Meeting meeting = new Meeting("meeting-" + i);
+            long start = now + random.nextInt(365 * 24) * HOUR;
+            meeting.setStartDate(Instant.ofEpochMilli(start));
+            meeting.setEndDate(Instant.ofEpochMilli(start + (1 + random.nextInt(6)) * HOUR));
+            meeting.setIsPrivate(i % 5 == 0);
+            meeting.setTags(new ArrayList<>());
+            all.add(meeting);
+        }
+        mongoTemplate.insert(all, Meeting.class);
+        repository = new MeetingRepositoryImpl(mongoTemplate);
+        Instant from = Instant.ofEpochMilli(now + 30 * 24 * HOUR);
+        week = new FilterRequest("", from.toString(), from.plusMillis(7 * 24 * HOUR).toString(), new ArrayList<>(), null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mongoTemplate.dropCollection(Meeting.class);
+        client.close();
+    }
+
+    @Benchmark
+    public List<Meeting> streamFilter() {
+        return mongoTemplate.findAll(Meeting.class).stream()
+                .filter(meeting -> !meeting.getIsPrivate())
+                .filter(meeting -> new DatesFilterDTO(week.startDate, week.endDate).includes(meeting.getStartDate(), meeting.getEndDate()))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Meeting> indexedQuery() {
+        return repository.findByFilter(week, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MeetingDatesBenchmark.class.getSimpleName())
+                .jvmArgsAppend("-D" + URI_PROPERTY + "=" + System.getProperty(URI_PROPERTY, "mongodb://localhost:27017"))
+                .build()).run();
+    }
+}
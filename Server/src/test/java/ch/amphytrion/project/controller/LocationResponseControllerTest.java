@@ -1,6 +1,7 @@
 package ch.amphytrion.project.controller;
 
 import ch.amphytrion.project.repositories.LocationRepository;
+import ch.amphytrion.project.services.LocationCache;
 import ch.amphytrion.project.services.LocationService;
 
 /**
@@ -11,7 +12,8 @@ import ch.amphytrion.project.services.LocationService;
 class LocationResponseControllerTest {
 
     LocationRepository locationRepository;
-    LocationService locationService = new LocationService(locationRepository);
+    LocationCache locationCache;
+    LocationService locationService = new LocationService(locationRepository, locationCache);
     //LocationController locationController = new LocationController(locationService);
 /*
     @Test
@@ -3,14 +3,17 @@ package ch.amphytrion.project.controller.chatControllerTests;
 import ch.amphytrion.project.controller.ChatController;
 import ch.amphytrion.project.controller.CustomException;
 import ch.amphytrion.project.controller.UserController;
+import ch.amphytrion.project.dto.MessagePageResponse;
 import ch.amphytrion.project.dto.UserResponse;
 import ch.amphytrion.project.entities.databaseentities.Chat;
 import ch.amphytrion.project.entities.databaseentities.Message;
 import ch.amphytrion.project.entities.databaseentities.StudentProfil;
 import ch.amphytrion.project.entities.databaseentities.User;
 import ch.amphytrion.project.repositories.ChatRepository;
+import ch.amphytrion.project.repositories.MessageBucketRepository;
 import ch.amphytrion.project.repositories.UserRepository;
 import ch.amphytrion.project.services.ChatService;
+import ch.amphytrion.project.services.RecentMessagesCache;
 import ch.amphytrion.project.services.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -47,6 +50,10 @@ class ChatControllerWithStudentTest {
    @Autowired
    private ChatRepository chatRepository;
    @Autowired
+   private MessageBucketRepository messageBucketRepository;
+   @Autowired
+   private RecentMessagesCache recentMessagesCache;
+   @Autowired
    private ChatService chatService;
    @Autowired
    private ChatController chatController;
@@ -57,6 +64,8 @@ class ChatControllerWithStudentTest {
     public void setUpStudent() {
         // add principal object to SecurityContextHolder
         chatRepository.deleteAll();
+        messageBucketRepository.deleteAll();
+        recentMessagesCache.clear();
         userRepository.deleteAll();
         user = new User(GOOGLE_ID, STUDENT_NAME);
         user.setStudentProfil(new StudentProfil());
@@ -67,8 +76,8 @@ class ChatControllerWithStudentTest {
         messages.add(new Message(null, "m2", STUDENT_NAME2, LocalDateTime.now()));
         messages.add(new Message(null, "m3", STUDENT_NAME2, LocalDateTime.now()));
         messages.add(new Message(null, "m4", STUDENT_NAME, LocalDateTime.now()));
-        chat.setMessages(messages);
         chatRepository.save(chat);
+        messages.forEach(message -> chatService.addMessage(OK_CHAT_ID, message));
         chat = chatService.findById(OK_CHAT_ID);
         userRepository.save(user);
         Authentication auth = new UsernamePasswordAuthenticationToken(user,null);
@@ -101,4 +110,39 @@ class ChatControllerWithStudentTest {
         assertEquals(user.getUsername(), chat.getMessages().get(4).getUsername());
     }
 
+    @Test
+    void getMessagesShouldPageHistoryNewestFirst() {
+        MessagePageResponse page = chatController.getMessages(OK_CHAT_ID, null, null, 3).getBody();
+        assertEquals(3, page.messages.size());
+        assertEquals("m4", page.messages.get(0).getMessage());
+        assertEquals("m2", page.messages.get(2).getMessage());
+        assertNotNull(page.before);
+        assertNotNull(page.after);
+
+        page = chatController.getMessages(OK_CHAT_ID, page.before, null, 3).getBody();
+        assertEquals(1, page.messages.size());
+        assertEquals("m1", page.messages.get(0).getMessage());
+        assertNull(page.before);
+        assertNull(page.after);
+    }
+
+    @Test
+    void getMessagesAfterShouldReturnOnlyNewMessages() {
+        String after = chatController.getMessages(OK_CHAT_ID, null, null, 10).getBody().after;
+        MessagePageResponse page = chatController.getMessages(OK_CHAT_ID, null, after, 10).getBody();
+        assertTrue(page.messages.isEmpty());
+        assertEquals(after, page.after);
+
+        chatController.createMessage(OK_CHAT_ID, new Message(null, MSG_TEST, null, null));
+        page = chatController.getMessages(OK_CHAT_ID, null, after, 10).getBody();
+        assertEquals(1, page.messages.size());
+        assertEquals(MSG_TEST, page.messages.get(0).getMessage());
+        assertNotEquals(after, page.after);
+        assertTrue(chatController.getMessages(OK_CHAT_ID, null, page.after, 10).getBody().messages.isEmpty());
+    }
+
+    @Test
+    void getMessagesThrowIfInexistant() {
+        assertThrows(CustomException.class, () -> chatController.getMessages(KO_CHAT_ID, null, null, 10));
+    }
 }
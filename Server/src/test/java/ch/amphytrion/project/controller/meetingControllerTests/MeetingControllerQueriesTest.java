@@ -0,0 +1,148 @@
+package ch.amphytrion.project.controller.meetingControllerTests;
+
+import ch.amphytrion.project.controller.MeetingController;
+import ch.amphytrion.project.dto.FilterRequest;
+import ch.amphytrion.project.dto.MeetingResponse;
+import ch.amphytrion.project.entities.databaseentities.*;
+import ch.amphytrion.project.repositories.LocationRepository;
+import ch.amphytrion.project.repositories.MeetingRepository;
+import ch.amphytrion.project.repositories.UserRepository;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.AutoConfigureDataMongo;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Check the number of database commands issued to build the meetings responses
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@SpringBootTest
+@AutoConfigureDataMongo
+class MeetingControllerQueriesTest {
+    private static final int NB_LOCATIONS = 3;
+    private static final int NB_MEETINGS = 12;
+
+    /**
+     * Record the commands sent to the database
+     */
+    static class CommandCounter implements CommandListener {
+        private final List<String> commands = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void commandStarted(CommandStartedEvent event) {
+            commands.add(event.getCommandName());
+        }
+
+        void reset() {
+            commands.clear();
+        }
+
+        long count(String commandName) {
+            return commands.stream().filter(commandName::equals).count();
+        }
+    }
+
+    @TestConfiguration
+    static class CommandCounterConfiguration {
+        @Bean
+        CommandCounter commandCounter() {
+            return new CommandCounter();
+        }
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer commandCounterCustomizer(CommandCounter commandCounter) {
+            return builder -> builder.addCommandListener(commandCounter);
+        }
+    }
+
+    @Autowired
+    private MeetingRepository meetingRepository;
+    @Autowired
+    private LocationRepository locationRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private MeetingController meetingController;
+    @Autowired
+    private CommandCounter commandCounter;
+
+    private User student;
+
+    @BeforeEach
+    public void setUp() {
+        meetingRepository.deleteAll();
+        locationRepository.deleteAll();
+        userRepository.deleteAll();
+        student = new User("google-mock-up-id", "Student_Name");
+        student.setStudentProfil(new StudentProfil());
+        userRepository.save(student);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(student, null));
+
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < NB_LOCATIONS; i++) {
+            Location location = new Location();
+            location.setName("location-" + i);
+            location.setNbPeople(10 + i);
+            locations.add(locationRepository.save(location));
+        }
+        DateTime now = DateTime.now();
+        for (int i = 0; i < NB_MEETINGS; i++) {
+            Meeting meeting = new Meeting();
+            meeting.setName("meeting-" + i);
+            meeting.setOwnerID(student.getId());
+            meeting.setIsPrivate(false);
+            meeting.setTags(new ArrayList<>());
+            meeting.setLocationID(locations.get(i % NB_LOCATIONS).getId());
+            meeting.setStartDate(now.plusHours(i + 1).toDate().toInstant());
+            meeting.setEndDate(now.plusHours(i + 2).toDate().toInstant());
+            meetingRepository.save(meeting);
+        }
+        commandCounter.reset();
+    }
+
+    @Test
+    void createdMeetingsShouldLoadLocationsInOneQuery() {
+        List<MeetingResponse> meetings = meetingController.getMeetingsCreatedByUser().getBody();
+        assertEquals(NB_MEETINGS, meetings.size());
+        meetings.forEach(meeting -> assertTrue(meeting.locationName.startsWith("location-")));
+        assertEquals(2, commandCounter.count("find"));
+    }
+
+    @Test
+    void searchShouldLoadLocationsInOneQuery() {
+        FilterRequest filter = new FilterRequest("", "", "", new ArrayList<>(), null);
+        List<MeetingResponse> meetings = meetingController.searchWithFilter(filter).getBody().meetings;
+        assertEquals(NB_MEETINGS, meetings.size());
+        meetings.forEach(meeting -> assertTrue(meeting.maxPeople >= 10));
+        assertEquals(2, commandCounter.count("find"));
+    }
+
+    @Test
+    void meetingsWithoutLocationShouldNotQueryLocations() {
+        meetingRepository.findAll().forEach(meeting -> {
+            meeting.setLocationID(null);
+            meetingRepository.save(meeting);
+        });
+        commandCounter.reset();
+        List<MeetingResponse> meetings = meetingController.getMeetingsCreatedByUser().getBody();
+        assertEquals(NB_MEETINGS, meetings.size());
+        meetings.forEach(meeting -> assertEquals("", meeting.locationName));
+        assertEquals(1, commandCounter.count("find"));
+    }
+}
@@ -25,6 +25,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.time.Instant;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -90,10 +91,10 @@ class MeetingControllerTest {
         String meetingName2 = "meeting-name-2";
         String meetingName3 = "meeting-name-3";
         DateTime now = DateTime.now();
-        String future = now.plusDays(1).toString();
-        String future2 = now.plusDays(2).toString();
-        String past = now.plusDays(-2).toString();
-        String past2 = now.plusDays(-1).toString();
+        Instant future = now.plusDays(1).toDate().toInstant();
+        Instant future2 = now.plusDays(2).toDate().toInstant();
+        Instant past = now.plusDays(-2).toDate().toInstant();
+        Instant past2 = now.plusDays(-1).toDate().toInstant();
         Location location = new Location();
         location.setNbPeople(2);
         locationService.save(location);
@@ -123,8 +124,8 @@ class MeetingControllerTest {
     void leaveMeetingShouldWorkEvenIfNotInMeeting(){
         String meetingName1 = "meeting-name-1";
         DateTime now = DateTime.now();
-        String future = now.plusDays(1).toString();
-        String future2 = now.plusDays(2).toString();
+        Instant future = now.plusDays(1).toDate().toInstant();
+        Instant future2 = now.plusDays(2).toDate().toInstant();
         Location location = new Location();
         location.setNbPeople(2);
         locationService.save(location);
@@ -139,8 +140,8 @@ class MeetingControllerTest {
         String meetingName1 = "meeting-name-1";
         String meetingName2 = "meeting-name-2";
         DateTime now = DateTime.now();
-        String future = now.plusDays(1).toString();
-        String future2 = now.plusDays(2).toString();
+        Instant future = now.plusDays(1).toDate().toInstant();
+        Instant future2 = now.plusDays(2).toDate().toInstant();
         Location location = new Location();
         location.setNbPeople(2);
         locationService.save(location);
@@ -175,8 +176,8 @@ class MeetingControllerTest {
         String meetingName1 = "meeting-name-1";
         String meetingName2 = "meeting-name-2";
         DateTime now = DateTime.now();
-        String future = now.plusDays(1).toString();
-        String future2 = now.plusDays(2).toString();
+        Instant future = now.plusDays(1).toDate().toInstant();
+        Instant future2 = now.plusDays(2).toDate().toInstant();
         Location location = new Location();
         location.setNbPeople(2);
         locationService.save(location);
@@ -203,8 +204,8 @@ class MeetingControllerTest {
     void joinMeetingShouldAddMeetingToStudent(){
         String meetingName1 = "meeting-name-1";
         DateTime now = DateTime.now();
-        String future = now.plusDays(1).toString();
-        String future2 = now.plusDays(2).toString();
+        Instant future = now.plusDays(1).toDate().toInstant();
+        Instant future2 = now.plusDays(2).toDate().toInstant();
         Location location = new Location();
         location.setNbPeople(2);
         locationService.save(location);
@@ -221,8 +222,8 @@ class MeetingControllerTest {
     void joinAMeetingDoNothingIfAlreadyThere(){
         String meetingName1 = "meeting-name-1";
         DateTime now = DateTime.now();
-        String future = now.plusDays(1).toString();
-        String future2 = now.plusDays(2).toString();
+        Instant future = now.plusDays(1).toDate().toInstant();
+        Instant future2 = now.plusDays(2).toDate().toInstant();
         Location location = new Location();
         location.setNbPeople(2);
         locationService.save(location);
@@ -240,8 +241,8 @@ class MeetingControllerTest {
     void joinShouldThrowIfFull(){
         String meetingName1 = "meeting-name-1";
         DateTime now = DateTime.now();
-        String future = now.plusDays(1).toString();
-        String future2 = now.plusDays(2).toString();
+        Instant future = now.plusDays(1).toDate().toInstant();
+        Instant future2 = now.plusDays(2).toDate().toInstant();
         Location location = new Location();
         location.setNbPeople(0);
         locationService.save(location);
@@ -258,8 +259,8 @@ class MeetingControllerTest {
     void createShouldCreateNewMeeting(){
         String meetingName1 = "meeting-name-1";
         DateTime now = DateTime.now();
-        String future = now.plusDays(1).toString();
-        String future2 = now.plusDays(2).toString();
+        Instant future = now.plusDays(1).toDate().toInstant();
+        Instant future2 = now.plusDays(2).toDate().toInstant();
         Location location = new Location();
         location.setNbPeople(2);
         locationService.save(location);
@@ -276,8 +277,8 @@ class MeetingControllerTest {
     void createdMeetingShouldHaveChat(){
         String meetingName1 = "meeting-name-1";
         DateTime now = DateTime.now();
-        String future = now.plusDays(1).toString();
-        String future2 = now.plusDays(2).toString();
+        Instant future = now.plusDays(1).toDate().toInstant();
+        Instant future2 = now.plusDays(2).toDate().toInstant();
         Location location = new Location();
         location.setNbPeople(2);
         locationService.save(location);
@@ -293,8 +294,8 @@ class MeetingControllerTest {
     void updateNonExistantShouldThrow(){
         String meetingName1 = "meeting-name-1";
         DateTime now = DateTime.now();
-        String future = now.plusDays(1).toString();
-        String future2 = now.plusDays(2).toString();
+        Instant future = now.plusDays(1).toDate().toInstant();
+        Instant future2 = now.plusDays(2).toDate().toInstant();
         Location location = new Location();
         location.setNbPeople(2);
         locationService.save(location);
@@ -307,8 +308,8 @@ class MeetingControllerTest {
     void updateShouldNotCreateNewMeeting(){
         String meetingName1 = "meeting-name-1";
         DateTime now = DateTime.now();
-        String future = now.plusDays(1).toString();
-        String future2 = now.plusDays(2).toString();
+        Instant future = now.plusDays(1).toDate().toInstant();
+        Instant future2 = now.plusDays(2).toDate().toInstant();
         Location location = new Location();
         location.setNbPeople(2);
         locationService.save(location);
@@ -326,8 +327,8 @@ class MeetingControllerTest {
         String description1 = "old-description";
         String description2 = "new-description";
         DateTime now = DateTime.now();
-        String future = now.plusDays(1).toString();
-        String future2 = now.plusDays(2).toString();
+        Instant future = now.plusDays(1).toDate().toInstant();
+        Instant future2 = now.plusDays(2).toDate().toInstant();
         Location location = new Location();
         location.setNbPeople(2);
         locationService.save(location);
@@ -353,8 +354,8 @@ class MeetingControllerTest {
         String meetingName1 = "meeting-name-1";
         String meetingName2 = "meeting-name-2";
         DateTime now = DateTime.now();
-        String future = now.plusDays(1).toString();
-        String future2 = now.plusDays(2).toString();
+        Instant future = now.plusDays(1).toDate().toInstant();
+        Instant future2 = now.plusDays(2).toDate().toInstant();
         Location location = new Location();
         location.setNbPeople(2);
         locationService.save(location);
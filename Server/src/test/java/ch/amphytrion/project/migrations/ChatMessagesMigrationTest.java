@@ -0,0 +1,92 @@
+package ch.amphytrion.project.migrations;
+
+import ch.amphytrion.project.entities.databaseentities.Chat;
+import ch.amphytrion.project.entities.databaseentities.Message;
+import ch.amphytrion.project.entities.databaseentities.MessageBucket;
+import ch.amphytrion.project.repositories.ChatRepository;
+import ch.amphytrion.project.repositories.MessageBucketRepository;
+import ch.amphytrion.project.services.ChatService;
+import org.bson.Document;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.AutoConfigureDataMongo;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of ChatMessagesMigration class
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@SpringBootTest
+@AutoConfigureDataMongo
+public class ChatMessagesMigrationTest {
+
+    private static final String CHAT_ID = "legacy-chat";
+    private static final int NB_MESSAGES = MessageBucket.BUCKET_SIZE + 20;
+
+    @Autowired
+    private ChatRepository chatRepository;
+    @Autowired
+    private MessageBucketRepository messageBucketRepository;
+    @Autowired
+    private ChatService chatService;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private ChatMessagesMigration migration;
+
+    @BeforeEach
+    public void setUp() {
+        chatRepository.deleteAll();
+        messageBucketRepository.deleteAll();
+        DateTime start = DateTime.now().minusDays(1);
+        List<Document> messages = new ArrayList<>();
+        for (int i = 0; i < NB_MESSAGES; i++) {
+            messages.add(new Document("message", "message-" + i)
+                    .append("username", "user-" + (i % 3))
+                    .append("date", start.plusSeconds(i).toDate()));
+        }
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Chat.class))
+                .insertOne(new Document("_id", CHAT_ID).append("messages", messages));
+    }
+
+    @Test
+    void migrationShouldMoveMessagesToBuckets() {
+        assertEquals(NB_MESSAGES, migration.migrate());
+        assertEquals(2, messageBucketRepository.findByChatIdOrderByFirstDateAsc(CHAT_ID).size());
+        Document chat = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Chat.class))
+                .find(new Document("_id", CHAT_ID)).first();
+        assertFalse(chat.containsKey("messages"));
+
+        List<Message> messages = chatService.findById(CHAT_ID).getMessages();
+        assertEquals(NB_MESSAGES, messages.size());
+        for (int i = 0; i < NB_MESSAGES; i++) {
+            assertEquals("message-" + i, messages.get(i).getMessage());
+            assertNotNull(messages.get(i).getId());
+        }
+    }
+
+    @Test
+    void newMessagesShouldFollowMigratedMessages() {
+        migration.migrate();
+        chatService.addMessage(CHAT_ID, new Message(null, "new-message", "user-0", null));
+        List<Message> messages = chatService.findById(CHAT_ID).getMessages();
+        assertEquals(NB_MESSAGES + 1, messages.size());
+        assertEquals("new-message", messages.get(NB_MESSAGES).getMessage());
+    }
+
+    @Test
+    void migrationShouldBeIdempotent() {
+        migration.migrate();
+        assertEquals(0, migration.migrate());
+        assertEquals(NB_MESSAGES, chatService.findMessages(CHAT_ID).size());
+    }
+}
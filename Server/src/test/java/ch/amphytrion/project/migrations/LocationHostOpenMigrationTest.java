@@ -0,0 +1,72 @@
+package ch.amphytrion.project.migrations;
+
+import ch.amphytrion.project.entities.databaseentities.CovidData;
+import ch.amphytrion.project.entities.databaseentities.HostProfil;
+import ch.amphytrion.project.entities.databaseentities.Location;
+import ch.amphytrion.project.entities.databaseentities.User;
+import ch.amphytrion.project.repositories.LocationRepository;
+import ch.amphytrion.project.repositories.UserRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.AutoConfigureDataMongo;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of LocationHostOpenMigration class
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@SpringBootTest
+@AutoConfigureDataMongo
+public class LocationHostOpenMigrationTest {
+
+    @Autowired
+    private LocationRepository locationRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private LocationHostOpenMigration migration;
+
+    private User createHost(String name, boolean isOpen) {
+        User host = new User("google-id-" + name, name);
+        HostProfil hostProfil = new HostProfil();
+        hostProfil.setCovidData(new CovidData(isOpen, false, false, "", ""));
+        host.setHostProfil(hostProfil);
+        return userRepository.save(host);
+    }
+
+    private void insertLegacyLocation(String id, String hostId) {
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Location.class))
+                .insertOne(new Document("_id", id).append("name", id).append("hostId", hostId));
+    }
+
+    @BeforeEach
+    public void setUp() {
+        locationRepository.deleteAll();
+        userRepository.deleteAll();
+        insertLegacyLocation("open-location", createHost("open", true).getId());
+        insertLegacyLocation("closed-location", createHost("closed", false).getId());
+        insertLegacyLocation("orphan-location", "deleted-host");
+    }
+
+    @Test
+    void migrationShouldCopyHostOpeningStatus() {
+        assertEquals(3, migration.migrate());
+        assertTrue(locationRepository.findById("open-location").get().getHostOpen());
+        assertFalse(locationRepository.findById("closed-location").get().getHostOpen());
+        assertFalse(locationRepository.findById("orphan-location").get().getHostOpen());
+    }
+
+    @Test
+    void migrationShouldBeIdempotent() {
+        migration.migrate();
+        assertEquals(0, migration.migrate());
+    }
+}
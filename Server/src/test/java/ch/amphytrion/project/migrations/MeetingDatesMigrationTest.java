@@ -0,0 +1,92 @@
+package ch.amphytrion.project.migrations;
+
+import ch.amphytrion.project.entities.databaseentities.Meeting;
+import ch.amphytrion.project.repositories.MeetingRepository;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.AutoConfigureDataMongo;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of MeetingDatesMigration class
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@SpringBootTest
+@AutoConfigureDataMongo
+public class MeetingDatesMigrationTest {
+
+    @Autowired
+    private MeetingRepository repository;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private MeetingDatesMigration migration;
+
+    private DateTime start;
+    private DateTime end;
+
+    @BeforeEach
+    public void setUp() {
+        repository.deleteAll();
+        start = DateTime.now();
+        end = start.plusHours(2);
+        Document legacy = new Document("_id", "legacy-meeting")
+                .append("name", "legacy")
+                .append("isPrivate", false)
+                .append("startDate", start.toString())
+                .append("endDate", end.toString());
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Meeting.class)).insertOne(legacy);
+    }
+
+    @Test
+    void legacyMeetingShouldBeReadBeforeMigration() {
+        Meeting meeting = repository.findById("legacy-meeting").orElse(null);
+        assertNotNull(meeting);
+        assertEquals(start.toDate().toInstant(), meeting.getStartDate());
+        assertEquals(end.toDate().toInstant(), meeting.getEndDate());
+    }
+
+    @Test
+    void migrationShouldStoreNativeDates() {
+        assertEquals(2, migration.migrate());
+        Document migrated = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Meeting.class))
+                .find(new Document("_id", "legacy-meeting")).first();
+        assertEquals(start.toDate(), migrated.get("startDate", Date.class));
+        assertEquals(end.toDate(), migrated.get("endDate", Date.class));
+        assertEquals(start.toDate().toInstant(), repository.findById("legacy-meeting").get().getStartDate());
+    }
+
+    @Test
+    void invalidDateShouldBeMovedAside() {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Meeting.class));
+        collection.insertOne(new Document("_id", "invalid-meeting")
+                .append("name", "invalid")
+                .append("isPrivate", false)
+                .append("startDate", "demain soir")
+                .append("endDate", end.toString()));
+        assertEquals(4, migration.migrate());
+        Document migrated = collection.find(new Document("_id", "invalid-meeting")).first();
+        assertFalse(migrated.containsKey("startDate"));
+        assertEquals("demain soir", migrated.getString(MeetingDatesMigration.invalidField("startDate")));
+        Meeting meeting = repository.findById("invalid-meeting").orElse(null);
+        assertNotNull(meeting);
+        assertNull(meeting.getStartDate());
+        assertEquals(2, repository.findAll().size());
+    }
+
+    @Test
+    void migrationShouldBeIdempotent() {
+        migration.migrate();
+        assertEquals(0, migration.migrate());
+    }
+}
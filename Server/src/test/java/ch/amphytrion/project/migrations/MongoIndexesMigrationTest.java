@@ -0,0 +1,93 @@
+package ch.amphytrion.project.migrations;
+
+import ch.amphytrion.project.entities.databaseentities.Location;
+import ch.amphytrion.project.entities.databaseentities.Meeting;
+import ch.amphytrion.project.entities.databaseentities.User;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.AutoConfigureDataMongo;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Check that the queries of the repositories are served by an index
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@SpringBootTest
+@AutoConfigureDataMongo
+public class MongoIndexesMigrationTest {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private MongoIndexesMigration migration;
+
+    @BeforeEach
+    public void setUp() {
+        migration.migrate();
+    }
+
+    private Document winningPlan(Class<?> entity, Document filter) {
+        Document find = new Document("find", mongoTemplate.getCollectionName(entity)).append("filter", filter);
+        Document explain = mongoTemplate.getDb().runCommand(new Document("explain", find));
+        return explain.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+    }
+
+    private void assertIndexScan(Class<?> entity, Document filter) {
+        Document plan = winningPlan(entity, filter);
+        assertTrue(plan.toJson().contains("IXSCAN"), "No index used by " + filter.toJson() + " : " + plan.toJson());
+    }
+
+    @Test
+    void migrationShouldBeIdempotent() {
+        assertDoesNotThrow(() -> migration.migrate());
+    }
+
+    @Test
+    void userQueriesShouldUseIndex() {
+        assertIndexScan(User.class, new Document("googleId", "google-id"));
+        assertIndexScan(User.class, new Document("username", "username"));
+    }
+
+    @Test
+    void locationQueriesShouldUseIndex() {
+        assertIndexScan(Location.class, new Document("hostId", "host-id"));
+    }
+
+    @Test
+    void meetingQueriesShouldUseIndex() {
+        Date now = new Date();
+        Date later = new Date(now.getTime() + 7 * 24 * 3600 * 1000L);
+        assertIndexScan(Meeting.class, new Document("ownerID", "owner-id"));
+        assertIndexScan(Meeting.class, new Document("locationID", "location-id"));
+        assertIndexScan(Meeting.class, new Document("ownerID", "owner-id")
+                .append("endDate", new Document("$gt", now)));
+        assertIndexScan(Meeting.class, new Document("locationID", "location-id")
+                .append("endDate", new Document("$gt", now)));
+        assertIndexScan(Meeting.class, new Document("tags.name", new Document("$in", Arrays.asList("sport", "music"))));
+        assertIndexScan(Meeting.class, new Document("isPrivate", false)
+                .append("startDate", new Document("$lt", now)));
+        // Dates searches: open end, then both bounds where the start or the end must be in the dates
+        assertIndexScan(Meeting.class, new Document("isPrivate", false)
+                .append("endDate", new Document("$gt", now)));
+        assertIndexScan(Meeting.class, new Document("isPrivate", false)
+                .append("$or", Arrays.asList(
+                        new Document("startDate", new Document("$gt", now).append("$lt", later)),
+                        new Document("endDate", new Document("$gt", now).append("$lt", later)))));
+    }
+
+    @Test
+    void textSearchesShouldUseTextIndex() {
+        Document text = new Document("$text", new Document("$search", "soirée"));
+        assertTrue(winningPlan(Meeting.class, text).toJson().contains("TEXT"));
+        assertTrue(winningPlan(Location.class, text).toJson().contains("TEXT"));
+    }
+}
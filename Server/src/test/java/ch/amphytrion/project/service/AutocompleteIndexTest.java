@@ -0,0 +1,245 @@
+package ch.amphytrion.project.service;
+
+import ch.amphytrion.project.dto.SuggestionResponse;
+import ch.amphytrion.project.entities.databaseentities.Location;
+import ch.amphytrion.project.entities.databaseentities.Meeting;
+import ch.amphytrion.project.entities.databaseentities.Tag;
+import ch.amphytrion.project.services.AutocompleteIndex;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of the prefix index of the suggestions of meeting names, tags and locations
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public class AutocompleteIndexTest {
+
+    private AtomicInteger loads;
+    private Map<String, Meeting> meetings;
+    private Map<String, Location> locations;
+    private AutocompleteIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        loads = new AtomicInteger();
+        meetings = new LinkedHashMap<>();
+        locations = new LinkedHashMap<>();
+        store(location("bar", "Bar des Amis", "bière"));
+        store(location("library", "Bibliothèque cantonale", "étude"));
+        store(meeting("1", "Soirée jeux", "bar", 3, "jeux", "bière"));
+        store(meeting("2", "Soirée jeux", "bar", 0, "jeux"));
+        store(meeting("3", "Soirée cinéma", "bar", 1, "film"));
+        store(meeting("4", "Révisions d'analyse", "library", 5, "étude"));
+        Meeting secret = meeting("5", "Soirée secrète", "bar", 20, "secret");
+        secret.setIsPrivate(true);
+        store(secret);
+        index = new AutocompleteIndex(() -> {
+            loads.incrementAndGet();
+            return meetings.values().stream().filter(meeting -> !meeting.getIsPrivate()).collect(Collectors.toList());
+        }, () -> new ArrayList<>(locations.values()), meetings::get, locations::get);
+    }
+
+    private static Meeting meeting(String id, String name, String locationID, int members, String... tags) {
+        Meeting meeting = new Meeting(name);
+        meeting.setId(id);
+        meeting.setLocationID(locationID);
+        meeting.setIsPrivate(false);
+        meeting.setTags(Arrays.stream(tags).map(Tag::new).collect(Collectors.toList()));
+        for (int i = 0; i < members; i++) {
+            meeting.getMembersID().add("member-" + i);
+        }
+        return meeting;
+    }
+
+    private static Location location(String id, String name, String... tags) {
+        Location location = new Location();
+        location.setId(id);
+        location.setName(name);
+        location.setTags(Arrays.stream(tags).map(Tag::new).collect(Collectors.toList()));
+        return location;
+    }
+
+    private void store(Meeting meeting) {
+        meetings.put(meeting.getId(), meeting);
+    }
+
+    private void store(Location location) {
+        locations.put(location.getId(), location);
+    }
+
+    private List<String> texts(String prefix) {
+        return index.suggest(prefix, AutocompleteIndex.MAX_SUGGESTIONS).stream()
+                .map(suggestion -> suggestion.text)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void suggestionsShouldBeOrderedByPopularity() {
+        // "Soirée jeux": 2 meetings and 3 members, "Soirée cinéma": 1 meeting and 1 member
+        assertEquals(Arrays.asList("Soirée jeux", "Soirée cinéma"), texts("soi"));
+        assertEquals(1, loads.get());
+        // The bar hosts 3 public meetings, the library and the tag "bière" have 2 uses, equal ones are sorted by text
+        assertEquals(Arrays.asList("Bar des Amis", "Bibliothèque cantonale", "bière"), texts("b"));
+    }
+
+    @Test
+    void everyWordShouldBeSuggestedWithoutCaseAndAccents() {
+        assertEquals(Arrays.asList("Soirée jeux", "jeux"), texts("JEU"));
+        assertEquals(Arrays.asList("Soirée cinéma"), texts("cine"));
+        assertEquals(Arrays.asList("Bibliothèque cantonale"), texts("bibliotheque c"));
+        assertEquals(Arrays.asList("Révisions d'analyse"), texts("analy"));
+        assertTrue(texts("soiree c").contains("Soirée cinéma"));
+        assertFalse(texts("soiree ").contains("Bar des Amis"));
+        assertTrue(texts("").isEmpty());
+        assertTrue(texts("zzz").isEmpty());
+    }
+
+    @Test
+    void suggestionsShouldHaveTheirTypeAndLocationId() {
+        List<SuggestionResponse> found = index.suggest("bar", 1);
+        assertEquals(1, found.size());
+        assertEquals(SuggestionResponse.LOCATION, found.get(0).type);
+        assertEquals("bar", found.get(0).id);
+        SuggestionResponse tag = index.suggest("film", 5).get(0);
+        assertEquals(SuggestionResponse.TAG, tag.type);
+        assertNull(tag.id);
+    }
+
+    @Test
+    void privateMeetingsShouldNotBeSuggested() {
+        assertFalse(texts("soiree").contains("Soirée secrète"));
+        assertTrue(texts("secret").isEmpty());
+        Meeting published = meetings.get("5");
+        published.setIsPrivate(false);
+        index.onAfterSave(new AfterSaveEvent<>(published, new Document(), "meeting"));
+        assertEquals("Soirée secrète", texts("soiree").get(0));
+        published.setIsPrivate(true);
+        index.onAfterSave(new AfterSaveEvent<>(published, new Document(), "meeting"));
+        assertFalse(texts("soiree").contains("Soirée secrète"));
+    }
+
+    @Test
+    void savedMeetingShouldChangeThePopularity() {
+        texts("soi");
+        Meeting cinema = meetings.get("3");
+        for (int i = 1; i < 10; i++) {
+            cinema.getMembersID().add("new-member-" + i);
+        }
+        index.onAfterSave(new AfterSaveEvent<>(cinema, new Document(), "meeting"));
+        assertEquals(Arrays.asList("Soirée cinéma", "Soirée jeux"), texts("soi"));
+        cinema.setName("Ciné-club");
+        index.onAfterSave(new AfterSaveEvent<>(cinema, new Document(), "meeting"));
+        assertEquals(Arrays.asList("Soirée jeux"), texts("soi"));
+        assertEquals(Arrays.asList("Ciné-club"), texts("club"));
+    }
+
+    @Test
+    void deletedMeetingsShouldRemoveTheirContributions() {
+        texts("soi");
+        index.onApplicationEvent(new AfterDeleteEvent<>(new Document("_id", "1"), Meeting.class, "meeting"));
+        assertEquals(Arrays.asList("Soirée jeux"), texts("soiree j"));
+        assertEquals(Arrays.asList("bière"), texts("biere"));
+        index.onApplicationEvent(new AfterDeleteEvent<>(new Document("_id", "2"), Meeting.class, "meeting"));
+        assertTrue(texts("soiree j").isEmpty());
+        assertTrue(texts("jeux").isEmpty());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void renamedAndDeletedLocationsShouldBeUpdated() {
+        texts("bar");
+        Location bar = locations.get("bar");
+        bar.setName("Café des Amis");
+        index.onAfterSave(new AfterSaveEvent<>(bar, new Document(), "location"));
+        assertEquals(Arrays.asList("Café des Amis"), texts("amis"));
+        assertTrue(texts("bar").isEmpty());
+        index.onApplicationEvent(new AfterDeleteEvent<>(new Document("_id", "bar"), Location.class, "location"));
+        assertTrue(texts("amis").isEmpty());
+        // The tag is still used by a meeting
+        assertEquals(Arrays.asList("bière"), texts("biere"));
+    }
+
+    @Test
+    void changeOfAnotherInstanceShouldBeReadAgain() {
+        texts("soi");
+        store(meeting("6", "Soirée karaoké", null, 50));
+        index.refreshMeeting("6");
+        assertEquals("Soirée karaoké", texts("soi").get(0));
+        meetings.remove("6");
+        index.refreshMeeting("6");
+        assertTrue(texts("karaoke").isEmpty());
+        locations.remove("library");
+        index.refreshLocation("library");
+        assertFalse(texts("bib").contains("Bibliothèque cantonale"));
+    }
+
+    @Test
+    void deleteByQueryShouldEmptyTheIndex() {
+        texts("soi");
+        index.onApplicationEvent(new AfterDeleteEvent<>(new Document(), Meeting.class, "meeting"));
+        assertEquals(0, index.size());
+        meetings.clear();
+        assertTrue(texts("soi").isEmpty());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void suggestionsShouldBeLimited() {
+        for (int i = 0; i < 30; i++) {
+            store(meeting("many-" + i, "Sortie " + i, null, i));
+        }
+        assertEquals(AutocompleteIndex.MAX_SUGGESTIONS, texts("sortie").size());
+        assertEquals("Sortie 29", texts("sortie").get(0));
+        assertEquals(3, index.suggest("s", 3).size());
+    }
+
+    @Test
+    void searchesShouldBeCompletedWithoutCaseAndAccents() {
+        assertEquals("soir soiree", index.complete("soir"));
+        assertEquals("SOIRE soiree", index.complete("SOIRE"));
+        assertEquals("analy analyse", index.complete("analy"));
+        // Only the start of the words of the public meeting names is completed
+        assertEquals("oiree", index.complete("oiree"));
+        assertEquals("secr", index.complete("secr"));
+        assertEquals("bar", index.complete("bar"));
+    }
+
+    @Test
+    void sentencesAndExcludedWordsShouldNotBeCompleted() {
+        assertEquals("\"soir de fête\"", index.complete("\"soir de fête\""));
+        assertEquals("jeu -soir jeux", index.complete("jeu -soir"));
+        assertEquals("jeux", index.complete("jeux"));
+    }
+
+    @Test
+    void completionsShouldFollowTheMeetingChanges() {
+        assertEquals("cine cinema", index.complete("cine"));
+        Meeting cinema = meetings.get("3");
+        cinema.setName("Ciné-club");
+        index.onAfterSave(new AfterSaveEvent<>(cinema, new Document(), "meeting"));
+        assertEquals("cine", index.complete("cine"));
+        assertEquals("clu club", index.complete("clu"));
+        index.onApplicationEvent(new AfterDeleteEvent<>(new Document("_id", "3"), Meeting.class, "meeting"));
+        assertEquals("clu", index.complete("clu"));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void completionsShouldBeLimited() {
+        for (int i = 0; i < 30; i++) {
+            store(meeting("many-" + i, "Sortie" + i, null, 0));
+        }
+        String completed = index.complete("sortie");
+        assertEquals(AutocompleteIndex.MAX_COMPLETIONS + 1, completed.split(" ").length);
+    }
+}
@@ -0,0 +1,214 @@
+package ch.amphytrion.project.service;
+
+import ch.amphytrion.project.authentication.jwt_authentication.PrincipalCache;
+import ch.amphytrion.project.entities.databaseentities.Chat;
+import ch.amphytrion.project.entities.databaseentities.Location;
+import ch.amphytrion.project.entities.databaseentities.Message;
+import ch.amphytrion.project.entities.databaseentities.MessageBucket;
+import ch.amphytrion.project.entities.databaseentities.User;
+import ch.amphytrion.project.repositories.ChatRepository;
+import ch.amphytrion.project.repositories.LocationRepository;
+import ch.amphytrion.project.repositories.MessageBucketRepository;
+import ch.amphytrion.project.repositories.UserRepository;
+import ch.amphytrion.project.services.CacheInvalidationBus;
+import ch.amphytrion.project.services.ChatService;
+import ch.amphytrion.project.services.LocationCache;
+import ch.amphytrion.project.services.LocationService;
+import ch.amphytrion.project.services.RecentMessagesCache;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.AutoConfigureDataMongo;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.Date;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of the invalidation of the caches by the changes of the other instances, against an embedded single-node
+ * replica set
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@SpringBootTest(properties = {
+        "spring.mongodb.embedded.storage.repl-set-name=rs0",
+        "cache.invalidation.instance=test-instance"
+})
+@AutoConfigureDataMongo
+public class CacheInvalidationBusTest {
+
+    private static final long TIMEOUT = 10000;
+
+    @Autowired
+    private CacheInvalidationBus bus;
+    @Autowired
+    private PrincipalCache principalCache;
+    @Autowired
+    private LocationCache locationCache;
+    @Autowired
+    private LocationService locationService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private LocationRepository locationRepository;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private ChatService chatService;
+    @Autowired
+    private ChatRepository chatRepository;
+    @Autowired
+    private MessageBucketRepository messageBucketRepository;
+    @Autowired
+    private RecentMessagesCache recentMessagesCache;
+
+    /**
+     * Initiate the replica set started by the embedded server, before the application connects to it
+     */
+    @TestConfiguration
+    static class ReplicaSetConfiguration {
+        @Bean
+        MongoClientSettingsBuilderCustomizer replicaSetInitiator(Environment environment) {
+            return settings -> {
+                String port = environment.getProperty("local.mongo.port");
+                try (MongoClient client = MongoClients.create("mongodb://localhost:" + port + "/?directConnection=true")) {
+                    Document initiate = new Document("replSetInitiate", new Document());
+                    try {
+                        client.getDatabase("admin").runCommand(initiate);
+                    } catch (MongoCommandException e) {
+                        // Already initiated
+                    }
+                    long end = System.currentTimeMillis() + TIMEOUT;
+                    while (!Boolean.TRUE.equals(client.getDatabase("admin").runCommand(new Document("isMaster", 1)).getBoolean("ismaster"))) {
+                        if (System.currentTimeMillis() > end) {
+                            throw new IllegalStateException("Replica set not initiated");
+                        }
+                        Thread.sleep(100);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        userRepository.deleteAll();
+        locationRepository.deleteAll();
+        bus.start();
+        waitUntil(bus::isActive);
+        principalCache.clear();
+        locationCache.clear();
+        recentMessagesCache.clear();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < end, "Condition not reached in time");
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+
+    @Test
+    void userWrittenByAnotherInstanceShouldBeRemoved() {
+        User user = userRepository.save(new User("google-id", "student"));
+        principalCache.get(user.getId(), id -> userRepository.findById(id).orElse(null));
+        assertEquals(1, principalCache.size());
+        // Written without the repository, like another instance would
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class))
+                .updateOne(Filters.eq("_id", new ObjectId(user.getId())), Updates.set("username", "renamed"));
+        waitUntil(() -> principalCache.size() == 0);
+    }
+
+    @Test
+    void locationWrittenByAnotherInstanceShouldBeReadAgain() {
+        Location location = new Location();
+        location.setName("name");
+        location = locationRepository.save(location);
+        assertEquals("name", locationService.findById(location.getId()).getName());
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Location.class))
+                .updateOne(Filters.eq("_id", new ObjectId(location.getId())), Updates.set("name", "renamed"));
+        String id = location.getId();
+        waitUntil(() -> "renamed".equals(locationService.findById(id).getName()));
+    }
+
+    @Test
+    void locationDeletedByAnotherInstanceShouldBeRemoved() {
+        Location location = locationRepository.save(new Location());
+        locationService.findById(location.getId());
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Location.class))
+                .deleteOne(Filters.eq("_id", new ObjectId(location.getId())));
+        waitUntil(() -> locationCache.size() == 0);
+        assertNull(locationService.findById(location.getId()));
+    }
+
+    @Test
+    void messageWrittenByAnotherInstanceShouldBeReadAgain() {
+        Chat chat = chatRepository.save(new Chat());
+        chatService.addMessage(chat.getId(), new Message(null, "first", "username", null));
+        assertEquals(1, chatService.findMessagesBefore(chat.getId(), null, 10).size());
+        // The chat is served from memory
+        assertTrue(recentMessagesCache.contains(chat.getId()));
+        // Pushed without the service, like another instance would
+        Document other = new Document("_id", new ObjectId().toHexString())
+                .append("message", "second")
+                .append("username", "username")
+                .append("date", new Date());
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(MessageBucket.class))
+                .updateOne(Filters.eq("chatId", chat.getId()), Updates.push("messages", other));
+        String id = chat.getId();
+        waitUntil(() -> chatService.findMessagesBefore(id, null, 10).size() == 2);
+        messageBucketRepository.deleteByChatId(id);
+    }
+
+    @Test
+    void messageAddedByThisInstanceShouldStayInMemory() {
+        Chat chat = chatRepository.save(new Chat());
+        chatService.addMessage(chat.getId(), new Message(null, "first", "username", null));
+        chatService.findMessagesBefore(chat.getId(), null, 10);
+        chatService.addMessage(chat.getId(), new Message(null, "second", "username", null));
+        // A later change of another chat is seen after the ones of this chat
+        Chat other = chatRepository.save(new Chat());
+        chatService.addMessage(other.getId(), new Message(null, "other", "username", null));
+        chatService.findMessagesBefore(other.getId(), null, 10);
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(MessageBucket.class))
+                .updateOne(Filters.eq("chatId", other.getId()), Updates.set("count", 0));
+        String otherId = other.getId();
+        waitUntil(() -> !recentMessagesCache.contains(otherId));
+        assertTrue(recentMessagesCache.contains(chat.getId()));
+        messageBucketRepository.deleteByChatId(chat.getId());
+        messageBucketRepository.deleteByChatId(otherId);
+    }
+
+    @Test
+    void positionInTheStreamShouldBeSaved() {
+        userRepository.save(new User("google-id", "student"));
+        waitUntil(() -> {
+            Document state = mongoTemplate.getCollection(CacheInvalidationBus.STATE_COLLECTION)
+                    .find(Filters.eq("_id", bus.getInstance())).first();
+            return state != null && state.getString("resumeToken") != null;
+        });
+        assertEquals("test-instance", bus.getInstance());
+    }
+}
@@ -0,0 +1,178 @@
+package ch.amphytrion.project.service;
+
+import ch.amphytrion.project.entities.databaseentities.Message;
+import ch.amphytrion.project.repositories.MessageBucketRepository;
+import ch.amphytrion.project.services.ChatMessageBatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+
+/**
+ * Test of the grouped writes of the chat messages
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public class ChatMessageBatcherTest {
+
+    private static final String CHAT_ID = "chat-id";
+    private static final int MAX_BATCH_SIZE = 10;
+    private static final int NB_MESSAGES = 200;
+
+    private MessageBucketRepository repository;
+    private SimpleMeterRegistry registry;
+    private ChatMessageBatcher batcher;
+    private Set<String> stored;
+    private AtomicInteger writes;
+
+    @BeforeEach
+    public void setUp() {
+        repository = Mockito.mock(MessageBucketRepository.class);
+        registry = new SimpleMeterRegistry();
+        stored = ConcurrentHashMap.newKeySet();
+        writes = new AtomicInteger();
+        Mockito.doAnswer(invocation -> {
+            List<Message> messages = invocation.getArgument(1);
+            assertTrue(messages.size() <= MAX_BATCH_SIZE);
+            writes.incrementAndGet();
+            messages.forEach(message -> stored.add(message.getId()));
+            return null;
+        }).when(repository).appendMessages(anyString(), anyList());
+        batcher = new ChatMessageBatcher(repository, registry, 20, MAX_BATCH_SIZE);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        batcher.shutdown();
+    }
+
+    private static Message message(int i) {
+        return new Message("id-" + i, "message-" + i, "user", LocalDateTime.now());
+    }
+
+    @Test
+    void burstShouldBeWrittenInFewBatches() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Message>> futures = new ArrayList<>();
+            for (int i = 0; i < NB_MESSAGES; i++) {
+                Message message = message(i);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    Message result = batcher.append(CHAT_ID, message).get(5, TimeUnit.SECONDS);
+                    // The message is acknowledged only once it is stored
+                    assertTrue(stored.contains(result.getId()));
+                    return result;
+                }));
+            }
+            start.countDown();
+            for (Future<Message> future : futures) {
+                assertNotNull(future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(NB_MESSAGES, stored.size());
+        assertTrue(writes.get() < NB_MESSAGES);
+        assertEquals(writes.get(), registry.get("chat.messages.batch.size").summary().count());
+        assertEquals(NB_MESSAGES, registry.get("chat.messages.batch.size").summary().totalAmount());
+        assertEquals(writes.get(), registry.get("chat.messages.batch.flush").timer().count());
+    }
+
+    @Test
+    void batchesOfAChatShouldBeWrittenInOrder() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        List<LocalDateTime> dates = new CopyOnWriteArrayList<>();
+        Mockito.doAnswer(invocation -> {
+            assertEquals(1, running.incrementAndGet(), "Two batches of the chat are written at the same time");
+            List<Message> messages = invocation.getArgument(1);
+            messages.forEach(message -> dates.add(message.getDate()));
+            Thread.sleep(5);
+            running.decrementAndGet();
+            return null;
+        }).when(repository).appendMessages(anyString(), anyList());
+
+        List<CompletableFuture<Message>> futures = new ArrayList<>();
+        for (int i = 0; i < 5 * MAX_BATCH_SIZE; i++) {
+            futures.add(batcher.append(CHAT_ID, message(i)));
+        }
+        for (CompletableFuture<Message> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(5 * MAX_BATCH_SIZE, dates.size());
+        for (int i = 1; i < dates.size(); i++) {
+            assertFalse(dates.get(i).isBefore(dates.get(i - 1)));
+        }
+    }
+
+    @Test
+    void lonelyMessageShouldBeWrittenAfterTheWindow() throws Exception {
+        Message message = batcher.append(CHAT_ID, message(0)).get(5, TimeUnit.SECONDS);
+        assertTrue(stored.contains(message.getId()));
+        assertEquals(1, writes.get());
+    }
+
+    @Test
+    void chatsShouldBeWrittenSeparately() throws Exception {
+        CompletableFuture<Message> first = batcher.append(CHAT_ID, message(0));
+        CompletableFuture<Message> second = batcher.append("other-chat", message(1));
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        Mockito.verify(repository).appendMessages(Mockito.eq(CHAT_ID), anyList());
+        Mockito.verify(repository).appendMessages(Mockito.eq("other-chat"), anyList());
+    }
+
+    @Test
+    void failedWriteShouldFailTheMessagesOfTheBatch() {
+        Mockito.doThrow(new IllegalStateException("database down")).when(repository).appendMessages(any(), any());
+        CompletableFuture<Message> first = batcher.append(CHAT_ID, message(0));
+        CompletableFuture<Message> second = batcher.append(CHAT_ID, message(1));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void slowWritesShouldNotDelayTheWindowsOfOtherChats() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            if (!invocation.getArgument(0).equals(CHAT_ID)) {
+                release.await();
+            }
+            return null;
+        }).when(repository).appendMessages(anyString(), anyList());
+        try {
+            // Blocked writes of other chats, less than the writers
+            for (int i = 0; i < ChatMessageBatcher.WRITER_THREADS - 1; i++) {
+                batcher.append("blocked-" + i, message(i));
+            }
+            Thread.sleep(50);
+            assertNotNull(batcher.append(CHAT_ID, message(0)).get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void messagesAppendedAfterShutdownShouldFail() {
+        batcher.shutdown();
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> batcher.append(CHAT_ID, message(0)).get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+        Mockito.verify(repository, Mockito.never()).appendMessages(anyString(), anyList());
+    }
+}
@@ -0,0 +1,183 @@
+package ch.amphytrion.project.service;
+
+import ch.amphytrion.project.entities.databaseentities.Message;
+import ch.amphytrion.project.services.ChatPushService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of the push of the chat messages to the connected clients
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public class ChatPushServiceTest {
+
+    private static final String CHAT_ID = "chat-id";
+    private static final long WRITE_TIMEOUT = 200;
+
+    private ChatPushService service;
+
+    /**
+     * Connection recording the events sent, optionally blocked like a stalled TCP connection: only an interruption
+     * ends its writes, completing it does not
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<SseEventBuilder> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch release;
+        private final CountDownLatch received;
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        RecordingEmitter(int expected, boolean blocked) {
+            this.received = new CountDownLatch(expected);
+            this.release = new CountDownLatch(blocked ? 1 : 0);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            events.add(builder);
+            received.countDown();
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+
+    private static Message message(int i) {
+        return new Message("id-" + i, "message " + i, "user", LocalDateTime.now());
+    }
+
+    @BeforeEach
+    public void setUp() {
+        service = new ChatPushService(ChatPushService.HEARTBEAT_PERIOD, WRITE_TIMEOUT);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void publishShouldReachAllSubscribersOfTheChat() throws Exception {
+        RecordingEmitter first = new RecordingEmitter(3, false);
+        RecordingEmitter second = new RecordingEmitter(3, false);
+        RecordingEmitter otherChat = new RecordingEmitter(1, false);
+        service.subscribe(CHAT_ID, first);
+        service.subscribe(CHAT_ID, second);
+        service.subscribe("other-chat", otherChat);
+        assertEquals(2, service.subscriberCount(CHAT_ID));
+
+        for (int i = 0; i < 3; i++) {
+            service.publish(CHAT_ID, message(i));
+        }
+
+        assertTrue(first.received.await(5, TimeUnit.SECONDS));
+        assertTrue(second.received.await(5, TimeUnit.SECONDS));
+        assertEquals(3, first.events.size());
+        assertEquals(3, second.events.size());
+        assertTrue(otherChat.events.isEmpty());
+    }
+
+    @Test
+    void publishWithoutSubscriberShouldDoNothing() {
+        service.publish(CHAT_ID, message(0));
+        assertEquals(0, service.subscriberCount(CHAT_ID));
+    }
+
+    @Test
+    void slowSubscriberShouldBeDisconnectedWithoutBlockingTheOthers() throws Exception {
+        int nbMessages = ChatPushService.QUEUE_CAPACITY + 10;
+        RecordingEmitter slow = new RecordingEmitter(nbMessages, true);
+        RecordingEmitter fast = new RecordingEmitter(nbMessages, false);
+        service.subscribe(CHAT_ID, slow);
+        service.subscribe(CHAT_ID, fast);
+
+        for (int i = 0; i < nbMessages; i++) {
+            service.publish(CHAT_ID, message(i));
+            // The fast client reads each message before the next one is posted
+            long deadline = System.currentTimeMillis() + 5000;
+            while (fast.events.size() <= i && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+
+        assertTrue(fast.received.await(5, TimeUnit.SECONDS));
+        assertEquals(nbMessages, fast.events.size());
+        assertTrue(slow.completed.await(5, TimeUnit.SECONDS));
+        assertTrue(slow.events.isEmpty());
+        assertEquals(1, service.subscriberCount(CHAT_ID));
+    }
+
+    @Test
+    void blockedWritesShouldNotDelayTheOtherChats() throws Exception {
+        int nbBlocked = 16;
+        List<RecordingEmitter> blocked = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < nbBlocked; i++) {
+            RecordingEmitter emitter = new RecordingEmitter(1, true);
+            blocked.add(emitter);
+            service.subscribe("blocked-chat-" + i, emitter);
+            service.publish("blocked-chat-" + i, message(i));
+        }
+        RecordingEmitter fast = new RecordingEmitter(1, false);
+        service.subscribe(CHAT_ID, fast);
+        service.publish(CHAT_ID, message(0));
+
+        assertTrue(fast.received.await(WRITE_TIMEOUT / 2, TimeUnit.MILLISECONDS));
+        // The blocked connections are dropped once their write has lasted more than the write timeout
+        for (int i = 0; i < nbBlocked; i++) {
+            assertTrue(blocked.get(i).completed.await(5, TimeUnit.SECONDS));
+            assertEquals(0, service.subscriberCount("blocked-chat-" + i));
+        }
+        assertEquals(1, service.subscriberCount(CHAT_ID));
+    }
+
+    @Test
+    void connectionsWaitingForAWriterShouldBeServedOnceTheBlockedWritesAreDropped() throws Exception {
+        service.shutdown();
+        service = new ChatPushService(ChatPushService.HEARTBEAT_PERIOD, WRITE_TIMEOUT, 2);
+        for (int i = 0; i < 2; i++) {
+            service.subscribe("blocked-chat-" + i, new RecordingEmitter(1, true));
+            service.publish("blocked-chat-" + i, message(i));
+        }
+        RecordingEmitter waiting = new RecordingEmitter(1, false);
+        service.subscribe(CHAT_ID, waiting);
+        service.publish(CHAT_ID, message(0));
+
+        // Both writers are blocked until the write timeout
+        assertFalse(waiting.received.await(WRITE_TIMEOUT / 2, TimeUnit.MILLISECONDS));
+        assertTrue(waiting.received.await(5, TimeUnit.SECONDS));
+        assertEquals(1, service.subscriberCount(CHAT_ID));
+    }
+
+    @Test
+    void heartbeatsShouldNotWaitForABlockedConnection() throws Exception {
+        service.shutdown();
+        service = new ChatPushService(20, 60_000);
+        RecordingEmitter blocked = new RecordingEmitter(1, true);
+        RecordingEmitter idle = new RecordingEmitter(3, false);
+        service.subscribe(CHAT_ID, blocked);
+        service.subscribe(CHAT_ID, idle);
+        service.publish(CHAT_ID, message(0));
+
+        assertTrue(idle.received.await(5, TimeUnit.SECONDS));
+        assertTrue(blocked.events.isEmpty());
+        assertEquals(2, service.subscriberCount(CHAT_ID));
+    }
+}
@@ -3,9 +3,13 @@ package ch.amphytrion.project.service;
 
 import ch.amphytrion.project.entities.databaseentities.Chat;
 import ch.amphytrion.project.entities.databaseentities.Meeting;
+import ch.amphytrion.project.entities.databaseentities.Message;
+import ch.amphytrion.project.entities.databaseentities.MessageBucket;
 import ch.amphytrion.project.entities.databaseentities.User;
 import ch.amphytrion.project.repositories.ChatRepository;
+import ch.amphytrion.project.repositories.MessageBucketRepository;
 import ch.amphytrion.project.services.ChatService;
+import ch.amphytrion.project.services.RecentMessagesCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +18,10 @@ import org.springframework.boot.test.context.SpringBootTest;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
@@ -26,11 +34,17 @@ public class ChatServiceTest {
     @Autowired
     private ChatRepository repository;
     @Autowired
+    private MessageBucketRepository messageBucketRepository;
+    @Autowired
+    private RecentMessagesCache recentMessagesCache;
+    @Autowired
     private ChatService service;
 
     @BeforeEach
     public void setUp() {
         repository.deleteAll();
+        messageBucketRepository.deleteAll();
+        recentMessagesCache.clear();
     }
 
     private List<Chat> createChats(int nb){
@@ -94,4 +108,76 @@ public class ChatServiceTest {
         service.deleteById(chat.getId());
         assertDoesNotThrow(() -> service.deleteById(chat.getId()));
     }
+
+    @Test
+    void addedMessagesShouldBeFoundInOrder(){
+        Chat chat = createChats(1).get(0);
+        for(int i = 0; i < MessageBucket.BUCKET_SIZE * 2 + 5; i++){
+            service.addMessage(chat.getId(), new Message(null, "message-" + i, "username", null));
+        }
+        List<Message> messages = service.findById(chat.getId()).getMessages();
+        assertEquals(MessageBucket.BUCKET_SIZE * 2 + 5, messages.size());
+        for(int i = 0; i < messages.size(); i++){
+            assertEquals("message-" + i, messages.get(i).getMessage());
+            assertNotNull(messages.get(i).getDate());
+        }
+        assertEquals(3, messageBucketRepository.findByChatIdOrderByFirstDateAsc(chat.getId()).size());
+    }
+
+    @Test
+    void deletedChatShouldDeleteItsMessages(){
+        Chat chat = createChats(1).get(0);
+        service.addMessage(chat.getId(), new Message(null, "message", "username", null));
+        service.deleteById(chat.getId());
+        assertTrue(messageBucketRepository.findByChatIdOrderByFirstDateAsc(chat.getId()).isEmpty());
+    }
+
+    @Test
+    void recentMessagesShouldBeReadFromDatabaseWithoutChangeStream(){
+        Chat chat = createChats(1).get(0);
+        for(int i = 0; i < 5; i++){
+            service.addMessage(chat.getId(), new Message(null, "message-" + i, "username", null));
+        }
+        List<Message> messages = service.findMessagesBefore(chat.getId(), null, 3);
+        assertEquals(3, messages.size());
+        assertEquals("message-4", messages.get(0).getMessage());
+        assertEquals("message-2", messages.get(2).getMessage());
+        // The embedded server is standalone, the messages of the other instances could not be followed
+        messageBucketRepository.deleteAll();
+        assertTrue(service.findMessagesBefore(chat.getId(), null, 3).isEmpty());
+    }
+
+    @Test
+    void deletedChatShouldBeRemovedFromMemory(){
+        Chat chat = createChats(1).get(0);
+        service.addMessage(chat.getId(), new Message(null, "message", "username", null));
+        assertEquals(1, service.findMessagesBefore(chat.getId(), null, 10).size());
+        service.deleteById(chat.getId());
+        assertFalse(service.existsById(chat.getId()));
+        assertTrue(service.findMessagesBefore(chat.getId(), null, 10).isEmpty());
+    }
+
+    @Test
+    void concurrentMessagesShouldAllBeStored() throws Exception {
+        Chat chat = createChats(1).get(0);
+        int nbMessages = MessageBucket.BUCKET_SIZE * 3;
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Message>> futures = new ArrayList<>();
+            for(int i = 0; i < nbMessages; i++){
+                Message message = new Message(null, "message-" + i, "username", null);
+                futures.add(executor.submit(() -> service.addMessage(chat.getId(), message)));
+            }
+            for(Future<Message> future : futures){
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(nbMessages, service.findMessages(chat.getId()).size());
+        for(MessageBucket bucket : messageBucketRepository.findByChatIdOrderByFirstDateAsc(chat.getId())){
+            assertTrue(bucket.getCount() <= MessageBucket.BUCKET_SIZE);
+            assertEquals(bucket.getCount(), bucket.getMessages().size());
+        }
+    }
 }
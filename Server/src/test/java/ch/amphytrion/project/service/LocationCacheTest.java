@@ -0,0 +1,189 @@
+package ch.amphytrion.project.service;
+
+import ch.amphytrion.project.entities.databaseentities.Location;
+import ch.amphytrion.project.services.LocationCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of the cache of the locations
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public class LocationCacheTest {
+
+    private static final long TTL = 1000;
+    private static final int MAX_LOCATIONS = 3;
+    private static final String HOST_ID = "host-id";
+
+    private AtomicLong now;
+    private AtomicInteger loads;
+    private Map<String, Location> stored;
+    private SimpleMeterRegistry registry;
+    private LocationCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        // Same conversions as the application, the opening hours use java.time
+        MongoCustomConversions conversions = new MongoCustomConversions(Collections.emptyList());
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        now = new AtomicLong(0);
+        loads = new AtomicInteger(0);
+        stored = new HashMap<>();
+        for (int i = 0; i < 5; i++) {
+            Location location = new Location("name-" + i, "description-" + i, i, HOST_ID + (i % 2), "host", new ArrayList<>(), new ArrayList<>());
+            location.setId(new ObjectId().toHexString());
+            stored.put(location.getId(), location);
+        }
+        registry = new SimpleMeterRegistry();
+        cache = new LocationCache(converter, registry, MAX_LOCATIONS, TTL, now::get);
+    }
+
+    private Location load(String id) {
+        loads.incrementAndGet();
+        return stored.get(id);
+    }
+
+    private Map<String, Location> loadAll(Set<String> ids) {
+        Map<String, Location> locations = new HashMap<>();
+        for (String id : ids) {
+            loads.incrementAndGet();
+            if (stored.containsKey(id)) {
+                locations.put(id, stored.get(id));
+            }
+        }
+        return locations;
+    }
+
+    private String anId() {
+        return stored.keySet().iterator().next();
+    }
+
+    private double count(String name, String tag, String value) {
+        return registry.get(name).tag(tag, value).counter().count();
+    }
+
+    @Test
+    void locationShouldBeLoadedOnlyOnce() {
+        String id = anId();
+        assertEquals(stored.get(id), cache.get(id, this::load));
+        assertEquals(stored.get(id), cache.get(id, this::load));
+        assertEquals(1, loads.get());
+        assertEquals(1, count("location.cache.requests", "result", "hit"));
+        assertEquals(1, count("location.cache.requests", "result", "miss"));
+    }
+
+    @Test
+    void unknownLocationShouldNotBeCached() {
+        assertNull(cache.get("unknown", this::load));
+        assertNull(cache.get("unknown", this::load));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void changesOfACopyShouldNotLeak() {
+        String id = anId();
+        cache.get(id, this::load);
+        cache.get(id, this::load).setName("changed");
+        assertEquals(stored.get(id).getName(), cache.get(id, this::load).getName());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void expiredLocationShouldBeLoadedAgain() {
+        String id = anId();
+        cache.get(id, this::load);
+        now.addAndGet(TTL + 1);
+        cache.get(id, this::load);
+        assertEquals(2, loads.get());
+        assertEquals(1, count("location.cache.evictions", "cause", "expired"));
+    }
+
+    @Test
+    void leastRecentlyUsedLocationShouldBeEvicted() {
+        List<String> ids = new ArrayList<>(stored.keySet());
+        for (int i = 0; i <= MAX_LOCATIONS; i++) {
+            cache.get(ids.get(i), this::load);
+        }
+        assertEquals(MAX_LOCATIONS, cache.size());
+        assertEquals(1, count("location.cache.evictions", "cause", "size"));
+        cache.get(ids.get(0), this::load);
+        assertEquals(MAX_LOCATIONS + 2, loads.get());
+    }
+
+    @Test
+    void getAllShouldLoadOnlyTheMissingLocations() {
+        List<String> ids = new ArrayList<>(stored.keySet()).subList(0, MAX_LOCATIONS);
+        cache.get(ids.get(0), this::load);
+        List<String> requested = new ArrayList<>(ids);
+        requested.add("unknown");
+        Map<String, Location> found = cache.getAll(requested, this::loadAll);
+        assertEquals(MAX_LOCATIONS, found.size());
+        ids.forEach(id -> assertEquals(stored.get(id), found.get(id)));
+        assertEquals(1 + MAX_LOCATIONS, loads.get());
+        assertEquals(MAX_LOCATIONS, cache.getAll(ids, this::loadAll).size());
+        assertEquals(1 + MAX_LOCATIONS, loads.get());
+    }
+
+    @Test
+    void savedLocationShouldBeLoadedAgain() {
+        String id = anId();
+        cache.get(id, this::load);
+        cache.onAfterSave(new AfterSaveEvent<>(stored.get(id), new Document(), "location"));
+        cache.get(id, this::load);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void deletedLocationShouldBeRemoved() {
+        String id = anId();
+        cache.get(id, this::load);
+        cache.onAfterDelete(new AfterDeleteEvent<>(new Document("_id", new ObjectId(id)), Location.class, "location"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void deleteByQueryShouldClearTheCache() {
+        cache.getAll(stored.keySet(), this::loadAll);
+        cache.onAfterDelete(new AfterDeleteEvent<>(new Document(), Location.class, "location"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void invalidateHostShouldRemoveOnlyItsLocations() {
+        List<String> ids = new ArrayList<>(stored.keySet()).subList(0, MAX_LOCATIONS);
+        cache.getAll(ids, this::loadAll);
+        long ofHost = ids.stream().filter(id -> stored.get(id).getHostId().equals(HOST_ID + 0)).count();
+        cache.invalidateHost(HOST_ID + 0);
+        assertEquals(MAX_LOCATIONS - ofHost, cache.size());
+    }
+
+    @Test
+    void locationLoadedDuringAnInvalidationShouldNotBeCached() {
+        String id = anId();
+        cache.get(id, locationId -> {
+            cache.invalidate(locationId);
+            return load(locationId);
+        });
+        assertEquals(0, cache.size());
+    }
+}
@@ -1,7 +1,11 @@
 package ch.amphytrion.project.service;
 
 import ch.amphytrion.project.entities.databaseentities.Chat;
+import ch.amphytrion.project.entities.databaseentities.CovidData;
+import ch.amphytrion.project.entities.databaseentities.HostProfil;
 import ch.amphytrion.project.entities.databaseentities.Location;
+import ch.amphytrion.project.entities.databaseentities.Tag;
+import ch.amphytrion.project.entities.databaseentities.User;
 import ch.amphytrion.project.repositories.LocationRepository;
 import ch.amphytrion.project.services.LocationService;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,7 +15,9 @@ import org.springframework.boot.test.autoconfigure.data.mongo.AutoConfigureDataM
 import org.springframework.boot.test.context.SpringBootTest;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -73,6 +79,29 @@ public class LocationServiceTest {
         assertEquals(location, service.findById(location.getId()));
     }
 
+    @Test
+    void findByIdShouldReturnTheSavedChanges(){
+        Location location = createLocations(3).get(0);
+        assertEquals(location, service.findById(location.getId()));
+        location.setName("renamed");
+        repository.save(location);
+        assertEquals("renamed", service.findById(location.getId()).getName());
+        service.findById(location.getId()).setName("not saved");
+        assertEquals("renamed", service.findById(location.getId()).getName());
+    }
+
+    @Test
+    void findByIdsShouldReturnAllTheLocations(){
+        List<Location> locations = createLocations(3);
+        service.findById(locations.get(0).getId());
+        List<String> ids = new ArrayList<>();
+        locations.forEach(location -> ids.add(location.getId()));
+        ids.add("fake-id");
+        Map<String, Location> found = service.findByIds(ids);
+        assertEquals(3, found.size());
+        locations.forEach(location -> assertEquals(location, found.get(location.getId())));
+    }
+
     @Test
     void findByHostIdShouldReturnEmptyIfNone(){
         createLocations(3);
@@ -97,8 +126,10 @@ public class LocationServiceTest {
     @Test
     void deletedLocationShouldNotBeFind(){
         Location location = createLocations(3).get(0);
+        service.findById(location.getId());
         service.delete(location);
         assertFalse(service.findAll().contains(location));
+        assertNull(service.findById(location.getId()));
     }
 
     @Test
@@ -121,4 +152,61 @@ public class LocationServiceTest {
         service.deleteById(location.getId());
         assertDoesNotThrow(() -> service.deleteById(location.getId()));
     }
+
+    @Test
+    void findOpenShouldReturnPagesOfOpenLocations(){
+        List<Location> locations = createLocations(7);
+        for(int i = 0; i < locations.size(); i++){
+            locations.get(i).setHostOpen(i % 3 != 0);
+            repository.save(locations.get(i));
+        }
+        List<Location> firstPage = service.findOpen(0, 3);
+        List<Location> secondPage = service.findOpen(1, 3);
+        assertEquals(3, firstPage.size());
+        assertEquals(1, secondPage.size());
+        firstPage.addAll(secondPage);
+        firstPage.forEach(location -> assertTrue(location.getHostOpen()));
+        assertEquals(4, firstPage.stream().map(Location::getId).distinct().count());
+        assertEquals(4, service.findOpen().size());
+    }
+
+    @Test
+    void updateHostOpenShouldUpdateAllLocationsOfHost(){
+        List<Location> locations = createLocations(3);
+        User host = new User();
+        host.setId(locations.get(1).getHostId());
+        HostProfil hostProfil = new HostProfil();
+        hostProfil.setCovidData(new CovidData(true, false, false, "", ""));
+        host.setHostProfil(hostProfil);
+        assertFalse(service.findById(locations.get(1).getId()).getHostOpen());
+        assertEquals(1, service.updateHostOpen(host));
+        assertTrue(service.findById(locations.get(1).getId()).getHostOpen());
+        assertEquals(1, service.findOpen(0, 10).size());
+        assertEquals(locations.get(1).getId(), service.findOpen(0, 10).get(0).getId());
+
+        hostProfil.getCovidData().setIsOpen(false);
+        assertEquals(1, service.updateHostOpen(host));
+        assertTrue(service.findOpen(0, 10).isEmpty());
+    }
+
+    @Test
+    void searchOpenShouldRankNameMatchesFirstAndIgnoreAccentsAndPlurals(){
+        List<Location> locations = createLocations(4);
+        locations.get(0).setName("Café");
+        locations.get(0).setDescription("Le café des étudiants");
+        locations.get(1).setDescription("Un bar avec des cafés et des jeux");
+        locations.get(2).setTags(Arrays.asList(new Tag("cafe")));
+        locations.get(3).setName("Café fermé");
+        for (int i = 0; i < locations.size(); i++) {
+            locations.get(i).setHostOpen(i < 3);
+            repository.save(locations.get(i));
+        }
+        List<Location> found = service.searchOpen("cafe", 0, 10);
+        assertEquals(3, found.size());
+        assertEquals(locations.get(0).getId(), found.get(0).getId());
+        found.forEach(location -> assertTrue(location.getHostOpen()));
+        assertEquals(1, service.searchOpen("étudiant", 0, 10).size());
+        assertEquals(2, service.searchOpen("cafe", 1, 1).size() + service.searchOpen("cafe", 2, 1).size());
+        assertTrue(service.searchOpen("restaurant", 0, 10).isEmpty());
+    }
 }
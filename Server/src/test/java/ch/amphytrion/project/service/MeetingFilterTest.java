@@ -0,0 +1,285 @@
+package ch.amphytrion.project.service;
+
+import ch.amphytrion.project.controller.MeetingController;
+import ch.amphytrion.project.dto.FacetResponse;
+import ch.amphytrion.project.dto.FilterRequest;
+import ch.amphytrion.project.dto.MeetingFacetsResponse;
+import ch.amphytrion.project.dto.MeetingPageResponse;
+import ch.amphytrion.project.entities.databaseentities.Location;
+import ch.amphytrion.project.entities.databaseentities.Meeting;
+import ch.amphytrion.project.entities.databaseentities.Tag;
+import ch.amphytrion.project.repositories.MeetingRepository;
+import ch.amphytrion.project.services.MeetingService;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.AutoConfigureDataMongo;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Check that the database search of meetings returns the same results as the in-memory filters
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@SpringBootTest
+@AutoConfigureDataMongo
+public class MeetingFilterTest {
+
+    private static final String BASE_NAME = "meeting-";
+    private static final String BASE_LOCATION_ID = "location-id-";
+    private static final String[] TAG_NAMES = {"sport", "music", "study"};
+
+    @Autowired
+    private MeetingRepository repository;
+    @Autowired
+    private MeetingService service;
+    @Autowired
+    private MeetingController controller;
+
+    private DateTime now;
+
+    @BeforeEach
+    public void setUp() {
+        repository.deleteAll();
+        now = DateTime.now();
+        for (int i = 0; i < 30; i++) {
+            Meeting meeting = new Meeting();
+            meeting.setName(BASE_NAME + i + (i % 4 == 0 ? "-party" : ""));
+            meeting.setDescription("description-" + i);
+            meeting.setLocationID(BASE_LOCATION_ID + (i % 3));
+            meeting.setIsPrivate(i % 5 == 0);
+            List<Tag> tags = new ArrayList<>();
+            for (int j = 0; j < i % 3; j++) {
+                tags.add(new Tag(TAG_NAMES[(i + j) % TAG_NAMES.length]));
+            }
+            meeting.setTags(tags);
+            meeting.setStartDate(now.plusHours(i * 6 - 60).toDate().toInstant());
+            meeting.setEndDate(now.plusHours(i * 6 - 58).toDate().toInstant());
+            repository.save(meeting);
+        }
+    }
+
+    private FilterRequest filter(String name, String startDate, String endDate, List<Tag> tags, String locationId) {
+        Location location = null;
+        if (locationId != null) {
+            location = new Location();
+            location.setId(locationId);
+        }
+        return new FilterRequest(name, startDate, endDate, new ArrayList<>(tags), location);
+    }
+
+    private List<String> ids(List<Meeting> meetings) {
+        return meetings.stream().map(Meeting::getId).sorted().collect(Collectors.toList());
+    }
+
+    private void assertSameResults(FilterRequest filter) {
+        List<String> expected = ids(service.allFilters(service.findAll(), filter));
+        assertEquals(expected, ids(service.searchWithFilter(filter)));
+    }
+
+    @Test
+    void emptyFilterShouldReturnAllPublicMeetings() {
+        FilterRequest filter = filter("", "", "", new ArrayList<>(), null);
+        assertSameResults(filter);
+        assertEquals(24, service.searchWithFilter(filter).size());
+    }
+
+    @Test
+    void nameFilterShouldMatchInMemoryFilter() {
+        assertSameResults(filter("party", "", "", new ArrayList<>(), null));
+        assertSameResults(filter("meeting-1", "", "", new ArrayList<>(), null));
+        assertSameResults(filter("PARTY", "", "", new ArrayList<>(), null));
+        assertSameResults(filter("meeting-.*", "", "", new ArrayList<>(), null));
+    }
+
+    @Test
+    void tagsFilterShouldMatchInMemoryFilter() {
+        assertSameResults(filter("", "", "", Arrays.asList(new Tag("sport")), null));
+        assertSameResults(filter("", "", "", Arrays.asList(new Tag("music"), new Tag("study")), null));
+        assertSameResults(filter("", "", "", Arrays.asList(new Tag("unknown")), null));
+    }
+
+    @Test
+    void locationFilterShouldMatchInMemoryFilter() {
+        assertSameResults(filter("", "", "", new ArrayList<>(), BASE_LOCATION_ID + 1));
+        assertSameResults(filter("", "", "", new ArrayList<>(), BASE_LOCATION_ID + "unknown"));
+        assertSameResults(filter("", "", "", new ArrayList<>(), ""));
+    }
+
+    @Test
+    void datesFilterShouldMatchInMemoryFilter() {
+        String start = now.minusDays(1).toString();
+        String end = now.plusDays(2).toString();
+        assertSameResults(filter("", start, end, new ArrayList<>(), null));
+        assertSameResults(filter("", start, "", new ArrayList<>(), null));
+        assertSameResults(filter("", "", end, new ArrayList<>(), null));
+        assertSameResults(filter("", null, null, new ArrayList<>(), null));
+    }
+
+    @Test
+    void combinedFiltersShouldMatchInMemoryFilter() {
+        String start = now.minusDays(2).toString();
+        String end = now.plusDays(3).toString();
+        assertSameResults(filter("meeting", start, end, Arrays.asList(new Tag("sport"), new Tag("music")), BASE_LOCATION_ID + 2));
+        assertSameResults(filter("party", start, "", Arrays.asList(new Tag("study")), null));
+        assertFalse(service.searchWithFilter(filter("meeting", start, end, new ArrayList<>(), BASE_LOCATION_ID + 2)).isEmpty());
+    }
+
+    private List<String> allPages(FilterRequest filter) {
+        List<String> ids = new ArrayList<>();
+        List<Meeting> page;
+        do {
+            page = service.searchPageWithFilter(filter, service.searchedText(filter));
+            assertTrue(page.size() <= filter.pageSize());
+            page.forEach(meeting -> ids.add(meeting.getId()));
+            filter.continuationToken = service.nextPageToken(filter, page);
+        } while (filter.continuationToken != null);
+        return ids;
+    }
+
+    @Test
+    void pagesShouldReturnAllMeetingsOrderedByStartDate() {
+        FilterRequest filter = filter("", "", "", new ArrayList<>(), null);
+        filter.pageSize = 7;
+        List<String> expected = service.allFilters(service.findAll(), filter).stream()
+                .sorted(Comparator.comparing(Meeting::getStartDate))
+                .map(Meeting::getId)
+                .collect(Collectors.toList());
+        assertEquals(expected, allPages(filter));
+    }
+
+    @Test
+    void pagesShouldNotSkipMeetingsWithSameStartDate() {
+        for (int i = 0; i < 5; i++) {
+            Meeting meeting = new Meeting();
+            meeting.setName(BASE_NAME + "same-start-" + i);
+            meeting.setIsPrivate(false);
+            meeting.setTags(Arrays.asList(new Tag("same-start")));
+            meeting.setStartDate(now.toDate().toInstant());
+            meeting.setEndDate(now.plusHours(2).toDate().toInstant());
+            repository.save(meeting);
+        }
+        FilterRequest filter = filter("", "", "", Arrays.asList(new Tag("same-start")), null);
+        filter.pageSize = 2;
+        List<String> ids = allPages(filter);
+        assertEquals(5, ids.size());
+        assertEquals(ids(service.searchWithFilter(filter)), ids.stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    void nameShouldBeSearchedInDescriptionsWithoutAccentsAndPlurals() {
+        Meeting meeting = new Meeting();
+        meeting.setName("Tournoi");
+        meeting.setDescription("Une soirée de jeux vidéo");
+        meeting.setIsPrivate(false);
+        meeting.setTags(new ArrayList<>());
+        String id = repository.save(meeting).getId();
+        assertEquals(Arrays.asList(id), ids(service.searchWithFilter(filter("soiree", "", "", new ArrayList<>(), null))));
+        assertEquals(Arrays.asList(id), ids(service.searchWithFilter(filter("videos", "", "", new ArrayList<>(), null))));
+        assertSameResults(filter("Soirées", "", "", new ArrayList<>(), null));
+    }
+
+    @Test
+    void startOfAWordShouldMatchWithoutCaseAndAccents() {
+        Meeting meeting = new Meeting();
+        meeting.setName("Soirée jeux");
+        meeting.setIsPrivate(false);
+        meeting.setTags(new ArrayList<>());
+        String id = repository.save(meeting).getId();
+        assertEquals(Arrays.asList(id), ids(service.searchWithFilter(filter("soir", "", "", new ArrayList<>(), null))));
+        assertEquals(Arrays.asList(id), ids(service.searchWithFilter(filter("SOIRE", "", "", new ArrayList<>(), null))));
+        assertTrue(service.searchWithFilter(filter("oiree", "", "", new ArrayList<>(), null)).isEmpty());
+        assertSameResults(filter("soir", "", "", new ArrayList<>(), null));
+    }
+
+    @Test
+    void nameMatchesShouldBeRankedBeforeDescriptionMatches() {
+        Meeting inDescription = new Meeting();
+        inDescription.setName("Sortie");
+        inDescription.setDescription("Randonnée puis pique-nique");
+        inDescription.setIsPrivate(false);
+        inDescription.setTags(new ArrayList<>());
+        inDescription.setStartDate(now.minusDays(1).toDate().toInstant());
+        repository.save(inDescription);
+        Meeting inName = new Meeting();
+        inName.setName("Randonnée au lac");
+        inName.setIsPrivate(false);
+        inName.setTags(new ArrayList<>());
+        inName.setStartDate(now.plusDays(1).toDate().toInstant());
+        repository.save(inName);
+        List<Meeting> found = service.searchWithFilter(filter("randonnee", "", "", new ArrayList<>(), null));
+        assertEquals(Arrays.asList(inName.getId(), inDescription.getId()),
+                found.stream().map(Meeting::getId).collect(Collectors.toList()));
+        FilterRequest filter = filter("randonnee", "", "", new ArrayList<>(), null);
+        filter.pageSize = 1;
+        assertEquals(Arrays.asList(inName.getId(), inDescription.getId()), allPages(filter));
+    }
+
+    @Test
+    void pagesOfNameSearchShouldReturnAllMeetings() {
+        FilterRequest filter = filter("meeting", "", "", new ArrayList<>(), null);
+        filter.pageSize = 7;
+        List<String> ids = allPages(filter);
+        assertEquals(ids.size(), ids.stream().distinct().count());
+        assertEquals(ids(service.searchWithFilter(filter)), ids.stream().sorted().collect(Collectors.toList()));
+    }
+
+    private Map<String, Long> counts(List<FacetResponse> facet) {
+        Map<String, Long> counts = new HashMap<>();
+        facet.forEach(value -> counts.put(value.value, value.count));
+        return counts;
+    }
+
+    private void assertSameFacets(FilterRequest filter) {
+        List<Meeting> expected = service.allFilters(service.findAll(), filter);
+        MeetingFacetsResponse facets = service.countFacets(filter, service.searchedText(filter));
+        assertEquals(expected.size(), facets.total);
+        assertEquals(expected.stream()
+                .flatMap(meeting -> meeting.getTags().stream().map(Tag::getName).distinct())
+                .collect(Collectors.groupingBy(name -> name, Collectors.counting())), counts(facets.tags));
+        assertEquals(expected.stream()
+                .collect(Collectors.groupingBy(Meeting::getLocationID, Collectors.counting())), counts(facets.locations));
+        assertEquals(expected.stream()
+                .collect(Collectors.groupingBy(meeting -> meeting.getStartDate().atZone(ZoneId.systemDefault()).toLocalDate().toString(),
+                        Collectors.counting())), counts(facets.days));
+    }
+
+    @Test
+    void facetsShouldCountTheMeetingsOfTheFilter() {
+        assertSameFacets(filter("", "", "", new ArrayList<>(), null));
+        assertSameFacets(filter("party", "", "", new ArrayList<>(), null));
+        assertSameFacets(filter("", now.minusDays(1).toString(), now.plusDays(2).toString(), Arrays.asList(new Tag("sport")), null));
+        assertSameFacets(filter("", "", "", new ArrayList<>(), BASE_LOCATION_ID + 1));
+        MeetingFacetsResponse none = service.countFacets(filter("", "", "", Arrays.asList(new Tag("unknown")), null), null);
+        assertEquals(0, none.total);
+        assertTrue(none.tags.isEmpty());
+    }
+
+    @Test
+    void facetsShouldBeSentWithTheFirstPage() {
+        FilterRequest filter = filter("", "", "", new ArrayList<>(), null);
+        filter.pageSize = 5;
+        MeetingPageResponse first = controller.searchWithFilter(filter).getBody();
+        assertEquals(24, first.facets.total);
+        assertEquals(3, first.facets.locations.size());
+        filter.continuationToken = first.continuationToken;
+        assertNull(controller.searchWithFilter(filter).getBody().facets);
+    }
+
+    @Test
+    void pageSizeShouldBeCapped() {
+        FilterRequest filter = filter("", "", "", new ArrayList<>(), null);
+        filter.pageSize = 1000;
+        assertEquals(FilterRequest.MAX_PAGE_SIZE, filter.pageSize());
+        filter.pageSize = null;
+        assertEquals(FilterRequest.DEFAULT_PAGE_SIZE, filter.pageSize());
+        assertEquals(FilterRequest.DEFAULT_PAGE_SIZE, service.searchPageWithFilter(filter, service.searchedText(filter)).size());
+    }
+}
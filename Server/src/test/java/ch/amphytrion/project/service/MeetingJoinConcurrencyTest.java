@@ -0,0 +1,183 @@
+package ch.amphytrion.project.service;
+
+import ch.amphytrion.project.entities.databaseentities.Location;
+import ch.amphytrion.project.entities.databaseentities.Meeting;
+import ch.amphytrion.project.entities.databaseentities.StudentProfil;
+import ch.amphytrion.project.entities.databaseentities.User;
+import ch.amphytrion.project.repositories.LocationRepository;
+import ch.amphytrion.project.repositories.MeetingRepository;
+import ch.amphytrion.project.repositories.UserRepository;
+import ch.amphytrion.project.services.MeetingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.AutoConfigureDataMongo;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Run many joins of the same meeting in parallel and check that the meeting is never overbooked
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+@SpringBootTest
+@AutoConfigureDataMongo
+public class MeetingJoinConcurrencyTest {
+
+    private static final int NB_STUDENTS = 300;
+    private static final int CAPACITY = 50;
+    private static final int NB_THREADS = 32;
+
+    @Autowired
+    private MeetingRepository meetingRepository;
+    @Autowired
+    private LocationRepository locationRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private MeetingService service;
+
+    private Meeting meeting;
+    private List<User> students;
+
+    @BeforeEach
+    public void setUp() {
+        meetingRepository.deleteAll();
+        locationRepository.deleteAll();
+        userRepository.deleteAll();
+        Location location = new Location();
+        location.setNbPeople(CAPACITY);
+        locationRepository.save(location);
+        meeting = new Meeting("concurrent-meeting");
+        meeting.setLocationID(location.getId());
+        meetingRepository.save(meeting);
+        students = new ArrayList<>();
+        for (int i = 0; i < NB_STUDENTS; i++) {
+            User student = new User("google-id-" + i, "student-" + i);
+            student.setStudentProfil(new StudentProfil());
+            students.add(userRepository.save(student));
+        }
+    }
+
+    /**
+     * Run tasks in parallel, all starting at the same time
+     * @param tasks the tasks to run
+     */
+    private void runInParallel(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(NB_THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void parallelJoinsShouldNeverOverbook() throws Exception {
+        AtomicInteger joined = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (User student : students) {
+            tasks.add(() -> {
+                if (service.addMemberToMeeting(student, meeting.getId()) != null) {
+                    joined.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        runInParallel(tasks);
+
+        List<String> members = meetingRepository.findById(meeting.getId()).get().getMembersID();
+        assertEquals(CAPACITY, joined.get());
+        assertEquals(CAPACITY, members.size());
+        assertEquals(CAPACITY, new HashSet<>(members).size());
+        for (User student : userRepository.findAll()) {
+            boolean isMember = members.contains(student.getId());
+            assertEquals(isMember, student.getStudentProfil().getMeetingsParticipationsID().contains(meeting.getId()));
+        }
+    }
+
+    @Test
+    void parallelJoinsOfSameStudentShouldBeIdempotent() throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < NB_STUDENTS; i++) {
+            // Each request loads its own copy of the student, like the authentication filter does
+            tasks.add(() -> {
+                User student = userRepository.findById(students.get(0).getId()).get();
+                assertNotNull(service.addMemberToMeeting(student, meeting.getId()));
+                return null;
+            });
+        }
+        runInParallel(tasks);
+
+        assertEquals(1, meetingRepository.findById(meeting.getId()).get().getMembersID().size());
+        User student = userRepository.findById(students.get(0).getId()).get();
+        assertEquals(1, student.getStudentProfil().getMeetingsParticipationsID().size());
+    }
+
+    @Test
+    void parallelLeavesAndUpdatesShouldKeepConcurrentJoins() throws Exception {
+        List<User> leaving = students.subList(0, CAPACITY / 2);
+        List<User> joining = students.subList(CAPACITY / 2, CAPACITY);
+        for (User student : leaving) {
+            assertNotNull(service.addMemberToMeeting(student, meeting.getId()));
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (User student : leaving) {
+            tasks.add(() -> {
+                assertNotNull(service.removeMemberFromMeeting(student, meeting.getId()));
+                return null;
+            });
+        }
+        for (User student : joining) {
+            tasks.add(() -> {
+                assertNotNull(service.addMemberToMeeting(student, meeting.getId()));
+                return null;
+            });
+            tasks.add(() -> {
+                Meeting update = new Meeting("renamed-meeting");
+                update.setId(meeting.getId());
+                update.setLocationID(meeting.getLocationID());
+                update.setIsPrivate(false);
+                assertNotNull(service.updateDetails(update));
+                return null;
+            });
+        }
+        runInParallel(tasks);
+
+        Meeting updated = meetingRepository.findById(meeting.getId()).get();
+        assertEquals("renamed-meeting", updated.getName());
+        assertEquals(joining.stream().map(User::getId).collect(Collectors.toSet()), new HashSet<>(updated.getMembersID()));
+        for (User student : userRepository.findAll()) {
+            boolean isMember = updated.getMembersID().contains(student.getId());
+            assertEquals(isMember, student.getStudentProfil().getMeetingsParticipationsID().contains(meeting.getId()));
+        }
+    }
+
+    @Test
+    void joinOfDeletedStudentShouldFailWithoutSavingIt() {
+        User student = students.get(0);
+        userRepository.deleteById(student.getId());
+        assertNull(service.addMemberToMeeting(student, meeting.getId()));
+        assertFalse(userRepository.existsById(student.getId()));
+        assertTrue(meetingRepository.findById(meeting.getId()).get().getMembersID().isEmpty());
+    }
+}
@@ -2,6 +2,7 @@ package ch.amphytrion.project.service;
 
 
 
+import ch.amphytrion.project.dto.DatesFilterDTO;
 import ch.amphytrion.project.entities.databaseentities.Meeting;
 import ch.amphytrion.project.entities.databaseentities.StudentProfil;
 import ch.amphytrion.project.entities.databaseentities.User;
@@ -15,7 +16,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.AutoConfigureDataMongo;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -135,10 +138,10 @@ public class MeetingServiceTest {
     @Test
     void findOwnerFutureMeetingsShouldFindALlMeetingsInFuture(){
         DateTime now = DateTime.now();
-        String past_1 = now.minusDays(1).toString();
-        String past_0 = now.minusMinutes(1).toString();
-        String future_0 = now.plusMinutes(1).toString();
-        String future_1 = now.plusDays(1).toString();
+        Instant past_1 = now.minusDays(1).toDate().toInstant();
+        Instant past_0 = now.minusMinutes(1).toDate().toInstant();
+        Instant future_0 = now.plusMinutes(1).toDate().toInstant();
+        Instant future_1 = now.plusDays(1).toDate().toInstant();
         List<Meeting> meetings = createMeetings(10);
         for(int i = 0; i < 3; i++){
             Meeting m = meetings.get(i);
@@ -167,10 +170,10 @@ public class MeetingServiceTest {
     @Test
     void findOwnerFutureMeetingsShouldFindOnlyOwnerMeetings(){
         DateTime now = DateTime.now();
-        String past_1 = now.minusDays(1).toString();
-        String past_0 = now.minusMinutes(1).toString();
-        String future_0 = now.plusMinutes(1).toString();
-        String future_1 = now.plusDays(1).toString();
+        Instant past_1 = now.minusDays(1).toDate().toInstant();
+        Instant past_0 = now.minusMinutes(1).toDate().toInstant();
+        Instant future_0 = now.plusMinutes(1).toDate().toInstant();
+        Instant future_1 = now.plusDays(1).toDate().toInstant();
         List<Meeting> meetings = createMeetings(10);
         for(int i = 0; i < 3; i++){
             Meeting m = meetings.get(i);
@@ -252,4 +255,75 @@ public class MeetingServiceTest {
         service.deleteById(meeting.getId());
         assertDoesNotThrow(() -> service.deleteById(meeting.getId()));
     }
+
+    @Test
+    void findParticipationsShouldReturnEmptyIfNone(){
+        createMeetings(3);
+        assertEquals(0, service.findParticipations(new StudentProfil(), null).size());
+    }
+
+    @Test
+    void findParticipationsShouldReturnMeetingsInDatesOrderedByStartDate(){
+        DateTime now = DateTime.now();
+        List<Meeting> meetings = createMeetings(4);
+        StudentProfil studentProfil = new StudentProfil();
+        for(int i = 0; i < meetings.size(); i++){
+            Meeting meeting = meetings.get(i);
+            meeting.setStartDate(now.plusDays(10 - i * 3).toDate().toInstant());
+            meeting.setEndDate(now.plusDays(10 - i * 3).plusHours(2).toDate().toInstant());
+            repository.save(meeting);
+            studentProfil.getMeetingsParticipationsID().add(meeting.getId());
+        }
+        createMeetings(2);
+
+        List<Meeting> participations = service.findParticipations(studentProfil, null);
+        assertEquals(4, participations.size());
+        for(int i = 0; i < participations.size(); i++){
+            assertEquals(meetings.get(meetings.size() - 1 - i).getId(), participations.get(i).getId());
+        }
+
+        DatesFilterDTO datesFilter = new DatesFilterDTO(now.plusDays(2).toString(), now.plusDays(8).toString());
+        participations = service.findParticipations(studentProfil, datesFilter);
+        assertEquals(2, participations.size());
+        assertEquals(meetings.get(2).getId(), participations.get(0).getId());
+        assertEquals(meetings.get(1).getId(), participations.get(1).getId());
+    }
+
+    @Test
+    void findAtLocationsShouldReturnEmptyIfNoLocations(){
+        createMeetings(3);
+        assertEquals(0, service.findAtLocations(new ArrayList<>(), null).size());
+    }
+
+    @Test
+    void findAtLocationsShouldReturnMeetingsOfLocationsInDates(){
+        DateTime now = DateTime.now();
+        List<Meeting> meetings = createMeetings(6);
+        for(int i = 0; i < meetings.size(); i++){
+            Meeting meeting = meetings.get(i);
+            meeting.setLocationID(BASE_LOCATION_ID + (i % 3));
+            meeting.setStartDate(now.plusDays(i).toDate().toInstant());
+            meeting.setEndDate(now.plusDays(i).plusHours(2).toDate().toInstant());
+            repository.save(meeting);
+        }
+        List<String> locationIds = Arrays.asList(BASE_LOCATION_ID + 0, BASE_LOCATION_ID + 1);
+        assertEquals(4, service.findAtLocations(locationIds, null).size());
+
+        DatesFilterDTO datesFilter = new DatesFilterDTO(now.plusHours(12).toString(), now.plusDays(4).plusHours(12).toString());
+        List<Meeting> reservations = service.findAtLocations(locationIds, datesFilter);
+        assertEquals(3, reservations.size());
+        assertEquals(meetings.get(1).getId(), reservations.get(0).getId());
+        assertEquals(meetings.get(3).getId(), reservations.get(1).getId());
+        assertEquals(meetings.get(4).getId(), reservations.get(2).getId());
+
+        // A meeting starting before the dates and ending after them overlaps them
+        Meeting spanning = meetings.get(5);
+        spanning.setLocationID(BASE_LOCATION_ID + 0);
+        spanning.setStartDate(now.minusDays(1).toDate().toInstant());
+        spanning.setEndDate(now.plusDays(10).toDate().toInstant());
+        repository.save(spanning);
+        reservations = service.findAtLocations(locationIds, datesFilter);
+        assertEquals(4, reservations.size());
+        assertEquals(spanning.getId(), reservations.get(0).getId());
+    }
 }
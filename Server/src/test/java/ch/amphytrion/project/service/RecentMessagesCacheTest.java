@@ -0,0 +1,154 @@
+package ch.amphytrion.project.service;
+
+import ch.amphytrion.project.entities.databaseentities.Message;
+import ch.amphytrion.project.services.RecentMessagesCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of the in-memory buffers of the latest chat messages
+ *
+ * @author Alexis Allemann, Hakim Balestieri, Aloïs Christen, Christian Gomes, Alexandre Mottier, Johann Werkle
+ */
+public class RecentMessagesCacheTest {
+
+    private static final int CAPACITY = 5;
+    private static final int MAX_CHATS = 3;
+    private static final long TTL = 1000;
+    private static final LocalDateTime START = LocalDateTime.of(2021, 5, 1, 12, 0);
+
+    private SimpleMeterRegistry registry;
+    private AtomicLong now;
+    private AtomicInteger loads;
+    private RecentMessagesCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        now = new AtomicLong(0);
+        loads = new AtomicInteger(0);
+        cache = new RecentMessagesCache(registry, CAPACITY, MAX_CHATS, TTL, now::get);
+    }
+
+    private static Message message(int i) {
+        return new Message(String.format("id-%03d", i), "message-" + i, "user", START.plusSeconds(i));
+    }
+
+    /**
+     * Loader of the latest messages of a chat, as stored in the database
+     * @param nb the number of messages of the chat
+     * @return List<Message> the latest messages, newest first
+     */
+    private List<Message> stored(int nb) {
+        loads.incrementAndGet();
+        List<Message> messages = new ArrayList<>();
+        for (int i = Math.max(0, nb - CAPACITY); i < nb; i++) {
+            messages.add(message(i));
+        }
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    @Test
+    void firstReadShouldLoadThenServeFromMemory() {
+        assertEquals(3, cache.recent("chat", 3, () -> stored(10)).size());
+        List<Message> messages = cache.recent("chat", 10, () -> stored(10));
+        assertEquals(1, loads.get());
+        assertEquals(CAPACITY, messages.size());
+        assertEquals("message-9", messages.get(0).getMessage());
+        assertEquals("message-5", messages.get(CAPACITY - 1).getMessage());
+        assertEquals(1.0, registry.get("chat.recent.requests").tag("result", "miss").counter().count());
+        assertEquals(1.0, registry.get("chat.recent.requests").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void addedMessagesShouldOverwriteTheOldest() {
+        cache.recent("chat", CAPACITY, () -> stored(2));
+        for (int i = 2; i < 12; i++) {
+            cache.add("chat", message(i));
+        }
+        List<Message> messages = cache.recent("chat", CAPACITY, () -> stored(12));
+        assertEquals(1, loads.get());
+        assertEquals(CAPACITY, messages.size());
+        assertEquals("message-11", messages.get(0).getMessage());
+        assertEquals("message-7", messages.get(CAPACITY - 1).getMessage());
+    }
+
+    @Test
+    void messagesAddedBeforeFirstReadShouldBeMergedWithStoredOnes() {
+        cache.add("chat", message(3));
+        cache.add("chat", message(4));
+        // The loader sees the messages already written, they must not be duplicated
+        List<Message> messages = cache.recent("chat", CAPACITY, () -> stored(5));
+        assertEquals(CAPACITY, messages.size());
+        for (int i = 0; i < CAPACITY; i++) {
+            assertEquals("message-" + (4 - i), messages.get(i).getMessage());
+        }
+    }
+
+    @Test
+    void idleChatsShouldExpire() {
+        cache.recent("chat", CAPACITY, () -> stored(3));
+        now.addAndGet(TTL / 2);
+        assertTrue(cache.contains("chat"));
+        now.addAndGet(TTL + 1);
+        assertFalse(cache.contains("chat"));
+        cache.recent("chat", CAPACITY, () -> stored(3));
+        assertEquals(2, loads.get());
+        assertEquals(1.0, registry.get("chat.recent.evictions").counter().count());
+    }
+
+    @Test
+    void chatShouldOnlyBeEvictedForMessagesNotInItsBuffer() {
+        cache.recent("chat", CAPACITY, () -> stored(3));
+        cache.add("chat", message(3));
+        // Messages added by this instance
+        cache.invalidateUnlessKnown("chat", Arrays.asList("id-002", "id-003"));
+        assertTrue(cache.contains("chat"));
+        // A message written by another instance
+        cache.invalidateUnlessKnown("chat", Arrays.asList("id-003", "id-004"));
+        assertFalse(cache.contains("chat"));
+        List<Message> messages = cache.recent("chat", CAPACITY, () -> stored(5));
+        assertEquals(2, loads.get());
+        assertEquals("message-4", messages.get(0).getMessage());
+        // Change whose messages are unknown
+        cache.invalidateUnlessKnown("chat", Collections.emptyList());
+        assertFalse(cache.contains("chat"));
+    }
+
+    @Test
+    void leastRecentlyUsedChatShouldBeEvicted() {
+        for (int i = 0; i < MAX_CHATS; i++) {
+            cache.recent("chat-" + i, CAPACITY, () -> stored(3));
+        }
+        cache.recent("chat-0", CAPACITY, () -> stored(3));
+        cache.recent("chat-new", CAPACITY, () -> stored(3));
+        assertEquals(MAX_CHATS, cache.size());
+        assertTrue(cache.contains("chat-0"));
+        assertFalse(cache.contains("chat-1"));
+    }
+
+    @Test
+    void memoryMetricShouldFollowTheMessagesKept() {
+        assertEquals(0.0, registry.get("chat.recent.memory").gauge().value());
+        cache.recent("chat", CAPACITY, () -> stored(CAPACITY));
+        double full = registry.get("chat.recent.memory").gauge().value();
+        assertTrue(full > 0);
+        cache.add("chat", message(CAPACITY));
+        assertEquals(full, registry.get("chat.recent.memory").gauge().value());
+        cache.invalidate("chat");
+        assertEquals(0.0, registry.get("chat.recent.memory").gauge().value());
+        assertEquals(0.0, registry.get("chat.recent.chats").gauge().value());
+    }
+}